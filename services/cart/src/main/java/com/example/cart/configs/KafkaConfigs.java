@@ -2,14 +2,21 @@ package com.example.cart.configs;
 
 import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ContainerCustomizer;
 import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,6 +24,43 @@ import java.util.Map;
 @Configuration
 public class KafkaConfigs {
 
+    /**
+     * Notifies the components following the partitions assigned to the consumers of this instance:
+     * the near cache and the ownership fencing tokens (when enabled).
+     */
+    @Bean
+    public ContainerCustomizer<Object, Object, ConcurrentMessageListenerContainer<Object, Object>> rebalanceListenerCustomizer(
+        ObjectProvider<ConsumerAwareRebalanceListener> rebalanceListeners
+    ) {
+        return container -> {
+            var listeners = rebalanceListeners.orderedStream().toList();
+            if (listeners.isEmpty()) {
+                return;
+            }
+            container.getContainerProperties().setConsumerRebalanceListener(new ConsumerAwareRebalanceListener() {
+                @Override
+                public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                    listeners.forEach(listener -> listener.onPartitionsRevokedBeforeCommit(consumer, partitions));
+                }
+
+                @Override
+                public void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                    listeners.forEach(listener -> listener.onPartitionsRevokedAfterCommit(consumer, partitions));
+                }
+
+                @Override
+                public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                    listeners.forEach(listener -> listener.onPartitionsLost(consumer, partitions));
+                }
+
+                @Override
+                public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                    listeners.forEach(listener -> listener.onPartitionsAssigned(consumer, partitions));
+                }
+            });
+        };
+    }
+
 //    private static final Logger log = LoggerFactory.getLogger(KafkaConfigs.class);
 //
 //    @Value("${order-processing-system.messaging.cart-update-requests.topic-name}")
@@ -1,25 +1,61 @@
 package com.example.cart.configs;
 
 import com.example.cart.entities.Cart;
+import com.example.cart.repositories.cart_repo.serializers.CartRedisSerializer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
-import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
 public class RedisConfigs {
 
+    @Value("${order-processing-system.repositories.carts.storage-format:json}")
+    private String cartStorageFormat;
+
+    @Value("${order-processing-system.repositories.carts.compress-threshold-bytes:0}")
+    private Integer cartCompressThreshold;
+
+    @Value("${order-processing-system.repositories.carts.slim-documents:false}")
+    private Boolean cartSlimDocuments;
+
     @Bean
     public ReactiveRedisTemplate<String, Cart> cartTemplate(ReactiveRedisConnectionFactory connectionFactory) {
 
         var serializationContext = RedisSerializationContext
             .<String, Cart>newSerializationContext(new StringRedisSerializer())
-            .value(new Jackson2JsonRedisSerializer<>(Cart.class))
+            .value(new CartRedisSerializer(cartStorageFormat, cartCompressThreshold, cartSlimDocuments))
             .build();
 
         return new ReactiveRedisTemplate<>(connectionFactory, serializationContext);
     }
+
+    /**
+     * Hash fields of the carts stored as Redis hashes, see {@link com.example.cart.repositories.cart_repo.drivers.CartHashRepository}.
+     */
+    @Bean
+    public ReactiveRedisTemplate<String, byte[]> cartHashTemplate(ReactiveRedisConnectionFactory connectionFactory) {
+
+        var serializationContext = RedisSerializationContext
+            .<String, byte[]>newSerializationContext(new StringRedisSerializer())
+            .value(RedisSerializer.byteArray())
+            .hashKey(new StringRedisSerializer())
+            .hashValue(RedisSerializer.byteArray())
+            .build();
+
+        return new ReactiveRedisTemplate<>(connectionFactory, serializationContext);
+    }
+
+    /**
+     * Release notifications of the queued locks, see {@link com.example.cart.repositories.lock_repo.drivers.LockRepository}.
+     */
+    @Bean(destroyMethod = "destroyLater")
+    public ReactiveRedisMessageListenerContainer redisMessageListenerContainer(ReactiveRedisConnectionFactory connectionFactory) {
+        return new ReactiveRedisMessageListenerContainer(connectionFactory);
+    }
 }
@@ -0,0 +1,34 @@
+package com.example.cart.configs;
+
+import com.example.cart.repositories.cart_repo.exceptions.CartVersionConflict;
+import com.example.cart.repositories.cart_repo.exceptions.CartWriteFenced;
+import com.example.cart.repositories.keys.exceptions.LegacyKeyConflict;
+import com.example.cart.repositories.lock_repo.exceptions.LockUnavailable;
+import com.example.cart.repositories.lock_repo.exceptions.LockValueMismatch;
+import com.example.cart.resilience.DependencyGuard;
+import com.example.cart.resilience.DependencyGuardSettings;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+
+@Configuration
+public class ResilienceConfigs {
+
+    @Bean(name = "redisGuard")
+    public DependencyGuard redisGuard(Environment env) {
+        return new DependencyGuard("redis", DependencyGuardSettings.fromEnvironment("redis", env), List.of(
+            LockUnavailable.class,
+            LockValueMismatch.class,
+            CartVersionConflict.class,
+            CartWriteFenced.class,
+            LegacyKeyConflict.class
+        ));
+    }
+
+    @Bean(name = "inventoryGuard")
+    public DependencyGuard inventoryGuard(Environment env) {
+        return new DependencyGuard("inventory", DependencyGuardSettings.fromEnvironment("inventory", env), List.of());
+    }
+}
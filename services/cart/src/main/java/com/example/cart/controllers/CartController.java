@@ -1,11 +1,19 @@
 package com.example.cart.controllers;
 
-import com.example.cart.services.cart_service.CartUpdateRequestHandler;
+import com.example.cart.repositories.keys.RedisKeyMigrator;
+import com.example.cart.services.cart_service.CartDeadLetterReplayer;
+import com.example.cart.services.cart_service.CartRebuilder;
+import com.example.cart.services.cart_service.statistics.CartUpdateRequestStatistics;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.Map;
@@ -15,13 +23,71 @@ import java.util.Map;
 public class CartController {
 
     @Autowired
-    private CartUpdateRequestHandler cartUpdateRequestHandler;
+    private CartUpdateRequestStatistics cartUpdateRequestStatistics;
 
-    @GetMapping("cart-update-request-handler/summary")
-    public Mono<ResponseEntity<?>> cartUpdateRequestHandlerSummary() {
-        return Mono.just(ResponseEntity.ok(Map.of(
-            "observed_cart_versions", cartUpdateRequestHandler.getObservedCartVersions(),
-            "requests_handled_total", cartUpdateRequestHandler.getRequestsHandledTotal()
+    @Autowired
+    private CartDeadLetterReplayer cartDeadLetterReplayer;
+
+    @Autowired
+    private RedisKeyMigrator redisKeyMigrator;
+
+    @Autowired
+    private CartRebuilder cartRebuilder;
+
+    /**
+     * Streams the summary as NDJSON: the totals first, then one line per top user.
+     */
+    @GetMapping(value = "cart-update-request-handler/summary", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Map<String, Object>> cartUpdateRequestHandlerSummary() {
+        var totals = Mono.fromSupplier(() -> Map.<String, Object>of(
+            "requests_handled_total", cartUpdateRequestStatistics.getRequestsHandledTotal(),
+            "distinct_users_estimate", cartUpdateRequestStatistics.estimateDistinctUsers()
+        ));
+        var topUsers = Flux
+            .defer(() -> Flux.fromIterable(cartUpdateRequestStatistics.getTopUsers()))
+            .map(entry -> Map.<String, Object>of(
+                "user_id", entry.getKey(),
+                "requests_handled", entry.getCount(),
+                "requests_handled_max_error", entry.getError(),
+                "observed_cart_version", entry.getLastValue() == null ? 0 : entry.getLastValue()
+            ));
+        return Flux.concat(totals, topUsers);
+    }
+
+    @GetMapping("cart-update-request-handler/summary/users/{userId}")
+    public Mono<ResponseEntity<?>> cartUpdateRequestHandlerUserSummary(@PathVariable String userId) {
+        return Mono.fromSupplier(() -> ResponseEntity.ok(Map.of(
+            "user_id", userId,
+            "requests_handled_estimate", cartUpdateRequestStatistics.estimateRequestsHandled(userId)
         )));
     }
+
+    @PostMapping("cart-update-request-handler/dead-letters/replay")
+    public Mono<ResponseEntity<?>> replayDeadLetters(@RequestParam(defaultValue = "100") Integer max) {
+        return cartDeadLetterReplayer
+            .replay(max)
+            .map(result -> ResponseEntity.ok(Map.of("replayed", result.replayed(), "skipped", result.skipped())));
+    }
+
+    /**
+     * Migrates at most max legacy keys to the hash-tagged layout, call again until 0 keys are migrated.
+     * The skipped keys were written again by a legacy instance next to the migrated ones, to merge by hand.
+     */
+    @PostMapping("repositories/legacy-keys/migrate")
+    public Mono<ResponseEntity<?>> migrateLegacyKeys(@RequestParam(defaultValue = "10000") Integer max) {
+        return redisKeyMigrator
+            .migrate(max)
+            .map(result -> ResponseEntity.ok(Map.of("migrated", result.migrated(), "skipped", result.skippedKeys())));
+    }
+
+    /**
+     * Rebuilds the cart of the user from the requests of its log (event-log storage driver only).
+     */
+    @PostMapping("repositories/carts/{userId}/rebuild")
+    public Mono<ResponseEntity<?>> rebuildCart(@PathVariable String userId) {
+        return cartRebuilder
+            .rebuild(userId)
+            .<ResponseEntity<?>>map(cart -> ResponseEntity.ok(Map.of("user_id", userId, "version", cart.getVersionNumber())))
+            .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
 }
@@ -1,17 +1,21 @@
 package com.example.cart.entities;
 
 import com.example.cart.entities.properties.CartValidation;
+import com.example.cart.services.cart_service.entities.CartUpdateRequest;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Data
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @NoArgsConstructor
-@AllArgsConstructor
 public class Cart {
 
     @Data
@@ -29,6 +33,45 @@ public class Cart {
     Map<String, ProductAvailability> productAvailabilities;
     Map<String, CartValidation> validations;
 
+    /**
+     * Products whose item, availability or validation may have changed since the cart was read,
+     * so that storage drivers can write only those (null: unknown, the whole cart is written).
+     */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    Set<String> touchedProductIds;
+
+    /**
+     * Requests applied since the cart was read, in order, for the storage drivers that log them.
+     */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    List<CartUpdateRequest> appliedRequests;
+
+    /**
+     * Set when an ABANDON_CART request emptied the cart, so that the storage can archive the previous content.
+     */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    boolean abandoned;
+
+    public Cart(
+        String userId,
+        Integer versionNumber,
+        Map<String, CartItem> items,
+        Map<String, ProductAvailability> productAvailabilities,
+        Map<String, CartValidation> validations
+    ) {
+        this.userId = userId;
+        this.versionNumber = versionNumber;
+        this.items = items;
+        this.productAvailabilities = productAvailabilities;
+        this.validations = validations;
+    }
+
     public Cart(String userId) {
         this.userId = userId;
         this.versionNumber = 0;
@@ -41,4 +84,33 @@ public class Cart {
     public ProductAvailability getProductAvailability(String productId) {
         return productAvailabilities.get(productId);
     }
+
+    public void touchProduct(String productId) {
+        if (touchedProductIds == null) {
+            touchedProductIds = new HashSet<>();
+        }
+        touchedProductIds.add(productId);
+    }
+
+    /**
+     * Empties the cart. The version is kept, so that the following requests of the user stay in order.
+     */
+    public void abandon() {
+        items.keySet().forEach(this::touchProduct);
+        productAvailabilities.keySet().forEach(this::touchProduct);
+        validations.keySet().forEach(this::touchProduct);
+        items.clear();
+        productAvailabilities.clear();
+        validations.clear();
+        abandoned = true;
+    }
+
+    public void addAppliedRequest(CartUpdateRequest request) {
+        if (appliedRequests == null) {
+            appliedRequests = new ArrayList<>();
+        }
+        if (! appliedRequests.contains(request)) {
+            appliedRequests.add(request);
+        }
+    }
 }
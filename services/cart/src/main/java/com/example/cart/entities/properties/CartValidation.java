@@ -43,6 +43,20 @@ public class CartValidation {
         );
     }
 
+    /**
+     * Rebuilds the message of a validation stored with its type only. An insufficient stock message
+     * needs the product availability, without it the validation is returned with an empty message.
+     */
+    public static CartValidation ofType(CartValidationType type, Cart cart, Cart.CartItem cartItem) {
+        return switch (type) {
+            case OUT_OF_STOCK -> outOfStock(cartItem);
+            case PRODUCT_UNAVAILABLE -> productUnavailable(cartItem);
+            case INSUFFICIENT_STOCK -> cart.getProductAvailability(cartItem.getProductId()) == null
+                ? new CartValidation(cartItem.getProductId(), "", type)
+                : insufficientStock(cart, cartItem);
+        };
+    }
+
     public static CartValidation productUnavailable(Cart.CartItem cartItem) {
         return new CartValidation(
             cartItem.getProductId(),
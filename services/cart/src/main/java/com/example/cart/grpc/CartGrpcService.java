@@ -4,10 +4,13 @@ import com.example.cart.grpc.mappers.CartMapper;
 import com.example.cart.grpc.mappers.CartUpdateRequestMapper;
 import com.example.cart.repositories.cart_repo.CartRepository;
 import com.example.cart.services.cart_service.CartEventsPublisher;
+import com.example.cart.services.cart_service.CartHydrator;
 import com.example.grpc.cart.stubs.*;
+import com.google.protobuf.CodedOutputStream;
 import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.grpc.server.service.GrpcService;
 
 @GrpcService
@@ -19,12 +22,22 @@ public class CartGrpcService extends CartServiceGrpc.CartServiceImplBase {
     @Autowired
     private CartEventsPublisher cartEventsPublisher;
 
+    @Autowired
+    private CartHydrator cartHydrator;
+
+    @Value("${order-processing-system.repositories.carts.batch-read.max-user-ids:500}")
+    private Integer maxUserIdsPerBatch;
+
+    @Value("${order-processing-system.repositories.carts.batch-read.max-reply-bytes:1048576}")
+    private Integer maxReplyBytes;
+
     @Override
     public void getCartByUserId(GetCartByUserIdRequest request, StreamObserver<GetCartByUserIdResult> responseObserver) {
 
         var result = GetCartByUserIdResult.newBuilder();
 
         cartRepo.getCartByUserId(request.getUserId())
+            .flatMap(cartHydrator::hydrate)
             .doOnSuccess(cart -> {
                 if (cart == null) {
                     responseObserver.onError(Status.NOT_FOUND.asRuntimeException());
@@ -39,6 +52,50 @@ public class CartGrpcService extends CartServiceGrpc.CartServiceImplBase {
             .subscribe();
     }
 
+    /**
+     * Carts of the given users, in the requested order. Users without a cart are left out of the result.
+     * The carts are streamed in results of at most maxReplyBytes (a larger cart is sent alone), so that B2B carts
+     * stay under the gRPC message limit of the client.
+     */
+    @Override
+    public void getCartsByUserIds(GetCartsByUserIdsRequest request, StreamObserver<GetCartsByUserIdsResult> responseObserver) {
+
+        if (request.getUserIdsCount() > maxUserIdsPerBatch) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                .withDescription("At most " + maxUserIdsPerBatch + " user ids per request")
+                .asRuntimeException()
+            );
+            return;
+        }
+
+        cartRepo.getCartsByUserIds(request.getUserIdsList())
+            .collectList()
+            .flatMap(cartHydrator::hydrateAll)
+            .doOnSuccess(carts -> {
+                var result = GetCartsByUserIdsResult.newBuilder();
+                var resultBytes = 0;
+                for (var cart : carts) {
+                    var mapped = CartMapper.mapFromEntity(cart);
+                    var cartBytes = CodedOutputStream.computeMessageSize(GetCartsByUserIdsResult.CARTS_FIELD_NUMBER, mapped);
+                    if (result.getCartsCount() > 0 && resultBytes + cartBytes > maxReplyBytes) {
+                        responseObserver.onNext(result.build());
+                        result = GetCartsByUserIdsResult.newBuilder();
+                        resultBytes = 0;
+                    }
+                    result.addCarts(mapped);
+                    resultBytes += cartBytes;
+                }
+                if (result.getCartsCount() > 0) {
+                    responseObserver.onNext(result.build());
+                }
+                responseObserver.onCompleted();
+            })
+            .doOnError(ex ->
+                responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage()).asRuntimeException())
+            )
+            .subscribe();
+    }
+
     @Override
     public void cartUpdateRequest(CartUpdateRequest request, StreamObserver<CartUpdateRequestResult> responseObserver) {
 
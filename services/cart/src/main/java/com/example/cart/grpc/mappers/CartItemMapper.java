@@ -4,6 +4,7 @@ import com.example.cart.entities.Cart.*;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 public class CartItemMapper {
     public static com.example.grpc.cart.stubs.CartItem mapFromEntity(CartItem entity) {
@@ -12,11 +13,18 @@ public class CartItemMapper {
         }
         return com.example.grpc.cart.stubs.CartItem.newBuilder()
             .setProductId(entity.getProductId())
-            .setProductName(entity.getProductName())
+            .setProductName(Objects.requireNonNullElse(entity.getProductName(), ""))
             .setQuantity(entity.getQuantity())
             .build();
     }
 
+    public static CartItem mapToEntity(com.example.grpc.cart.stubs.CartItem data) {
+        if (data == null) {
+            return null;
+        }
+        return new CartItem(data.getProductId(), data.getProductName(), data.getQuantity());
+    }
+
     public static Map<String, com.example.grpc.cart.stubs.CartItem> mapFromEntities(Map<String, CartItem> entities) {
         if (entities == null) {
             return Map.of();
@@ -25,4 +33,10 @@ public class CartItemMapper {
         entities.forEach((key, value) -> items.put(key, mapFromEntity(value)));
         return items;
     }
+
+    public static Map<String, CartItem> mapToEntities(Map<String, com.example.grpc.cart.stubs.CartItem> data) {
+        var items = new HashMap<String, CartItem>();
+        data.forEach((key, value) -> items.put(key, mapToEntity(value)));
+        return items;
+    }
 }
@@ -15,4 +15,17 @@ public class CartMapper {
             .putAllValidations(CartValidationMapper.mapFromEntities(cart.getValidations()))
             .build();
     }
+
+    public static Cart mapToEntity(com.example.grpc.cart.stubs.Cart data) {
+        if (data == null) {
+            return null;
+        }
+        return new Cart(
+            data.getUserId(),
+            data.getVersionNumber(),
+            CartItemMapper.mapToEntities(data.getItemsMap()),
+            ProductAvailabilityMapper.mapToEntities(data.getProductAvailabilitiesMap()),
+            CartValidationMapper.mapToEntities(data.getValidationsMap())
+        );
+    }
 }
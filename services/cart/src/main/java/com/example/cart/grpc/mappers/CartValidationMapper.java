@@ -19,6 +19,17 @@ public class CartValidationMapper {
             .build();
     }
 
+    public static CartValidation mapToEntity(com.example.grpc.cart.stubs.CartValidation data) {
+        if (data == null) {
+            return null;
+        }
+        return new CartValidation(
+            data.getProductId(),
+            data.getMessage(),
+            CartValidation.CartValidationType.valueOf(data.getType().toString())
+        );
+    }
+
     public static Map<String, com.example.grpc.cart.stubs.CartValidation> mapFromEntities(Map<String, CartValidation> entities) {
         if (entities == null) {
             return Map.of();
@@ -27,4 +38,10 @@ public class CartValidationMapper {
         entities.forEach((key, value) -> items.put(key, mapFromEntity(value)));
         return items;
     }
+
+    public static Map<String, CartValidation> mapToEntities(Map<String, com.example.grpc.cart.stubs.CartValidation> data) {
+        var items = new HashMap<String, CartValidation>();
+        data.forEach((key, value) -> items.put(key, mapToEntity(value)));
+        return items;
+    }
 }
@@ -19,6 +19,19 @@ public class ProductAvailabilityMapper {
             .build();
     }
 
+    public static ProductAvailability mapToEntity(com.example.grpc.cart.stubs.ProductAvailability data) {
+        if (data == null) {
+            return null;
+        }
+        return new ProductAvailability(
+            data.getProductId(),
+            data.getProductName(),
+            data.getPrice(),
+            data.getAvailableStock(),
+            data.getIsAvailable()
+        );
+    }
+
     public static Map<String, com.example.grpc.cart.stubs.ProductAvailability> mapFromEntities(Map<String, ProductAvailability> entities) {
         if (entities == null) {
             return Map.of();
@@ -27,4 +40,10 @@ public class ProductAvailabilityMapper {
         entities.forEach((key, value) -> items.put(key, mapFromEntity(value)));
         return items;
     }
+
+    public static Map<String, ProductAvailability> mapToEntities(Map<String, com.example.grpc.cart.stubs.ProductAvailability> data) {
+        var items = new HashMap<String, ProductAvailability>();
+        data.forEach((key, value) -> items.put(key, mapToEntity(value)));
+        return items;
+    }
 }
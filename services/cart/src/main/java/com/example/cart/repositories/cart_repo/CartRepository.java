@@ -1,9 +1,33 @@
 package com.example.cart.repositories.cart_repo;
 
 import com.example.cart.entities.Cart;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+
 public interface CartRepository {
     Mono<Cart> getCartByUserId(String userId);
+
+    /**
+     * Reads many carts with as few round trips as the driver allows, in the order of the given user ids.
+     * Users without a cart are skipped, duplicated ids are read once.
+     */
+    Flux<Cart> getCartsByUserIds(Collection<String> userIds);
+
     Mono<Cart> saveCart(Cart cart);
+
+    /**
+     * Saves the cart only if the stored version still equals the expected one,
+     * otherwise fails with {@link com.example.cart.repositories.cart_repo.exceptions.CartVersionConflict}.
+     * A cart that does not exist yet has the version 0.
+     */
+    Mono<Cart> saveCartIfVersion(Cart cart, Integer expectedVersion);
+
+    /**
+     * Same as {@link #saveCartIfVersion(Cart, Integer)}, and also rejects the write with
+     * {@link com.example.cart.repositories.cart_repo.exceptions.CartWriteFenced} when a newer
+     * fencing token was already stored with the cart. The given token is stored on success.
+     */
+    Mono<Cart> saveCartIfVersion(Cart cart, Integer expectedVersion, Long fencingToken);
 }
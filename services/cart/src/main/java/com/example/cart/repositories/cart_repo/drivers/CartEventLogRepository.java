@@ -0,0 +1,301 @@
+package com.example.cart.repositories.cart_repo.drivers;
+
+import com.example.cart.entities.Cart;
+import com.example.cart.grpc.mappers.CartItemMapper;
+import com.example.cart.grpc.mappers.CartValidationMapper;
+import com.example.cart.grpc.mappers.ProductAvailabilityMapper;
+import com.example.cart.repositories.cart_repo.exceptions.CartVersionConflict;
+import com.example.cart.repositories.cart_repo.exceptions.CartWriteFenced;
+import com.example.cart.repositories.cart_repo.exceptions.SaveCartFailed;
+import com.example.cart.repositories.cart_repo.serializers.CartRedisSerializer;
+import com.example.cart.repositories.keys.RedisKeyLayout;
+import com.example.cart.services.cart_service.entities.CartUpdateRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.observation.annotation.Observed;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Event-sourced carts: every save appends one entry to the cart log (a Redis Stream) with the applied
+ * requests and the new values of the touched products, and a snapshot of the whole cart is stored in the
+ * head hash only every N versions. Reads materialize the snapshot plus the log entries after it.
+ *
+ * The log keeps the applied requests (up to max-length entries), see {@link #listLoggedRequests},
+ * so carts and validations can be rebuilt without reprocessing the Kafka topic.
+ */
+@Repository
+@Qualifier("cartStorage")
+@ConditionalOnProperty(name = "order-processing-system.repositories.carts.storage-driver", havingValue = "event-log")
+public class CartEventLogRepository implements com.example.cart.repositories.cart_repo.CartRepository {
+
+    public static final String VERSION_FIELD = "version";
+    public static final String SNAPSHOT_FIELD = "snapshot";
+    public static final String SNAPSHOT_ID_FIELD = "snapshot_id";
+    public static final String REQUEST_PREFIX = "request:";
+    public static final String ITEM_PREFIX = "item:";
+    public static final String AVAILABILITY_PREFIX = "availability:";
+    public static final String VALIDATION_PREFIX = "validation:";
+
+    private static final byte[] REMOVED = new byte[0];
+
+    @Autowired
+    private ReactiveRedisTemplate<String, byte[]> redisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Resource(name = "cartLogAppendLuaScript")
+    private DefaultRedisScript<Long> appendScript;
+
+    @Value("${order-processing-system.repositories.carts.event-log.snapshot-every:50}")
+    private Integer snapshotEvery;
+
+    @Value("${order-processing-system.repositories.carts.event-log.max-length:1000}")
+    private Integer maxLength;
+
+    @Value("${order-processing-system.repositories.carts.idle-ttl-sec:0}")
+    private Long idleTtlSeconds;
+
+    @Value("${order-processing-system.repositories.carts.batch-read.chunk-size:500}")
+    private Integer batchReadChunkSize;
+
+    @Autowired
+    private RedisKeyLayout keyLayout;
+
+    private final String keyPrefix = "order-processing-system:cart-logs:";
+
+    private final CartRedisSerializer snapshotSerializer = new CartRedisSerializer(CartRedisSerializer.PROTO_FORMAT);
+
+    private final RedisElementReader<Long> resultReader = RedisElementReader.from(new GenericToStringSerializer<>(Long.class));
+
+    private final RedisElementWriter<Object> argsWriter = arg -> arg instanceof byte[] bytes
+        ? ByteBuffer.wrap(bytes)
+        : StandardCharsets.UTF_8.encode(String.valueOf(arg));
+
+    @PostConstruct
+    public void checkRetention() {
+        // trimming the entries after the snapshot would lose saved versions
+        if (maxLength <= snapshotEvery) {
+            throw new IllegalStateException(String.format(
+                "The cart log max length (%s) must be greater than the snapshot interval (%s)", maxLength, snapshotEvery
+            ));
+        }
+    }
+
+    @Override
+    @Observed(name = "get_cart_by_user_id", lowCardinalityKeyValues = {
+        "db.system", "redis",
+        "repository.name", "cart_event_log_repository"
+    })
+    public Mono<Cart> getCartByUserId(String userId) {
+        return keyLayout.migrateLegacyKeys(keyPrefix, userId, List.of("", ":head"))
+            .thenMany(redisTemplate.<String, byte[]>opsForHash().entries(headKey(userId)))
+            .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+            .filter(head -> head.containsKey(VERSION_FIELD))
+            .flatMap(head -> {
+                var snapshot = head.containsKey(SNAPSHOT_FIELD)
+                    ? snapshotSerializer.deserialize(head.get(SNAPSHOT_FIELD))
+                    : new Cart(userId);
+                var tail = head.containsKey(SNAPSHOT_ID_FIELD)
+                    ? Range.rightUnbounded(Range.Bound.exclusive(new String(head.get(SNAPSHOT_ID_FIELD), StandardCharsets.UTF_8)))
+                    : Range.<String>unbounded();
+                return redisTemplate.<String, byte[]>opsForStream()
+                    .range(logKey(userId), tail)
+                    .reduce(snapshot, this::applyEntry);
+            });
+    }
+
+    /**
+     * A cart takes more than one command here, so up to chunk-size carts are read concurrently instead:
+     * their commands are pipelined on the shared connection rather than waiting one round trip each.
+     */
+    @Override
+    @Observed(name = "get_carts_by_user_ids", lowCardinalityKeyValues = {
+        "db.system", "redis",
+        "repository.name", "cart_event_log_repository"
+    })
+    public Flux<Cart> getCartsByUserIds(Collection<String> userIds) {
+        return Flux.fromIterable(new LinkedHashSet<>(userIds))
+            .flatMapSequential(this::getCartByUserId, batchReadChunkSize);
+    }
+
+    @Override
+    @Observed(name = "save_cart", lowCardinalityKeyValues = {
+        "db.system", "redis",
+        "repository.name", "cart_event_log_repository"
+    })
+    public Mono<Cart> saveCart(Cart cart) {
+        return append(cart, null, null)
+            .flatMap(r -> r == 1 ? Mono.just(cart) : Mono.error(new SaveCartFailed()));
+    }
+
+    @Override
+    @Observed(name = "save_cart_if_version", lowCardinalityKeyValues = {
+        "db.system", "redis",
+        "repository.name", "cart_event_log_repository"
+    })
+    public Mono<Cart> saveCartIfVersion(Cart cart, Integer expectedVersion) {
+        return saveCartIfVersion(cart, expectedVersion, null);
+    }
+
+    @Override
+    @Observed(name = "save_cart_if_version", lowCardinalityKeyValues = {
+        "db.system", "redis",
+        "repository.name", "cart_event_log_repository"
+    })
+    public Mono<Cart> saveCartIfVersion(Cart cart, Integer expectedVersion, Long fencingToken) {
+        return append(cart, expectedVersion, fencingToken)
+            .flatMap(r -> switch (r.intValue()) {
+                case 1 -> Mono.just(cart);
+                case -1 -> Mono.<Cart>error(new CartWriteFenced(cart.getUserId(), fencingToken));
+                default -> Mono.<Cart>error(new CartVersionConflict(cart.getUserId(), expectedVersion));
+            });
+    }
+
+    /**
+     * The requests still retained in the cart log, by version, to rebuild the cart or its validations.
+     */
+    public Flux<CartUpdateRequest> listLoggedRequests(String userId) {
+        return redisTemplate.<String, byte[]>opsForStream()
+            .range(logKey(userId), Range.unbounded())
+            .flatMapIterable(record -> record.getValue().entrySet().stream()
+                .filter(field -> field.getKey().startsWith(REQUEST_PREFIX))
+                .map(field -> readRequest(field.getValue()))
+                .sorted(Comparator.comparing(CartUpdateRequest::getVersionNumber))
+                .toList()
+            );
+    }
+
+    private Mono<Long> append(Cart cart, Integer expectedVersion, Long fencingToken) {
+        var applied = cart.getAppliedRequests();
+        var touched = cart.getTouchedProductIds();
+        var isSnapshot = touched == null
+            || applied == null
+            || applied.isEmpty()
+            || (applied.getFirst().getVersionNumber() - 1) / snapshotEvery != cart.getVersionNumber() / snapshotEvery;
+
+        var entry = new ArrayList<Object>();
+        entry.add(VERSION_FIELD);
+        entry.add(cart.getVersionNumber());
+        entry.add(SNAPSHOT_FIELD);
+        entry.add(isSnapshot ? "1" : "0");
+        if (applied != null) {
+            for (var i = 0; i < applied.size(); i++) {
+                entry.add(REQUEST_PREFIX + i);
+                entry.add(writeRequest(applied.get(i)));
+            }
+        }
+        if (touched != null) {
+            for (var productId : touched) {
+                entry.add(ITEM_PREFIX + productId);
+                entry.add(toBytes(CartItemMapper.mapFromEntity(get(cart.getItems(), productId))));
+                entry.add(AVAILABILITY_PREFIX + productId);
+                entry.add(toBytes(ProductAvailabilityMapper.mapFromEntity(get(cart.getProductAvailabilities(), productId))));
+                entry.add(VALIDATION_PREFIX + productId);
+                entry.add(toBytes(CartValidationMapper.mapFromEntity(get(cart.getValidations(), productId))));
+            }
+        }
+
+        var args = new ArrayList<Object>();
+        args.add(expectedVersion == null ? "" : expectedVersion);
+        args.add(cart.getVersionNumber());
+        args.add(fencingToken == null ? "" : fencingToken);
+        args.add(isSnapshot ? snapshotSerializer.serialize(cart) : "");
+        args.add(maxLength);
+        args.add(idleTtlSeconds);
+        args.addAll(entry);
+
+        return redisTemplate
+            .execute(appendScript, List.of(logKey(cart.getUserId()), headKey(cart.getUserId())), args, argsWriter, resultReader)
+            .next();
+    }
+
+    private Cart applyEntry(Cart cart, MapRecord<String, String, byte[]> record) {
+        try {
+            for (var field : record.getValue().entrySet()) {
+                var name = field.getKey();
+                var value = field.getValue();
+                if (name.equals(VERSION_FIELD)) {
+                    cart.setVersionNumber(Integer.valueOf(new String(value, StandardCharsets.UTF_8)));
+                } else if (name.startsWith(ITEM_PREFIX)) {
+                    var productId = name.substring(ITEM_PREFIX.length());
+                    if (value.length == 0) {
+                        cart.getItems().remove(productId);
+                    } else {
+                        cart.getItems().put(productId, CartItemMapper.mapToEntity(com.example.grpc.cart.stubs.CartItem.parseFrom(value)));
+                    }
+                } else if (name.startsWith(AVAILABILITY_PREFIX)) {
+                    var productId = name.substring(AVAILABILITY_PREFIX.length());
+                    if (value.length == 0) {
+                        cart.getProductAvailabilities().remove(productId);
+                    } else {
+                        cart.getProductAvailabilities().put(productId, ProductAvailabilityMapper.mapToEntity(com.example.grpc.cart.stubs.ProductAvailability.parseFrom(value)));
+                    }
+                } else if (name.startsWith(VALIDATION_PREFIX)) {
+                    var productId = name.substring(VALIDATION_PREFIX.length());
+                    if (value.length == 0) {
+                        cart.getValidations().remove(productId);
+                    } else {
+                        cart.getValidations().put(productId, CartValidationMapper.mapToEntity(com.example.grpc.cart.stubs.CartValidation.parseFrom(value)));
+                    }
+                }
+            }
+        } catch (InvalidProtocolBufferException ex) {
+            throw new SerializationException("Failed to read the cart log entry " + record.getId(), ex);
+        }
+        return cart;
+    }
+
+    private byte[] writeRequest(CartUpdateRequest request) {
+        try {
+            return objectMapper.writeValueAsBytes(request);
+        } catch (IOException ex) {
+            throw new SerializationException("Failed to write the cart update request", ex);
+        }
+    }
+
+    private CartUpdateRequest readRequest(byte[] bytes) {
+        try {
+            return objectMapper.readValue(bytes, CartUpdateRequest.class);
+        } catch (IOException ex) {
+            throw new SerializationException("Failed to read the cart update request", ex);
+        }
+    }
+
+    private byte[] toBytes(com.google.protobuf.Message message) {
+        return message == null ? REMOVED : message.toByteArray();
+    }
+
+    private <T> T get(Map<String, T> map, String productId) {
+        return map == null ? null : map.get(productId);
+    }
+
+    private String logKey(String userId) {
+        return keyPrefix + keyLayout.user(userId);
+    }
+
+    private String headKey(String userId) {
+        return keyPrefix + keyLayout.user(userId) + ":head";
+    }
+}
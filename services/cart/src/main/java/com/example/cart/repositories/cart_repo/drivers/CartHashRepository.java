@@ -0,0 +1,209 @@
+package com.example.cart.repositories.cart_repo.drivers;
+
+import com.example.cart.entities.Cart;
+import com.example.cart.grpc.mappers.CartItemMapper;
+import com.example.cart.grpc.mappers.CartValidationMapper;
+import com.example.cart.grpc.mappers.ProductAvailabilityMapper;
+import com.example.cart.repositories.cart_repo.exceptions.CartVersionConflict;
+import com.example.cart.repositories.cart_repo.exceptions.CartWriteFenced;
+import com.example.cart.repositories.cart_repo.exceptions.SaveCartFailed;
+import com.example.cart.repositories.keys.RedisKeyLayout;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.observation.annotation.Observed;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Stores each cart as a Redis hash: one field per item, product availability and validation
+ * (the cart.proto message of each), plus the version, user id and fencing token fields.
+ *
+ * Only the products touched since the cart was read (see {@link Cart#getTouchedProductIds()}) are written,
+ * so changing one item costs O(1) fields instead of rewriting the whole cart.
+ */
+@Repository
+@Qualifier("cartStorage")
+@ConditionalOnProperty(name = "order-processing-system.repositories.carts.storage-driver", havingValue = "hash")
+public class CartHashRepository implements com.example.cart.repositories.cart_repo.CartRepository {
+
+    public static final String USER_ID_FIELD = "user_id";
+    public static final String VERSION_FIELD = "version";
+    public static final String FENCING_TOKEN_FIELD = "fencing_token";
+    public static final String ITEM_PREFIX = "item:";
+    public static final String AVAILABILITY_PREFIX = "availability:";
+    public static final String VALIDATION_PREFIX = "validation:";
+
+    @Autowired
+    private ReactiveRedisTemplate<String, byte[]> redisTemplate;
+
+    @Resource(name = "cartHashWriteLuaScript")
+    private DefaultRedisScript<Long> writeScript;
+
+    @Value("${order-processing-system.repositories.carts.idle-ttl-sec:0}")
+    private Long idleTtlSeconds;
+
+    @Value("${order-processing-system.repositories.carts.batch-read.chunk-size:500}")
+    private Integer batchReadChunkSize;
+
+    @Autowired
+    private RedisKeyLayout keyLayout;
+
+    private final String keyPrefix = "order-processing-system:cart-hashes:";
+
+    private final RedisElementReader<Long> resultReader = RedisElementReader.from(new GenericToStringSerializer<>(Long.class));
+
+    private final RedisElementWriter<Object> argsWriter = arg -> arg instanceof byte[] bytes
+        ? ByteBuffer.wrap(bytes)
+        : StandardCharsets.UTF_8.encode(String.valueOf(arg));
+
+    @Override
+    @Observed(name = "get_cart_by_user_id", lowCardinalityKeyValues = {
+        "db.system", "redis",
+        "repository.name", "cart_hash_repository"
+    })
+    public Mono<Cart> getCartByUserId(String userId) {
+        return keyLayout.migrateLegacyKeys(keyPrefix, userId, List.of(""))
+            .thenMany(redisTemplate.<String, byte[]>opsForHash().entries(cartKey(userId)))
+            .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+            .filter(fields -> fields.containsKey(VERSION_FIELD))
+            .map(this::toCart);
+    }
+
+    /**
+     * A cart takes more than one command here, so up to chunk-size carts are read concurrently instead:
+     * their commands are pipelined on the shared connection rather than waiting one round trip each.
+     */
+    @Override
+    @Observed(name = "get_carts_by_user_ids", lowCardinalityKeyValues = {
+        "db.system", "redis",
+        "repository.name", "cart_hash_repository"
+    })
+    public Flux<Cart> getCartsByUserIds(Collection<String> userIds) {
+        return Flux.fromIterable(new LinkedHashSet<>(userIds))
+            .flatMapSequential(this::getCartByUserId, batchReadChunkSize);
+    }
+
+    @Override
+    @Observed(name = "save_cart", lowCardinalityKeyValues = {
+        "db.system", "redis",
+        "repository.name", "cart_hash_repository"
+    })
+    public Mono<Cart> saveCart(Cart cart) {
+        return write(cart, null, null)
+            .flatMap(r -> r == 1 ? Mono.just(cart) : Mono.error(new SaveCartFailed()));
+    }
+
+    @Override
+    @Observed(name = "save_cart_if_version", lowCardinalityKeyValues = {
+        "db.system", "redis",
+        "repository.name", "cart_hash_repository"
+    })
+    public Mono<Cart> saveCartIfVersion(Cart cart, Integer expectedVersion) {
+        return saveCartIfVersion(cart, expectedVersion, null);
+    }
+
+    @Override
+    @Observed(name = "save_cart_if_version", lowCardinalityKeyValues = {
+        "db.system", "redis",
+        "repository.name", "cart_hash_repository"
+    })
+    public Mono<Cart> saveCartIfVersion(Cart cart, Integer expectedVersion, Long fencingToken) {
+        return write(cart, expectedVersion, fencingToken)
+            .flatMap(r -> switch (r.intValue()) {
+                case 1 -> Mono.just(cart);
+                case -1 -> Mono.<Cart>error(new CartWriteFenced(cart.getUserId(), fencingToken));
+                default -> Mono.<Cart>error(new CartVersionConflict(cart.getUserId(), expectedVersion));
+            });
+    }
+
+    private Mono<Long> write(Cart cart, Integer expectedVersion, Long fencingToken) {
+        var isFullRewrite = cart.getTouchedProductIds() == null;
+        var productIds = isFullRewrite ? allProductIds(cart) : cart.getTouchedProductIds();
+
+        var setArgs = new ArrayList<Object>();
+        var deleteArgs = new ArrayList<Object>();
+        for (var productId : productIds) {
+            writeField(ITEM_PREFIX + productId, CartItemMapper.mapFromEntity(get(cart.getItems(), productId)), setArgs, deleteArgs);
+            writeField(AVAILABILITY_PREFIX + productId, ProductAvailabilityMapper.mapFromEntity(get(cart.getProductAvailabilities(), productId)), setArgs, deleteArgs);
+            writeField(VALIDATION_PREFIX + productId, CartValidationMapper.mapFromEntity(get(cart.getValidations(), productId)), setArgs, deleteArgs);
+        }
+
+        var args = new ArrayList<Object>();
+        args.add(expectedVersion == null ? "" : expectedVersion);
+        args.add(cart.getVersionNumber());
+        args.add(fencingToken == null ? "" : fencingToken);
+        args.add(isFullRewrite ? "1" : "0");
+        args.add(cart.getUserId());
+        args.add(setArgs.size() / 2);
+        args.add(idleTtlSeconds);
+        args.addAll(setArgs);
+        args.addAll(deleteArgs);
+
+        return redisTemplate
+            .execute(writeScript, List.of(cartKey(cart.getUserId())), args, argsWriter, resultReader)
+            .next();
+    }
+
+    private void writeField(String field, com.google.protobuf.Message value, List<Object> setArgs, List<Object> deleteArgs) {
+        if (value == null) {
+            deleteArgs.add(field);
+            return;
+        }
+        setArgs.add(field);
+        setArgs.add(value.toByteArray());
+    }
+
+    private Cart toCart(Map<String, byte[]> fields) {
+        var cart = new Cart(new String(fields.get(USER_ID_FIELD), StandardCharsets.UTF_8));
+        cart.setVersionNumber(Integer.valueOf(new String(fields.get(VERSION_FIELD), StandardCharsets.UTF_8)));
+        try {
+            for (var field : fields.entrySet()) {
+                var name = field.getKey();
+                if (name.startsWith(ITEM_PREFIX)) {
+                    var item = CartItemMapper.mapToEntity(com.example.grpc.cart.stubs.CartItem.parseFrom(field.getValue()));
+                    cart.getItems().put(name.substring(ITEM_PREFIX.length()), item);
+                } else if (name.startsWith(AVAILABILITY_PREFIX)) {
+                    var availability = ProductAvailabilityMapper.mapToEntity(com.example.grpc.cart.stubs.ProductAvailability.parseFrom(field.getValue()));
+                    cart.getProductAvailabilities().put(name.substring(AVAILABILITY_PREFIX.length()), availability);
+                } else if (name.startsWith(VALIDATION_PREFIX)) {
+                    var validation = CartValidationMapper.mapToEntity(com.example.grpc.cart.stubs.CartValidation.parseFrom(field.getValue()));
+                    cart.getValidations().put(name.substring(VALIDATION_PREFIX.length()), validation);
+                }
+            }
+        } catch (InvalidProtocolBufferException ex) {
+            throw new SerializationException("Failed to read the cart hash fields", ex);
+        }
+        return cart;
+    }
+
+    private Set<String> allProductIds(Cart cart) {
+        var productIds = new HashSet<String>();
+        Optional.ofNullable(cart.getItems()).ifPresent(m -> productIds.addAll(m.keySet()));
+        Optional.ofNullable(cart.getProductAvailabilities()).ifPresent(m -> productIds.addAll(m.keySet()));
+        Optional.ofNullable(cart.getValidations()).ifPresent(m -> productIds.addAll(m.keySet()));
+        return productIds;
+    }
+
+    private <T> T get(Map<String, T> map, String productId) {
+        return map == null ? null : map.get(productId);
+    }
+
+    private String cartKey(String userId) {
+        return keyPrefix + keyLayout.user(userId);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.cart.repositories.cart_repo.drivers;
+
+import com.example.cart.entities.Cart;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process copy of the carts whose partition is assigned to this instance.
+ * Entries are only accepted and served while the partition of the user (the record key) is owned,
+ * and are dropped as soon as the partition is revoked or lost in a rebalance.
+ */
+@Component
+@ConditionalOnProperty(name = "order-processing-system.repositories.carts.near-cache.enabled", havingValue = "true")
+public class CartNearCache implements ConsumerAwareRebalanceListener {
+
+    private final Logger log = LoggerFactory.getLogger(CartNearCache.class);
+
+    private final Set<Integer> ownedPartitions = ConcurrentHashMap.newKeySet();
+    private volatile int partitionsCount = 0;
+
+    @Value("${order-processing-system.messaging.cart-update-requests.topic-name}")
+    private String topic;
+
+    private final Map<String, Cart> carts;
+
+    public CartNearCache(@Value("${order-processing-system.repositories.carts.near-cache.max-entries:100000}") Integer maxEntries) {
+        this.carts = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cart> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public Cart get(String userId) {
+        if (! isOwned(userId)) {
+            return null;
+        }
+        synchronized (carts) {
+            var cart = carts.get(userId);
+            return cart == null ? null : copy(cart);
+        }
+    }
+
+    /**
+     * Caches a cart just written to the storage, it replaces the cached one.
+     */
+    public void put(Cart cart) {
+        if (cart == null || ! isOwned(cart.getUserId())) {
+            return;
+        }
+        synchronized (carts) {
+            carts.put(cart.getUserId(), copy(cart));
+        }
+    }
+
+    /**
+     * Caches a cart read from the storage, unless a newer version was cached meanwhile:
+     * a read that completes after a save must not bring back the previous version.
+     */
+    public void fill(Cart cart) {
+        if (cart == null || ! isOwned(cart.getUserId())) {
+            return;
+        }
+        synchronized (carts) {
+            var cached = carts.get(cart.getUserId());
+            if (cached == null || cached.getVersionNumber() < cart.getVersionNumber()) {
+                carts.put(cart.getUserId(), copy(cart));
+            }
+        }
+    }
+
+    public void evict(String userId) {
+        synchronized (carts) {
+            carts.remove(userId);
+        }
+    }
+
+    public boolean isOwned(String userId) {
+        var count = partitionsCount;
+        return count > 0 && ownedPartitions.contains(partitionFor(userId, count));
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        var assigned = partitions.stream().filter(tp -> topic.equals(tp.topic())).map(TopicPartition::partition).toList();
+        if (assigned.isEmpty()) {
+            return;
+        }
+        partitionsCount = consumer.partitionsFor(topic).size();
+        ownedPartitions.addAll(assigned);
+        log.info("Near cache - partitions assigned: {} - owned partitions: {}", assigned, ownedPartitions);
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        release(partitions);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        release(partitions);
+    }
+
+    private void release(Collection<TopicPartition> partitions) {
+        var released = partitions.stream().filter(tp -> topic.equals(tp.topic())).map(TopicPartition::partition).toList();
+        if (released.isEmpty()) {
+            return;
+        }
+        ownedPartitions.removeAll(released);
+        var count = partitionsCount;
+        synchronized (carts) {
+            carts.keySet().removeIf(userId -> released.contains(partitionFor(userId, count)));
+        }
+        log.info("Near cache - partitions released: {} - owned partitions: {}", released, ownedPartitions);
+    }
+
+    /**
+     * Same partition the producer picks for the record key (the default partitioner hashes the key with murmur2).
+     */
+    private int partitionFor(String userId, int count) {
+        return Utils.toPositive(Utils.murmur2(userId.getBytes(StandardCharsets.UTF_8))) % count;
+    }
+
+    private Cart copy(Cart cart) {
+        var items = new HashMap<String, Cart.CartItem>();
+        if (cart.getItems() != null) {
+            cart.getItems().forEach((productId, item) ->
+                items.put(productId, new Cart.CartItem(item.getProductId(), item.getProductName(), item.getQuantity()))
+            );
+        }
+        return new Cart(
+            cart.getUserId(),
+            cart.getVersionNumber(),
+            items,
+            cart.getProductAvailabilities() == null ? new HashMap<>() : new HashMap<>(cart.getProductAvailabilities()),
+            cart.getValidations() == null ? new HashMap<>() : new HashMap<>(cart.getValidations())
+        );
+    }
+}
@@ -1,29 +1,90 @@
 package com.example.cart.repositories.cart_repo.drivers;
 
 import com.example.cart.entities.Cart;
+import com.example.cart.repositories.cart_repo.exceptions.CartVersionConflict;
+import com.example.cart.repositories.cart_repo.exceptions.CartWriteFenced;
 import com.example.cart.repositories.cart_repo.exceptions.SaveCartFailed;
+import com.example.cart.repositories.keys.RedisKeyLayout;
 import io.micrometer.observation.annotation.Observed;
+import jakarta.annotation.Resource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+
 @Repository
+@Qualifier("cartStorage")
+@ConditionalOnProperty(name = "order-processing-system.repositories.carts.storage-driver", havingValue = "string", matchIfMissing = true)
 public class CartRepository implements com.example.cart.repositories.cart_repo.CartRepository {
 
     @Autowired
     private ReactiveRedisTemplate<String, Cart> redisTemplate;
 
+    @Resource(name = "cartSaveLuaScript")
+    private DefaultRedisScript<Long> saveScript;
+
+    @Resource(name = "cartCompareAndSetLuaScript")
+    private DefaultRedisScript<Long> compareAndSetScript;
+
+    @Value("${order-processing-system.repositories.carts.idle-ttl-sec:0}")
+    private Long idleTtlSeconds;
+
+    @Value("${order-processing-system.repositories.carts.archive-ttl-sec:0}")
+    private Long archiveTtlSeconds;
+
+    @Value("${order-processing-system.repositories.carts.batch-read.chunk-size:500}")
+    private Integer batchReadChunkSize;
+
+    @Value("${order-processing-system.repositories.carts.batch-read.concurrency:8}")
+    private Integer batchReadConcurrency;
+
+    @Autowired
+    private RedisKeyLayout keyLayout;
+
     private final String keyPrefix = "order-processing-system:carts:";
 
+    private final List<String> keySuffixes = List.of("", ":version", ":fencing-token", ":archive");
+
+    private final RedisElementReader<Long> resultReader = RedisElementReader.from(new GenericToStringSerializer<>(Long.class));
+
     @Override
     @Observed(name = "get_cart_by_user_id", lowCardinalityKeyValues = {
         "db.system", "redis",
         "repository.name", "cart_repository"
     })
     public Mono<Cart> getCartByUserId(String userId) {
-        return redisTemplate.opsForValue().get(keyPrefix + userId);
+        return migrateLegacyKeys(userId).then(redisTemplate.opsForValue().get(cartKey(userId)));
+    }
+
+    /**
+     * One MGET per chunk of keys, the chunks are sent without waiting for the previous replies
+     * (the commands are pipelined on the shared connection).
+     */
+    @Override
+    @Observed(name = "get_carts_by_user_ids", lowCardinalityKeyValues = {
+        "db.system", "redis",
+        "repository.name", "cart_repository"
+    })
+    public Flux<Cart> getCartsByUserIds(Collection<String> userIds) {
+        return Flux.fromIterable(new LinkedHashSet<>(userIds))
+            .flatMapSequential(userId -> migrateLegacyKeys(userId).thenReturn(cartKey(userId)), batchReadChunkSize)
+            .buffer(batchReadChunkSize)
+            .flatMapSequential(keys -> redisTemplate.opsForValue().multiGet(keys), batchReadConcurrency)
+            .flatMapIterable(carts -> carts.stream().filter(Objects::nonNull).toList());
     }
 
     @Override
@@ -32,8 +93,81 @@ public class CartRepository implements com.example.cart.repositories.cart_repo.C
         "repository.name", "cart_repository"
     })
     public Mono<Cart> saveCart(Cart cart) {
-        return redisTemplate.opsForValue()
-            .set(keyPrefix + cart.getUserId(), cart)
-            .flatMap(ok -> ok ? Mono.just(cart) : Mono.error(new SaveCartFailed()));
+        return redisTemplate
+            .execute(saveScript, keys(cart.getUserId()), List.of(cart, cart.getVersionNumber(), idleTtlSeconds, abandoned(cart), archiveTtlSeconds), argsWriter(), resultReader)
+            .next()
+            .flatMap(r -> r == 1 ? Mono.just(cart) : Mono.error(new SaveCartFailed()));
+    }
+
+    @Override
+    @Observed(name = "save_cart_if_version", lowCardinalityKeyValues = {
+        "db.system", "redis",
+        "repository.name", "cart_repository"
+    })
+    public Mono<Cart> saveCartIfVersion(Cart cart, Integer expectedVersion) {
+        return saveCartIfVersion(cart, expectedVersion, null);
+    }
+
+    @Override
+    @Observed(name = "save_cart_if_version", lowCardinalityKeyValues = {
+        "db.system", "redis",
+        "repository.name", "cart_repository"
+    })
+    public Mono<Cart> saveCartIfVersion(Cart cart, Integer expectedVersion, Long fencingToken) {
+        var args = List.of(
+            expectedVersion,
+            cart,
+            cart.getVersionNumber(),
+            fencingToken == null ? "" : fencingToken,
+            idleTtlSeconds,
+            abandoned(cart),
+            archiveTtlSeconds
+        );
+        return redisTemplate
+            .execute(compareAndSetScript, keys(cart.getUserId()), args, argsWriter(), resultReader)
+            .next()
+            .flatMap(r -> switch (r.intValue()) {
+                case 1 -> Mono.just(cart);
+                case -1 -> Mono.<Cart>error(new CartWriteFenced(cart.getUserId(), fencingToken));
+                default -> Mono.<Cart>error(new CartVersionConflict(cart.getUserId(), expectedVersion));
+            });
+    }
+
+    /**
+     * Carts are written with the value serializer of the template, other arguments as plain strings.
+     */
+    private RedisElementWriter<Object> argsWriter() {
+        var cartSerializer = redisTemplate.getSerializationContext().getValueSerializationPair();
+        return arg -> arg instanceof Cart cart
+            ? cartSerializer.write(cart)
+            : StandardCharsets.UTF_8.encode(String.valueOf(arg));
+    }
+
+    private Mono<Long> migrateLegacyKeys(String userId) {
+        return keyLayout.migrateLegacyKeys(keyPrefix, userId, keySuffixes);
+    }
+
+    private String abandoned(Cart cart) {
+        return cart.isAbandoned() ? "1" : "0";
+    }
+
+    private List<String> keys(String userId) {
+        return List.of(cartKey(userId), versionKey(userId), fencingTokenKey(userId), archiveKey(userId));
+    }
+
+    private String cartKey(String userId) {
+        return keyPrefix + keyLayout.user(userId);
+    }
+
+    private String versionKey(String userId) {
+        return keyPrefix + keyLayout.user(userId) + ":version";
+    }
+
+    private String fencingTokenKey(String userId) {
+        return keyPrefix + keyLayout.user(userId) + ":fencing-token";
+    }
+
+    private String archiveKey(String userId) {
+        return keyPrefix + keyLayout.user(userId) + ":archive";
     }
 }
@@ -0,0 +1,180 @@
+package com.example.cart.repositories.cart_repo.drivers;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+@Configuration
+public class CartRepositoryProperties {
+
+    /**
+     * Abandoned carts are archived, then the cart keys expire after the idle TTL (0: never), refreshed on each save.
+     * KEYS: cart, version, fencing token, archive. ARGV (after the script arguments): idle TTL, abandoned ("1"/"0"), archive TTL.
+     */
+    private static final String ARCHIVE_AND_EXPIRE = """
+            local function archive_and_expire(keys, idle_ttl, abandoned, archive_ttl)
+              if abandoned == "1" then
+                local previous = redis.call("GET", keys[1])
+                if previous then
+                  if tonumber(archive_ttl) > 0 then
+                    redis.call("SET", keys[4], previous, "EX", archive_ttl)
+                  else
+                    redis.call("SET", keys[4], previous)
+                  end
+                end
+              end
+              return function()
+                if tonumber(idle_ttl) > 0 then
+                  redis.call("EXPIRE", keys[1], idle_ttl)
+                  redis.call("EXPIRE", keys[2], idle_ttl)
+                  redis.call("EXPIRE", keys[3], idle_ttl)
+                end
+              end
+            end
+        """;
+
+    @Bean(name = "cartSaveLuaScript")
+    public DefaultRedisScript<Long> cartSaveLuaScript() {
+        var script = new DefaultRedisScript<Long>(ARCHIVE_AND_EXPIRE + """
+            local keys = KEYS
+            local expire = archive_and_expire(keys, ARGV[3], ARGV[4], ARGV[5])
+            redis.call("SET", keys[1], ARGV[1])
+            redis.call("SET", keys[2], ARGV[2])
+            expire()
+            return 1
+        """);
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    @Bean(name = "cartCompareAndSetLuaScript")
+    public DefaultRedisScript<Long> cartCompareAndSetLuaScript() {
+        var script = new DefaultRedisScript<Long>(ARCHIVE_AND_EXPIRE + """
+            local keys = KEYS
+            local expected_version = tonumber(ARGV[1])
+            local fencing_token = tonumber(ARGV[4])
+            if fencing_token ~= nil then
+              local stored_token = tonumber(redis.call("GET", keys[3]))
+              if stored_token ~= nil and stored_token > fencing_token then
+                return -1
+              end
+            end
+            local current_version = tonumber(redis.call("GET", keys[2]))
+            if current_version == nil then
+              local stored = redis.call("GET", keys[1])
+              if stored then
+                -- carts saved before the version key existed, always JSON (binary carts are saved with their version key)
+                local ok, decoded = pcall(cjson.decode, stored)
+                current_version = ok and tonumber(decoded["versionNumber"]) or -1
+              else
+                current_version = 0
+              end
+            end
+            if current_version ~= expected_version then
+              return 0
+            end
+            local expire = archive_and_expire(keys, ARGV[5], ARGV[6], ARGV[7])
+            redis.call("SET", keys[1], ARGV[2])
+            redis.call("SET", keys[2], ARGV[3])
+            if fencing_token ~= nil then
+              redis.call("SET", keys[3], ARGV[4])
+            end
+            expire()
+            return 1
+        """);
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    /**
+     * ARGV: expected version ("" to skip the check), new version, fencing token (""), full rewrite ("1"/"0"),
+     * user id, count of fields to set, idle TTL (0: never), the field/value pairs to set, then the fields to delete.
+     */
+    @Bean(name = "cartHashWriteLuaScript")
+    public DefaultRedisScript<Long> cartHashWriteLuaScript() {
+        var script = new DefaultRedisScript<Long>("""
+            local key = KEYS[1]
+            if ARGV[3] ~= "" then
+              local stored_token = tonumber(redis.call("HGET", key, "fencing_token"))
+              if stored_token ~= nil and stored_token > tonumber(ARGV[3]) then
+                return -1
+              end
+            end
+            if ARGV[1] ~= "" then
+              local current_version = tonumber(redis.call("HGET", key, "version")) or 0
+              if current_version ~= tonumber(ARGV[1]) then
+                return 0
+              end
+            end
+            if ARGV[4] == "1" then
+              for _, field in ipairs(redis.call("HKEYS", key)) do
+                if string.find(field, "^item:") or string.find(field, "^availability:") or string.find(field, "^validation:") then
+                  redis.call("HDEL", key, field)
+                end
+              end
+            end
+            redis.call("HSET", key, "user_id", ARGV[5], "version", ARGV[2])
+            if ARGV[3] ~= "" then
+              redis.call("HSET", key, "fencing_token", ARGV[3])
+            end
+            local i = 8
+            for _ = 1, tonumber(ARGV[6]) do
+              redis.call("HSET", key, ARGV[i], ARGV[i + 1])
+              i = i + 2
+            end
+            while i <= #ARGV do
+              redis.call("HDEL", key, ARGV[i])
+              i = i + 1
+            end
+            if tonumber(ARGV[7]) > 0 then
+              redis.call("EXPIRE", key, ARGV[7])
+            end
+            return 1
+        """);
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    /**
+     * KEYS: the log stream, the head hash. ARGV: expected version ("" to skip the check), new version,
+     * fencing token (""), snapshot ("" when not snapshotting), log max length, idle TTL (0: never), then the entry field/value pairs.
+     */
+    @Bean(name = "cartLogAppendLuaScript")
+    public DefaultRedisScript<Long> cartLogAppendLuaScript() {
+        var script = new DefaultRedisScript<Long>("""
+            local log_key = KEYS[1]
+            local head_key = KEYS[2]
+            if ARGV[3] ~= "" then
+              local stored_token = tonumber(redis.call("HGET", head_key, "fencing_token"))
+              if stored_token ~= nil and stored_token > tonumber(ARGV[3]) then
+                return -1
+              end
+            end
+            if ARGV[1] ~= "" then
+              local current_version = tonumber(redis.call("HGET", head_key, "version")) or 0
+              if current_version ~= tonumber(ARGV[1]) then
+                return 0
+              end
+            end
+            local entry = {}
+            for i = 7, #ARGV do
+              entry[#entry + 1] = ARGV[i]
+            end
+            local id = redis.call("XADD", log_key, "MAXLEN", "~", ARGV[5], "*", unpack(entry))
+            redis.call("HSET", head_key, "version", ARGV[2])
+            if ARGV[3] ~= "" then
+              redis.call("HSET", head_key, "fencing_token", ARGV[3])
+            end
+            if ARGV[4] ~= "" then
+              redis.call("HSET", head_key, "snapshot", ARGV[4], "snapshot_id", id)
+            end
+            if tonumber(ARGV[6]) > 0 then
+              redis.call("EXPIRE", log_key, ARGV[6])
+              redis.call("EXPIRE", head_key, ARGV[6])
+            end
+            return 1
+        """);
+        script.setResultType(Long.class);
+        return script;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.cart.repositories.cart_repo.drivers;
+
+import com.example.cart.entities.Cart;
+import com.example.cart.repositories.cart_repo.CartRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+
+/**
+ * Serves carts of the owned partitions from {@link CartNearCache}, and writes through to the storage driver.
+ */
+@Repository
+@Primary
+@ConditionalOnProperty(name = "order-processing-system.repositories.carts.near-cache.enabled", havingValue = "true")
+public class NearCachedCartRepository implements CartRepository {
+
+    @Autowired
+    @Qualifier("cartStorage")
+    private CartRepository storage;
+
+    @Autowired
+    private CartNearCache nearCache;
+
+    @Override
+    public Mono<Cart> getCartByUserId(String userId) {
+        return Mono
+            .fromCallable(() -> nearCache.get(userId))
+            .switchIfEmpty(Mono.defer(() -> storage.getCartByUserId(userId).doOnNext(nearCache::fill)));
+    }
+
+    /**
+     * Owned carts are served from the cache, the others are read from the storage in one batch.
+     */
+    @Override
+    public Flux<Cart> getCartsByUserIds(Collection<String> userIds) {
+        return Flux.defer(() -> {
+            var cached = new LinkedHashMap<String, Cart>();
+            var missed = new ArrayList<String>();
+            for (var userId : userIds) {
+                if (cached.containsKey(userId)) {
+                    continue;
+                }
+                var cart = nearCache.get(userId);
+                cached.put(userId, cart);
+                if (cart == null) {
+                    missed.add(userId);
+                }
+            }
+            if (missed.isEmpty()) {
+                return Flux.fromIterable(cached.values());
+            }
+            return storage.getCartsByUserIds(missed)
+                .doOnNext(nearCache::fill)
+                .collectMap(Cart::getUserId)
+                .flatMapIterable(loaded -> cached.entrySet().stream()
+                    .map(entry -> entry.getValue() != null ? entry.getValue() : loaded.get(entry.getKey()))
+                    .filter(cart -> cart != null)
+                    .toList()
+                );
+        });
+    }
+
+    @Override
+    public Mono<Cart> saveCart(Cart cart) {
+        return storage.saveCart(cart)
+            .doOnNext(nearCache::put)
+            .doOnError(ex -> nearCache.evict(cart.getUserId()));
+    }
+
+    @Override
+    public Mono<Cart> saveCartIfVersion(Cart cart, Integer expectedVersion) {
+        return saveCartIfVersion(cart, expectedVersion, null);
+    }
+
+    @Override
+    public Mono<Cart> saveCartIfVersion(Cart cart, Integer expectedVersion, Long fencingToken) {
+        return storage.saveCartIfVersion(cart, expectedVersion, fencingToken)
+            .doOnNext(nearCache::put)
+            .doOnError(ex -> nearCache.evict(cart.getUserId()));
+    }
+}
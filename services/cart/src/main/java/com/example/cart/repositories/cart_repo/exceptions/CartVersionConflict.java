@@ -0,0 +1,7 @@
+package com.example.cart.repositories.cart_repo.exceptions;
+
+public class CartVersionConflict extends RuntimeException {
+    public CartVersionConflict(String userId, Integer expectedVersion) {
+        super(String.format("Cart version conflict, expected stored version (%s). User: %s", expectedVersion, userId));
+    }
+}
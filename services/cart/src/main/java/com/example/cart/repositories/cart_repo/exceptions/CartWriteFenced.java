@@ -0,0 +1,7 @@
+package com.example.cart.repositories.cart_repo.exceptions;
+
+public class CartWriteFenced extends RuntimeException {
+    public CartWriteFenced(String userId, Long fencingToken) {
+        super(String.format("Cart write fenced, the fencing token (%s) is older than the stored one. User: %s", fencingToken, userId));
+    }
+}
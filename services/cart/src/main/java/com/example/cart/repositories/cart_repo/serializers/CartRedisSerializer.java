@@ -0,0 +1,204 @@
+package com.example.cart.repositories.cart_repo.serializers;
+
+import com.example.cart.entities.Cart;
+import com.example.cart.entities.properties.CartValidation;
+import com.example.cart.grpc.mappers.CartMapper;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+/**
+ * Stores carts with the Cart message of cart.proto, behind a 2 bytes header: a 0x00 marker
+ * (a JSON document never starts with it) followed by the format version.
+ *
+ * Values without the marker are legacy Jackson JSON documents, and are still read transparently,
+ * so carts migrate to the binary format on their next save.
+ * The instances before this serializer only read JSON: the binary format is switched on in a second deploy,
+ * once all the instances run the first one (which writes JSON and reads every format).
+ *
+ * Values of at least compressThreshold bytes are compressed with LZ4: the format version is then
+ * {@link #PROTO_V1_LZ4} or {@link #JSON_LZ4}, followed by the uncompressed length (4 bytes) and the LZ4 block.
+ * Every format is read whatever the configuration, so the threshold can change with carts of all formats stored.
+ *
+ * Slim documents leave out the product availabilities and the validation messages (the validation types are kept):
+ * they are hydrated at read time for clients, see {@link com.example.cart.services.cart_service.CartHydrator}.
+ * Slim and full documents have the same format, and are read alike.
+ */
+public class CartRedisSerializer implements RedisSerializer<Cart> {
+
+    public static final String JSON_FORMAT = "json";
+    public static final String PROTO_FORMAT = "proto";
+
+    public static final byte MARKER = 0x00;
+    public static final byte PROTO_V1 = 0x01;
+    public static final byte PROTO_V1_LZ4 = 0x02;
+    public static final byte JSON_LZ4 = 0x03;
+
+    private static final int HEADER_SIZE = 2;
+    private static final int COMPRESSED_HEADER_SIZE = HEADER_SIZE + Integer.BYTES;
+
+    private static final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+    private static final LZ4SafeDecompressor decompressor = LZ4Factory.fastestInstance().safeDecompressor();
+
+    private final Jackson2JsonRedisSerializer<Cart> jsonSerializer = new Jackson2JsonRedisSerializer<>(Cart.class);
+    private final String writeFormat;
+    private final int compressThreshold;
+    private final boolean slim;
+
+    public CartRedisSerializer(String writeFormat) {
+        this(writeFormat, 0, false);
+    }
+
+    public CartRedisSerializer(String writeFormat, int compressThreshold) {
+        this(writeFormat, compressThreshold, false);
+    }
+
+    /**
+     * @param compressThreshold the size from which values are compressed, 0 never compresses
+     * @param slim whether to write slim documents
+     */
+    public CartRedisSerializer(String writeFormat, int compressThreshold, boolean slim) {
+        if (! PROTO_FORMAT.equals(writeFormat) && ! JSON_FORMAT.equals(writeFormat)) {
+            throw new IllegalArgumentException(String.format("Unknown cart storage format: %s", writeFormat));
+        }
+        if (compressThreshold < 0) {
+            throw new IllegalArgumentException(String.format("Invalid cart compression threshold: %s", compressThreshold));
+        }
+        this.writeFormat = writeFormat;
+        this.compressThreshold = compressThreshold;
+        this.slim = slim;
+    }
+
+    @Override
+    public byte[] serialize(Cart cart) throws SerializationException {
+        if (cart == null) {
+            return null;
+        }
+        if (slim) {
+            cart = slimCopy(cart);
+        }
+        if (JSON_FORMAT.equals(writeFormat)) {
+            var json = jsonSerializer.serialize(cart);
+            return shouldCompress(json.length) ? compress(JSON_LZ4, json, json) : json;
+        }
+        var message = CartMapper.mapFromEntity(cart);
+        if (shouldCompress(message.getSerializedSize())) {
+            var proto = message.toByteArray();
+            return compress(PROTO_V1_LZ4, proto, withHeader(PROTO_V1, proto));
+        }
+        var bytes = new byte[HEADER_SIZE + message.getSerializedSize()];
+        bytes[0] = MARKER;
+        bytes[1] = PROTO_V1;
+        var output = com.google.protobuf.CodedOutputStream.newInstance(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+        try {
+            message.writeTo(output);
+            output.checkNoSpaceLeft();
+        } catch (Exception ex) {
+            throw new SerializationException("Failed to write the cart", ex);
+        }
+        return bytes;
+    }
+
+    @Override
+    public Cart deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MARKER) {
+            return jsonSerializer.deserialize(bytes);
+        }
+        if (bytes.length < HEADER_SIZE) {
+            throw new SerializationException("Unknown cart format version: none");
+        }
+        return switch (bytes[1]) {
+            case PROTO_V1 -> readProto(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+            case PROTO_V1_LZ4 -> {
+                var proto = decompress(bytes);
+                yield readProto(proto, 0, proto.length);
+            }
+            case JSON_LZ4 -> jsonSerializer.deserialize(decompress(bytes));
+            default -> throw new SerializationException(String.format("Unknown cart format version: %s", bytes[1]));
+        };
+    }
+
+    private Cart slimCopy(Cart cart) {
+        var validations = new HashMap<String, CartValidation>();
+        if (cart.getValidations() != null) {
+            cart.getValidations().forEach((productId, validation) ->
+                validations.put(productId, new CartValidation(validation.getProductId(), "", validation.getType()))
+            );
+        }
+        return new Cart(cart.getUserId(), cart.getVersionNumber(), cart.getItems(), new HashMap<>(), validations);
+    }
+
+    private boolean shouldCompress(int size) {
+        return compressThreshold > 0 && size >= compressThreshold;
+    }
+
+    /**
+     * @param fallback written instead when the compressed value would not be smaller
+     */
+    private byte[] compress(byte formatVersion, byte[] value, byte[] fallback) {
+        var bytes = new byte[COMPRESSED_HEADER_SIZE + compressor.maxCompressedLength(value.length)];
+        bytes[0] = MARKER;
+        bytes[1] = formatVersion;
+        ByteBuffer.wrap(bytes, HEADER_SIZE, Integer.BYTES).putInt(value.length);
+        var compressedSize = compressor.compress(value, 0, value.length, bytes, COMPRESSED_HEADER_SIZE);
+        var totalSize = COMPRESSED_HEADER_SIZE + compressedSize;
+        if (totalSize >= fallback.length) {
+            return fallback;
+        }
+        var trimmed = new byte[totalSize];
+        System.arraycopy(bytes, 0, trimmed, 0, totalSize);
+        return trimmed;
+    }
+
+    private byte[] decompress(byte[] bytes) {
+        if (bytes.length < COMPRESSED_HEADER_SIZE) {
+            throw new SerializationException("Truncated compressed cart");
+        }
+        var length = ByteBuffer.wrap(bytes, HEADER_SIZE, Integer.BYTES).getInt();
+        if (length < 0) {
+            throw new SerializationException(String.format("Invalid compressed cart length: %s", length));
+        }
+        var value = new byte[length];
+        try {
+            var decompressedSize = decompressor.decompress(bytes, COMPRESSED_HEADER_SIZE, bytes.length - COMPRESSED_HEADER_SIZE, value, 0);
+            if (decompressedSize != length) {
+                throw new SerializationException(String.format(
+                    "Compressed cart length mismatch: expected %s, got %s", length, decompressedSize
+                ));
+            }
+        } catch (LZ4Exception ex) {
+            throw new SerializationException("Failed to decompress the cart", ex);
+        }
+        return value;
+    }
+
+    private byte[] withHeader(byte formatVersion, byte[] value) {
+        var bytes = new byte[HEADER_SIZE + value.length];
+        bytes[0] = MARKER;
+        bytes[1] = formatVersion;
+        System.arraycopy(value, 0, bytes, HEADER_SIZE, value.length);
+        return bytes;
+    }
+
+    private Cart readProto(byte[] bytes, int offset, int length) {
+        try {
+            var message = com.example.grpc.cart.stubs.Cart.parseFrom(
+                com.google.protobuf.CodedInputStream.newInstance(bytes, offset, length)
+            );
+            return CartMapper.mapToEntity(message);
+        } catch (IOException ex) {
+            throw new SerializationException("Failed to read the cart", ex);
+        }
+    }
+}
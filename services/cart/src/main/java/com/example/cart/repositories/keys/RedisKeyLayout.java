@@ -0,0 +1,119 @@
+package com.example.cart.repositories.keys;
+
+import com.example.cart.repositories.keys.exceptions.LegacyKeyConflict;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Names the Redis keys of a user. With the hash-tagged layout, the user id is wrapped in a hash tag
+ * ({userId}), so that all the keys of a user (cart, version, fencing token, archive, log, lock) are in
+ * the same Redis Cluster slot, and the multi-key scripts keep working on a cluster.
+ *
+ * While migrate-legacy-keys is enabled, the keys of the previous layout (userId without tag) are renamed
+ * to the hash-tagged ones when the user is read, see also {@link RedisKeyMigrator} to migrate all of them.
+ * The migration renames keys across slots, so it runs on the current master, before moving to a cluster.
+ *
+ * The layout is switched in a rolling deploy, in two steps: legacy to hash-tagged with migrate-legacy-keys,
+ * then, once {@link RedisKeyMigrator} finds nothing left, without it. While migrating, the cart lock is taken
+ * under both names (see {@link #lockNames}), so that each step excludes the instances of the previous one.
+ * A legacy instance still reads a migrated cart as missing: it skips the requests of the user as out of order,
+ * and may write a new legacy cart. Such a legacy key next to the migrated one is not renamed, the read of the
+ * user fails with {@link LegacyKeyConflict} instead, before any write, until the keys are merged by hand.
+ */
+@Component
+public class RedisKeyLayout {
+
+    public static final String LEGACY_LAYOUT = "legacy";
+    public static final String HASH_TAGGED_LAYOUT = "hash-tagged";
+
+    @Value("${order-processing-system.repositories.key-layout:legacy}")
+    private String layout;
+
+    @Value("${order-processing-system.repositories.migrate-legacy-keys:false}")
+    private Boolean migrateLegacyKeys;
+
+    @Autowired
+    private RedisProperties redisProperties;
+
+    @Autowired
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    @Resource(name = "keyMigrateLuaScript")
+    private DefaultRedisScript<List> migrateScript;
+
+    @PostConstruct
+    public void checkLayout() {
+        if (! LEGACY_LAYOUT.equals(layout) && ! HASH_TAGGED_LAYOUT.equals(layout)) {
+            throw new IllegalStateException(String.format("Unknown Redis key layout: %s", layout));
+        }
+        var cluster = redisProperties.getCluster();
+        var isCluster = cluster != null && cluster.getNodes() != null && ! cluster.getNodes().isEmpty();
+        if (isCluster && ! isHashTagged()) {
+            throw new IllegalStateException("Redis Cluster requires the hash-tagged key layout");
+        }
+        if (isCluster && isMigrating()) {
+            throw new IllegalStateException("Legacy keys must be migrated before moving to Redis Cluster");
+        }
+        if (migrateLegacyKeys && ! isHashTagged()) {
+            throw new IllegalStateException("Legacy keys can only be migrated to the hash-tagged key layout");
+        }
+    }
+
+    public boolean isHashTagged() {
+        return HASH_TAGGED_LAYOUT.equals(layout);
+    }
+
+    public boolean isMigrating() {
+        return migrateLegacyKeys;
+    }
+
+    /**
+     * The user id as it appears in the keys of the user.
+     */
+    public String user(String userId) {
+        return isHashTagged() ? "{" + userId + "}" : userId;
+    }
+
+    /**
+     * Names of the lock of a resource of the user (prefix + user id): the legacy name too while migrating,
+     * which the instances of the legacy layout lock, before the hash-tagged one, which the next ones lock.
+     */
+    public List<String> lockNames(String prefix, String userId) {
+        return isMigrating()
+            ? List.of(prefix + userId, prefix + user(userId))
+            : List.of(prefix + user(userId));
+    }
+
+    /**
+     * Renames the legacy keys (prefix + userId + suffix) of the user to the hash-tagged ones,
+     * unless the hash-tagged key already exists. Does nothing when not migrating.
+     * Fails with {@link LegacyKeyConflict} when a legacy key exists next to the hash-tagged one.
+     */
+    public Mono<Long> migrateLegacyKeys(String prefix, String userId, List<String> suffixes) {
+        if (! isMigrating()) {
+            return Mono.just(0L);
+        }
+        var keys = new ArrayList<String>();
+        for (var suffix : suffixes) {
+            keys.add(prefix + userId + suffix);
+            keys.add(prefix + user(userId) + suffix);
+        }
+        return redisTemplate.execute(migrateScript, keys).next()
+            .flatMap(counts -> {
+                var skipped = (Long) counts.get(1);
+                return skipped > 0
+                    ? Mono.error(new LegacyKeyConflict(userId, skipped))
+                    : Mono.just((Long) counts.get(0));
+            });
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.cart.repositories.keys;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.List;
+
+@Configuration
+public class RedisKeyLayoutProperties {
+
+    /**
+     * KEYS: pairs of legacy key, new key. RENAME keeps the TTL of the key.
+     * Returns the number of keys renamed, and of legacy keys skipped because the new key exists too.
+     */
+    @Bean(name = "keyMigrateLuaScript")
+    public DefaultRedisScript<List> keyMigrateLuaScript() {
+        var script = new DefaultRedisScript<List>("""
+            local migrated = 0
+            local skipped = 0
+            for i = 1, #KEYS, 2 do
+              if redis.call("EXISTS", KEYS[i]) == 1 then
+                if redis.call("EXISTS", KEYS[i + 1]) == 0 then
+                  redis.call("RENAME", KEYS[i], KEYS[i + 1])
+                  migrated = migrated + 1
+                else
+                  skipped = skipped + 1
+                end
+              end
+            end
+            return {migrated, skipped}
+        """);
+        script.setResultType(List.class);
+        return script;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.cart.repositories.keys;
+
+import com.example.cart.services.cart_service.PartitionOwnershipFencing;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renames all the legacy cart keys to the hash-tagged layout, with SCAN, in batches of at most maxKeys keys,
+ * so it can be called again until nothing is left. Lock keys are not migrated, they expire with their TTL.
+ * The legacy keys written again next to the migrated ones are skipped and reported, see {@link RedisKeyLayout}.
+ */
+@Component
+public class RedisKeyMigrator {
+
+    /**
+     * @param skippedKeys legacy keys left, as the hash-tagged key exists too
+     */
+    public record Result(long migrated, List<String> skippedKeys) {}
+
+    private final Logger log = LoggerFactory.getLogger(RedisKeyMigrator.class);
+
+    private static final List<String> PREFIXES = List.of(
+        "order-processing-system:carts:",
+        "order-processing-system:cart-hashes:",
+        "order-processing-system:cart-logs:"
+    );
+
+    @Autowired
+    private RedisKeyLayout keyLayout;
+
+    @Autowired
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    @Resource(name = "keyMigrateLuaScript")
+    private DefaultRedisScript<List> migrateScript;
+
+    public Mono<Result> migrate(int maxKeys) {
+        if (! keyLayout.isMigrating()) {
+            return Mono.error(new IllegalStateException("Legacy keys migration is not enabled"));
+        }
+        var skippedKeys = new ArrayList<String>();
+        return Flux.fromIterable(PREFIXES)
+            .concatMap(prefix -> redisTemplate
+                .scan(ScanOptions.scanOptions().match(prefix + "*").count(1000).build())
+                .filter(key -> ! key.startsWith("{", prefix.length()) && ! key.equals(PartitionOwnershipFencing.EPOCH_KEY))
+                .map(key -> List.of(key, taggedKey(prefix, key)))
+            )
+            .take(maxKeys)
+            .concatMap(keys -> redisTemplate.execute(migrateScript, keys).next()
+                .map(counts -> {
+                    if ((Long) counts.get(1) > 0) {
+                        skippedKeys.add(keys.getFirst());
+                    }
+                    return (Long) counts.get(0);
+                })
+            )
+            .reduce(0L, Long::sum)
+            .map(migrated -> new Result(migrated, List.copyOf(skippedKeys)))
+            .doOnSuccess(result -> {
+                log.info("Legacy keys migrated: {}", result.migrated());
+                if (! result.skippedKeys().isEmpty()) {
+                    log.warn("Legacy keys skipped, the hash-tagged key exists too: {}", result.skippedKeys());
+                }
+            });
+    }
+
+    /**
+     * prefix + userId + suffix becomes prefix + {userId} + suffix (user ids contain no colon).
+     */
+    private String taggedKey(String prefix, String legacyKey) {
+        var rest = legacyKey.substring(prefix.length());
+        var userIdEnd = rest.indexOf(':');
+        var userId = userIdEnd < 0 ? rest : rest.substring(0, userIdEnd);
+        var suffix = userIdEnd < 0 ? "" : rest.substring(userIdEnd);
+        return prefix + keyLayout.user(userId) + suffix;
+    }
+}
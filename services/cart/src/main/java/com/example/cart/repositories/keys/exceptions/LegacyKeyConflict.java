@@ -0,0 +1,7 @@
+package com.example.cart.repositories.keys.exceptions;
+
+public class LegacyKeyConflict extends RuntimeException {
+    public LegacyKeyConflict(String userId, Long skipped) {
+        super(String.format("Legacy keys (%s) written again next to the migrated ones. User: %s", skipped, userId));
+    }
+}
@@ -6,6 +6,12 @@ import java.time.Duration;
 
 public interface LockRepository {
     Mono<Void> acquireLock(String resource, String lockValue, Duration ttl);
+
+    /**
+     * Waits for the lock in a FIFO queue, woken up when the lock is released, instead of failing right away.
+     * Fails with {@link com.example.cart.repositories.lock_repo.exceptions.LockUnavailable} after maxWait.
+     */
+    Mono<Void> acquireLockQueued(String resource, String lockValue, Duration ttl, Duration maxWait);
     Mono<Void> releaseLock(String resource, String lockValue);
     Mono<Void> releaseLockUnSafe(String resource);
 }
@@ -0,0 +1,224 @@
+package com.example.cart.repositories.lock_repo.drivers;
+
+import com.example.cart.repositories.lock_repo.LockRepository;
+import com.example.cart.repositories.lock_repo.exceptions.LockUnavailable;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Resolves the contention between the handlers of this instance in memory, before going to the Redis lock,
+ * which then only excludes the other instances. A resource locked by this instance fails right away
+ * (or waits in a local FIFO queue, for the queued acquisition) without a Redis call.
+ *
+ * The locks are kept per resource, in stripes that each have their own monitor, so unrelated resources
+ * rarely contend on the same monitor. A local lock expires with the TTL of the lock, like the Redis one.
+ *
+ * Metrics: locks.acquired, locks.contended tagged with the scope (local, remote), locks.local_wait.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "order-processing-system.repositories.locks.local-fast-path.enabled", havingValue = "true")
+public class LocalStripedLockRepository implements LockRepository {
+
+    private static final class Holder {
+        private String lockValue;
+        private long expiresAtNanos;
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    }
+
+    private record Waiter(String lockValue, long ttlNanos, Sinks.Empty<Void> granted) {}
+
+    private static final class Stripe {
+        private final Map<String, Holder> holders = new HashMap<>();
+    }
+
+    @Autowired
+    @Qualifier("lockStorage")
+    private LockRepository remote;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final Stripe[] stripes;
+
+    private Counter acquired;
+    private Counter localContended;
+    private Counter remoteContended;
+    private Timer localWait;
+
+    public LocalStripedLockRepository(@Value("${order-processing-system.repositories.locks.local-fast-path.stripes:64}") Integer stripesCount) {
+        this.stripes = new Stripe[stripesCount];
+        for (var i = 0; i < stripesCount; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @PostConstruct
+    public void registerMeters() {
+        acquired = Counter.builder("locks.acquired").register(registry);
+        localContended = Counter.builder("locks.contended").tag("scope", "local").register(registry);
+        remoteContended = Counter.builder("locks.contended").tag("scope", "remote").register(registry);
+        localWait = Timer.builder("locks.local_wait").publishPercentileHistogram().register(registry);
+    }
+
+    @Override
+    public Mono<Void> acquireLock(String resource, String lockValue, Duration ttl) {
+        return Mono.defer(() -> {
+            if (! tryAcquireLocal(resource, lockValue, ttl)) {
+                localContended.increment();
+                return Mono.error(new LockUnavailable(resource));
+            }
+            return acquireRemote(resource, lockValue, remote.acquireLock(resource, lockValue, ttl));
+        });
+    }
+
+    @Override
+    public Mono<Void> acquireLockQueued(String resource, String lockValue, Duration ttl, Duration maxWait) {
+        return Mono.defer(() -> {
+            var startedAt = System.nanoTime();
+            return awaitLocal(resource, lockValue, ttl, maxWait)
+                .then(Mono.defer(() -> {
+                    var waited = System.nanoTime() - startedAt;
+                    localWait.record(waited, TimeUnit.NANOSECONDS);
+                    var remainingWait = maxWait.minusNanos(waited);
+                    if (! remainingWait.isPositive()) {
+                        // a plain acquisition would jump ahead of the waiters of the other instances
+                        releaseLocal(resource, lockValue);
+                        return Mono.error(new LockUnavailable(resource));
+                    }
+                    return acquireRemote(resource, lockValue, remote.acquireLockQueued(resource, lockValue, ttl, remainingWait));
+                }));
+        });
+    }
+
+    @Override
+    public Mono<Void> releaseLock(String resource, String lockValue) {
+        return remote.releaseLock(resource, lockValue)
+            .doFinally(signal -> releaseLocal(resource, lockValue));
+    }
+
+    @Override
+    public Mono<Void> releaseLockUnSafe(String resource) {
+        return remote.releaseLockUnSafe(resource)
+            .doFinally(signal -> {
+                String lockValue;
+                synchronized (stripe(resource)) {
+                    var holder = stripe(resource).holders.get(resource);
+                    lockValue = holder == null ? null : holder.lockValue;
+                }
+                if (lockValue != null) {
+                    releaseLocal(resource, lockValue);
+                }
+            });
+    }
+
+    private Mono<Void> acquireRemote(String resource, String lockValue, Mono<Void> acquireRemote) {
+        return acquireRemote
+            .doOnSuccess(ok -> acquired.increment())
+            .doOnError(ex -> {
+                if (ex instanceof LockUnavailable) {
+                    remoteContended.increment();
+                }
+                releaseLocal(resource, lockValue);
+            })
+            .doOnCancel(() -> releaseLocal(resource, lockValue));
+    }
+
+    private boolean tryAcquireLocal(String resource, String lockValue, Duration ttl) {
+        var stripe = stripe(resource);
+        synchronized (stripe) {
+            var holder = stripe.holders.get(resource);
+            if (holder == null) {
+                holder = new Holder();
+                stripe.holders.put(resource, holder);
+            } else if (holder.lockValue != null && holder.expiresAtNanos - System.nanoTime() > 0) {
+                return false;
+            }
+            holder.lockValue = lockValue;
+            holder.expiresAtNanos = System.nanoTime() + ttl.toNanos();
+            return true;
+        }
+    }
+
+    private Mono<Void> awaitLocal(String resource, String lockValue, Duration ttl, Duration maxWait) {
+        return Mono.defer(() -> {
+            var waiter = new Waiter(lockValue, ttl.toNanos(), Sinks.empty());
+            var stripe = stripe(resource);
+            synchronized (stripe) {
+                if (tryAcquireLocal(resource, lockValue, ttl)) {
+                    return Mono.empty();
+                }
+                stripe.holders.get(resource).waiters.add(waiter);
+            }
+            localContended.increment();
+            return waiter.granted().asMono()
+                .timeout(maxWait)
+                .onErrorResume(TimeoutException.class, ex -> leaveQueue(resource, waiter)
+                    ? Mono.error(new LockUnavailable(resource))
+                    : Mono.empty()
+                )
+                .doOnCancel(() -> {
+                    if (! leaveQueue(resource, waiter)) {
+                        releaseLocal(resource, lockValue);
+                    }
+                });
+        });
+    }
+
+    /**
+     * @return false when the waiter was already granted the lock
+     */
+    private boolean leaveQueue(String resource, Waiter waiter) {
+        var stripe = stripe(resource);
+        synchronized (stripe) {
+            var holder = stripe.holders.get(resource);
+            return holder != null && holder.waiters.remove(waiter);
+        }
+    }
+
+    /**
+     * Hands the lock over to the next local waiter, if any.
+     */
+    private void releaseLocal(String resource, String lockValue) {
+        Waiter next;
+        var stripe = stripe(resource);
+        synchronized (stripe) {
+            var holder = stripe.holders.get(resource);
+            if (holder == null || ! lockValue.equals(holder.lockValue)) {
+                return;
+            }
+            next = holder.waiters.poll();
+            if (next == null) {
+                stripe.holders.remove(resource);
+                return;
+            }
+            holder.lockValue = next.lockValue();
+            holder.expiresAtNanos = System.nanoTime() + next.ttlNanos();
+        }
+        if (next.granted().tryEmitEmpty().isFailure()) {
+            // the waiter gave up meanwhile
+            releaseLocal(resource, next.lockValue());
+        }
+    }
+
+    private Stripe stripe(String resource) {
+        return stripes[Math.floorMod(resource.hashCode(), stripes.length)];
+    }
+}
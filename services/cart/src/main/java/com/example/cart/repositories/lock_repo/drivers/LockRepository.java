@@ -4,18 +4,23 @@ import com.example.cart.repositories.lock_repo.exceptions.LockUnavailable;
 import com.example.cart.repositories.lock_repo.exceptions.LockValueMismatch;
 import jakarta.annotation.Resource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeoutException;
 
 @Component
+@Qualifier("lockStorage")
 public class LockRepository implements com.example.cart.repositories.lock_repo.LockRepository {
 
     private final String keyPrefix = "order-processing-system:locks:";
@@ -23,12 +28,27 @@ public class LockRepository implements com.example.cart.repositories.lock_repo.L
     @Resource(name = "lockAcquireLuaScript")
     private DefaultRedisScript<Long> acquireScript;
 
+    @Resource(name = "lockAcquireQueuedLuaScript")
+    private DefaultRedisScript<Long> acquireQueuedScript;
+
     @Resource(name = "lockReleaseLuaScript")
     private DefaultRedisScript<Long> releaseScript;
 
+    @Resource(name = "lockReleaseUnSafeLuaScript")
+    private DefaultRedisScript<Long> releaseUnSafeScript;
+
     @Autowired
     private ReactiveStringRedisTemplate redisTemplate;
 
+    @Autowired
+    private ReactiveRedisMessageListenerContainer listenerContainer;
+
+    /**
+     * Queued waiters also retry at this interval, in case the release message was missed or the lock expired.
+     */
+    @Value("${order-processing-system.repositories.locks.queued-recheck-ms:500}")
+    private Long queuedRecheckMs;
+
     @Override
     public Mono<Void> acquireLock(String resource, String lockValue, Duration ttl) {
         return redisTemplate
@@ -40,10 +60,49 @@ public class LockRepository implements com.example.cart.repositories.lock_repo.L
             );
     }
 
+    /**
+     * The waiter subscribes to the release channel before its first attempt, so that no release is missed,
+     * and tries again on each release. The lock is given in arrival order, see lockAcquireQueuedLuaScript.
+     * A waiter that gives up (timeout or cancellation) may have been given the lock by an attempt still
+     * in flight, so it also releases the lock with its own lock value.
+     */
+    @Override
+    public Mono<Void> acquireLockQueued(String resource, String lockValue, Duration ttl, Duration maxWait) {
+        return Mono.defer(() -> {
+            var deadline = System.currentTimeMillis() + maxWait.toMillis();
+            var entry = lockValue + ":" + deadline;
+            var keys = List.of(key(resource), queueKey(resource));
+            var tryAcquire = redisTemplate
+                .execute(acquireQueuedScript, keys, lockValue, String.valueOf(ttl.toMillis()), entry, String.valueOf(deadline))
+                .next()
+                .map(r -> r == 1);
+
+            return listenerContainer
+                .receiveLater(ChannelTopic.of(releaseChannel(resource)))
+                .flatMap(releases -> Flux
+                    .merge(
+                        Flux.just(0L),
+                        releases.map(message -> 0L),
+                        Flux.interval(Duration.ofMillis(queuedRecheckMs))
+                    )
+                    .onBackpressureDrop()
+                    .concatMap(wakeUp -> tryAcquire, 1)
+                    .filter(acquired -> acquired)
+                    .next()
+                    .timeout(maxWait)
+                )
+                .onErrorResume(TimeoutException.class, ex -> giveUp(resource, lockValue, entry)
+                    .then(Mono.error(new LockUnavailable(resource)))
+                )
+                .doOnCancel(() -> giveUp(resource, lockValue, entry).subscribe())
+                .then();
+        });
+    }
+
     @Override
     public Mono<Void> releaseLock(String resource, String lockValue) {
         return redisTemplate
-            .execute(releaseScript, redisKey(resource), lockValue)
+            .execute(releaseScript, redisKey(resource), lockValue, releaseChannel(resource))
             .next()
             .flatMap(r -> r == 0
                 ? Mono.error(new LockValueMismatch(resource))
@@ -53,9 +112,16 @@ public class LockRepository implements com.example.cart.repositories.lock_repo.L
 
     @Override
     public Mono<Void> releaseLockUnSafe(String resource) {
-        return redisTemplate.delete(redisKey(resource).getFirst()).then();
+        return redisTemplate
+            .execute(releaseUnSafeScript, redisKey(resource), releaseChannel(resource))
+            .then();
     }
 
+    private Mono<Void> giveUp(String resource, String lockValue, String entry) {
+        return redisTemplate.opsForList().remove(queueKey(resource), 1, entry)
+            .then(releaseLock(resource, lockValue))
+            .onErrorResume(LockValueMismatch.class, ex -> Mono.empty());
+    }
 
     private List<String> redisKey(String resource) {
         return Collections.singletonList(key(resource));
@@ -66,4 +132,12 @@ public class LockRepository implements com.example.cart.repositories.lock_repo.L
         builder.append(keyPrefix).append(resource);
         return builder.toString();
     }
-}
\ No newline at end of file
+
+    private String queueKey(String resource) {
+        return key(resource) + ":queue";
+    }
+
+    private String releaseChannel(String resource) {
+        return key(resource) + ":released";
+    }
+}
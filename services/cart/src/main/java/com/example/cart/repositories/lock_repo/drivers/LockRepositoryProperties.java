@@ -23,16 +23,21 @@ public class LockRepositoryProperties {
         return script;
     }
 
+    /**
+     * Publishes on the release channel (ARGV[2]) of the lock, to wake up the queued waiters.
+     */
     @Bean(name = "lockReleaseLuaScript")
     public DefaultRedisScript<Long> lockReleaseLuaScript() {
         var script = new DefaultRedisScript<Long>("""
             local keys = KEYS
             local lock_value = ARGV[1]
             if redis.call("EXISTS", keys[1]) == 0 then
+                redis.call("PUBLISH", ARGV[2], "released")
                 return 1
             end
             if redis.call("GET", keys[1]) == lock_value then
               redis.call("DEL", keys[1])
+              redis.call("PUBLISH", ARGV[2], "released")
               return 1
             end
             return 0
@@ -40,4 +45,67 @@ public class LockRepositoryProperties {
         script.setResultType(Long.class);
         return script;
     }
-}
\ No newline at end of file
+
+    /**
+     * Deletes the lock whatever its value and publishes on the release channel (ARGV[1]), in one round trip.
+     */
+    @Bean(name = "lockReleaseUnSafeLuaScript")
+    public DefaultRedisScript<Long> lockReleaseUnSafeLuaScript() {
+        var script = new DefaultRedisScript<Long>("""
+            local keys = KEYS
+            local deleted = redis.call("DEL", keys[1])
+            redis.call("PUBLISH", ARGV[1], "released")
+            return deleted
+        """);
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    /**
+     * FIFO acquisition: the lock is only given to the head of the wait queue (or to anyone when nobody waits),
+     * other callers are appended to the queue. Queue entries are "lock value:deadline ms", the waiters whose
+     * deadline passed are dropped from the head, so a waiter that crashed does not block the queue.
+     * KEYS: lock, wait queue. ARGV: lock value, lock TTL ms, queue entry, deadline ms.
+     */
+    @Bean(name = "lockAcquireQueuedLuaScript")
+    public DefaultRedisScript<Long> lockAcquireQueuedLuaScript() {
+        var script = new DefaultRedisScript<Long>("""
+            local keys = KEYS
+            local lock_value = ARGV[1]
+            local ttl = tonumber(ARGV[2])
+            local entry = ARGV[3]
+            local deadline = tonumber(ARGV[4])
+            local time = redis.call("TIME")
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+            local head = redis.call("LINDEX", keys[2], 0)
+            while head do
+              local head_deadline = tonumber(string.match(head, ":(%d+)$"))
+              if head_deadline == nil or head_deadline >= now then
+                break
+              end
+              redis.call("LPOP", keys[2])
+              head = redis.call("LINDEX", keys[2], 0)
+            end
+
+            if redis.call("EXISTS", keys[1]) == 0 and (not head or head == entry) then
+              redis.call("SET", keys[1], lock_value, "PX", ttl)
+              if head == entry then
+                redis.call("LPOP", keys[2])
+              end
+              return 1
+            end
+
+            if not redis.call("LPOS", keys[2], entry) then
+              redis.call("RPUSH", keys[2], entry)
+            end
+            local queue_ttl = deadline - now + ttl
+            if redis.call("PTTL", keys[2]) < queue_ttl then
+              redis.call("PEXPIRE", keys[2], queue_ttl)
+            end
+            return 0
+        """);
+        script.setResultType(Long.class);
+        return script;
+    }
+}
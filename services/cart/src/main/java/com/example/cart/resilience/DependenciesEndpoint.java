@@ -0,0 +1,28 @@
+package com.example.cart.resilience;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exposes the circuit breaker and retry budget state of each dependency at /actuator/dependencies.
+ */
+@Component
+@Endpoint(id = "dependencies")
+public class DependenciesEndpoint {
+
+    @Autowired
+    private List<DependencyGuard> guards;
+
+    @ReadOperation
+    public Map<String, Object> dependencies() {
+        var dependencies = new LinkedHashMap<String, Object>();
+        guards.forEach(guard -> dependencies.put(guard.getName(), guard.snapshot()));
+        return dependencies;
+    }
+}
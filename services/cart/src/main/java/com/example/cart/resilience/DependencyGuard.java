@@ -0,0 +1,208 @@
+package com.example.cart.resilience;
+
+import com.example.cart.resilience.exceptions.DependencyUnavailable;
+import lombok.Getter;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker and retry budget shared by every call to one dependency (redis, inventory).
+ *
+ * The breaker opens once the failure rate of the last calls crosses the threshold, then rejects calls with
+ * {@link DependencyUnavailable} until the open duration elapsed, and lets a few trial calls decide whether to close.
+ * The retry budget earns a fraction of a token per call and spends one token per retry, so retries can not
+ * multiply the load of a dependency which is already failing.
+ */
+public class DependencyGuard {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    @Getter
+    private final String name;
+    private final DependencyGuardSettings settings;
+    private final List<Class<? extends Throwable>> ignoredExceptions;
+
+    private final boolean[] window;
+    private int windowIndex = 0;
+    private int windowCalls = 0;
+    private int windowFailures = 0;
+
+    private State state = State.CLOSED;
+    private long openedAtMillis = 0;
+    private int halfOpenPermits = 0;
+    private int halfOpenSuccesses = 0;
+
+    private double retryTokens;
+    private long retryTokensRefilledAtNanos = System.nanoTime();
+
+    private final AtomicLong rejectedCalls = new AtomicLong();
+    private final AtomicLong rejectedRetries = new AtomicLong();
+
+    /**
+     * @param ignoredExceptions business errors of the dependency (lock unavailable, version conflict...), counted as successful calls
+     */
+    public DependencyGuard(String name, DependencyGuardSettings settings, List<Class<? extends Throwable>> ignoredExceptions) {
+        this.name = name;
+        this.settings = settings;
+        this.ignoredExceptions = ignoredExceptions;
+        this.window = new boolean[settings.slidingWindowSize()];
+        this.retryTokens = settings.maxRetryTokens();
+    }
+
+    public <T> Mono<T> protect(Mono<T> call) {
+        return protect(call, settings.callTimeout());
+    }
+
+    /**
+     * Same as {@link #protect(Mono)}, for the calls expected to take longer than the call timeout of the dependency.
+     */
+    public <T> Mono<T> protect(Mono<T> call, Duration callTimeout) {
+        return Mono.defer(() -> {
+            if (! tryAcquirePermission()) {
+                rejectedCalls.incrementAndGet();
+                return Mono.error(new DependencyUnavailable(name));
+            }
+            depositRetryToken();
+            return call
+                .timeout(callTimeout)
+                .doOnSuccess(value -> onResult(false))
+                .doOnError(ex -> onResult(isFailure(ex)))
+                .doOnCancel(this::onCancel);
+        });
+    }
+
+    /**
+     * Spends one token of the retry budget, returns false when the budget is exhausted or the breaker is open.
+     */
+    public synchronized boolean tryAcquireRetry() {
+        refillRetryTokens();
+        if (state == State.OPEN || retryTokens < 1) {
+            rejectedRetries.incrementAndGet();
+            return false;
+        }
+        retryTokens -= 1;
+        return true;
+    }
+
+    public Duration getCallTimeout() {
+        return settings.callTimeout();
+    }
+
+    public synchronized State getState() {
+        transitionFromOpenIfElapsed();
+        return state;
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        transitionFromOpenIfElapsed();
+        refillRetryTokens();
+        var snapshot = new LinkedHashMap<String, Object>();
+        snapshot.put("state", state);
+        snapshot.put("failure_rate", windowCalls == 0 ? 0.0 : (double) windowFailures / windowCalls);
+        snapshot.put("window_calls", windowCalls);
+        snapshot.put("window_failures", windowFailures);
+        snapshot.put("retry_tokens", Math.floor(retryTokens * 100) / 100);
+        snapshot.put("rejected_calls", rejectedCalls.get());
+        snapshot.put("rejected_retries", rejectedRetries.get());
+        return snapshot;
+    }
+
+    private synchronized boolean tryAcquirePermission() {
+        transitionFromOpenIfElapsed();
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (halfOpenPermits >= settings.halfOpenCalls()) {
+                    yield false;
+                }
+                halfOpenPermits++;
+                yield true;
+            }
+        };
+    }
+
+    private synchronized void onResult(boolean isFailure) {
+        switch (state) {
+            case CLOSED -> {
+                record(isFailure);
+                if (windowCalls >= settings.minimumCalls() && (double) windowFailures / windowCalls >= settings.failureRateThreshold()) {
+                    open();
+                }
+            }
+            case HALF_OPEN -> {
+                if (isFailure) {
+                    open();
+                } else if (++halfOpenSuccesses >= settings.halfOpenCalls()) {
+                    close();
+                }
+            }
+            case OPEN -> { }
+        }
+    }
+
+    private synchronized void onCancel() {
+        if (state == State.HALF_OPEN && halfOpenPermits > 0) {
+            halfOpenPermits--;
+        }
+    }
+
+    private void record(boolean isFailure) {
+        if (windowCalls == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCalls++;
+        }
+        window[windowIndex] = isFailure;
+        if (isFailure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAtMillis = System.currentTimeMillis();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        windowIndex = 0;
+        windowCalls = 0;
+        windowFailures = 0;
+    }
+
+    private void transitionFromOpenIfElapsed() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAtMillis >= settings.openDuration().toMillis()) {
+            state = State.HALF_OPEN;
+            halfOpenPermits = 0;
+            halfOpenSuccesses = 0;
+        }
+    }
+
+    private synchronized void depositRetryToken() {
+        retryTokens = Math.min(settings.maxRetryTokens(), retryTokens + settings.retryRatio());
+    }
+
+    private void refillRetryTokens() {
+        var now = System.nanoTime();
+        var elapsedSeconds = (now - retryTokensRefilledAtNanos) / 1_000_000_000.0;
+        retryTokens = Math.min(settings.maxRetryTokens(), retryTokens + elapsedSeconds * settings.minRetriesPerSecond());
+        retryTokensRefilledAtNanos = now;
+    }
+
+    private boolean isFailure(Throwable ex) {
+        return ignoredExceptions.stream().noneMatch(type -> type.isInstance(ex));
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.cart.resilience;
+
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+/**
+ * Settings of a {@link DependencyGuard}, read from "order-processing-system.dependencies.{name}.*".
+ */
+public record DependencyGuardSettings(
+    int slidingWindowSize,
+    int minimumCalls,
+    double failureRateThreshold,
+    Duration openDuration,
+    int halfOpenCalls,
+    Duration callTimeout,
+    double retryRatio,
+    double minRetriesPerSecond,
+    double maxRetryTokens
+) {
+    public static DependencyGuardSettings fromEnvironment(String name, Environment env) {
+        var prefix = "order-processing-system.dependencies." + name + ".";
+        return new DependencyGuardSettings(
+            env.getProperty(prefix + "sliding-window-size", Integer.class, 50),
+            env.getProperty(prefix + "minimum-calls", Integer.class, 20),
+            env.getProperty(prefix + "failure-rate-threshold", Double.class, 0.5),
+            Duration.ofMillis(env.getProperty(prefix + "open-duration-ms", Long.class, 5000L)),
+            env.getProperty(prefix + "half-open-calls", Integer.class, 5),
+            Duration.ofMillis(env.getProperty(prefix + "call-timeout-ms", Long.class, 2000L)),
+            env.getProperty(prefix + "retry-ratio", Double.class, 0.2),
+            env.getProperty(prefix + "min-retries-per-sec", Double.class, 5.0),
+            env.getProperty(prefix + "max-retry-tokens", Double.class, 100.0)
+        );
+    }
+}
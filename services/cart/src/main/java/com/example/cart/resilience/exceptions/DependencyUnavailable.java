@@ -0,0 +1,7 @@
+package com.example.cart.resilience.exceptions;
+
+public class DependencyUnavailable extends RuntimeException {
+    public DependencyUnavailable(String dependency) {
+        super(String.format("Dependency unavailable, the circuit breaker is open. Dependency: %s", dependency));
+    }
+}
@@ -16,6 +16,7 @@ public class CartBuilder {
 
     private Cart cart;
     private CartUpdateRequest cartRequest;
+    private List<CartUpdateRequest> cartRequests;
     private List<ProductAvailability> productAvailabilities;
     private List<CartValidation> cartValidations;
 
@@ -39,13 +40,23 @@ public class CartBuilder {
         return this;
     }
 
+    public CartBuilder setCartUpdateRequests(List<CartUpdateRequest> requests) {
+        this.cartRequests = requests;
+        return this;
+    }
+
     public CartBuilder build() {
         if (cartRequest != null) {
-            cart.setVersionNumber(cartRequest.getVersionNumber());
-            applyRequestEntries();
+            applyRequest(cartRequest);
+        }
+        if (cartRequests != null) {
+            cartRequests.forEach(this::applyRequest);
         }
         if (productAvailabilities != null) {
-            productAvailabilities.forEach(pa -> cart.getProductAvailabilities().put(pa.getProductId(), pa));
+            productAvailabilities.forEach(pa -> {
+                cart.getProductAvailabilities().put(pa.getProductId(), pa);
+                cart.touchProduct(pa.getProductId());
+            });
         }
         if (cartValidations != null) {
             cartValidations.forEach(v -> cart.getValidations().put(v.getProductId(), v));
@@ -53,10 +64,21 @@ public class CartBuilder {
         return this;
     }
 
-    private void applyRequestEntries() {
+    private void applyRequest(CartUpdateRequest request) {
+        cart.setVersionNumber(request.getVersionNumber());
+        cart.addAppliedRequest(request);
+        applyRequestEntries(request);
+    }
+
+    private void applyRequestEntries(CartUpdateRequest request) {
         var items = cart.getItems();
-        cartRequest.getEntries().forEach(entry -> {
+        request.getEntries().forEach(entry -> {
+            if (entry.getAction() == CartUpdateRequest.CartAction.ABANDON_CART) {
+                cart.abandon();
+                return;
+            }
             var prodId = entry.getProductId();
+            cart.touchProduct(prodId);
             if (! items.containsKey(prodId)) {
                 items.put(prodId, new Cart.CartItem(prodId, entry.getProductName(), 0));
             }
@@ -0,0 +1,94 @@
+package com.example.cart.services.cart_service;
+
+import com.example.cart.services.cart_service.entities.CartUpdateRequest;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Publishes the requests of the dead letter topic back to the cart update requests topic.
+ * Progress is committed with a consumer group shared by all the instances, so every replay continues
+ * from the previous one, whichever instance ran it. The offsets are committed after each poll, up to the last
+ * published record, so a replay failing part-way does not publish again the records already replayed.
+ * Records without a readable request (null value, failed deserialization) are skipped: they are logged
+ * with their offset, to recover from the dead letter topic by hand, and are not counted as replayed.
+ */
+@Component
+public class CartDeadLetterReplayer {
+
+    private final Logger log = LoggerFactory.getLogger(CartDeadLetterReplayer.class);
+
+    private static final int MAX_EMPTY_POLLS = 10;
+
+    @Value("${order-processing-system.messaging.cart-update-requests.dlt-replay-group-id:cart-service-dlt-replay}")
+    private String replayGroupId;
+
+    @Autowired
+    private ConsumerFactory<?, ?> consumerFactory;
+
+    @Autowired
+    private CartUpdateRequestRetryer retryer;
+
+    @Autowired
+    private CartEventsPublisher cartEventsPublisher;
+
+    public record Result(int replayed, int skipped) {}
+
+    public Mono<Result> replay(int maxRecords) {
+        return Mono.fromCallable(() -> replayBlocking(maxRecords)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Result replayBlocking(int maxRecords) {
+        var replayed = 0;
+        var skipped = 0;
+
+        try (var consumer = consumerFactory.createConsumer(replayGroupId, "-dlt-replay")) {
+            consumer.subscribe(List.of(retryer.deadLetterTopic()));
+
+            var emptyPolls = 0;
+            while (replayed < maxRecords && emptyPolls < MAX_EMPTY_POLLS) {
+                var records = consumer.poll(Duration.ofMillis(500));
+                if (records.isEmpty()) {
+                    emptyPolls++;
+                    continue;
+                }
+                var offsets = new HashMap<TopicPartition, OffsetAndMetadata>();
+                try {
+                    for (var record : records) {
+                        if (replayed >= maxRecords) {
+                            break;
+                        }
+                        if (record.value() instanceof CartUpdateRequest request) {
+                            cartEventsPublisher.publishCartUpdateRequest(request).block();
+                            replayed++;
+                        } else {
+                            log.warn("Dead letter skipped, no cart update request - partition: {} - offset: {} - key: {}",
+                                record.partition(), record.offset(), record.key());
+                            skipped++;
+                        }
+                        offsets.put(new TopicPartition(record.topic(), record.partition()), new OffsetAndMetadata(record.offset() + 1));
+                    }
+                } finally {
+                    // also when a publish failed, so that the records already published are not replayed again
+                    if (! offsets.isEmpty()) {
+                        consumer.commitSync(offsets);
+                    }
+                }
+            }
+        }
+
+        log.info("Dead letters replayed: {} - skipped: {}", replayed, skipped);
+        return new Result(replayed, skipped);
+    }
+}
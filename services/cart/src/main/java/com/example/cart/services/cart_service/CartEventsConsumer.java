@@ -1,65 +1,296 @@
 package com.example.cart.services.cart_service;
 
+import com.example.cart.repositories.cart_repo.exceptions.CartWriteFenced;
 import com.example.cart.services.cart_service.entities.CartUpdateRequest;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+import org.slf4j.spi.LoggingEventBuilder;
+import org.slf4j.spi.NOPLoggingEventBuilder;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.env.Environment;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.annotation.TopicPartition;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.support.KafkaUtils;
 import org.springframework.messaging.handler.annotation.Headers;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Component
 public class CartEventsConsumer {
 
+    public static final String CONCURRENT_MODE = "concurrent";
+
     private final Logger log = LoggerFactory.getLogger(CartEventsConsumer.class);
 
-    @Autowired
-    private Environment env;
+    @Value("${HOSTNAME:cart-service}")
+    private String hostname;
+
+    @Value("${order-processing-system.logging.structured:true}")
+    private Boolean structuredLogging;
 
     @Autowired
     private CartUpdateRequestHandler cartUpdateRequestHandler;
 
-    @KafkaListener(topicPartitions = { @TopicPartition(
-        topic = "${order-processing-system.messaging.cart-update-requests.topic-name}",
-        partitions = "${order-processing-system.messaging.cart-update-requests.topic-partitions}")
-    })
+    @Autowired
+    private CartUpdateRequestDispatcher cartUpdateRequestDispatcher;
+
+    @Autowired
+    private CartUpdateRequestRetryer cartUpdateRequestRetryer;
+
+    @Autowired
+    private CartUpdateRequestMetrics cartUpdateRequestMetrics;
+
+    @Autowired
+    private ObjectProvider<PartitionOwnershipFencing> ownershipFencing;
+
+    @Value("${order-processing-system.handlers.cart-update-requests.consume-mode:blocking}")
+    private String consumeMode;
+
+    @KafkaListener(
+        autoStartup = "#{'${order-processing-system.handlers.cart-update-requests.consume-mode:blocking}' != 'batch'"
+            + " and '${order-processing-system.handlers.cart-update-requests.concurrency-control:lock}' != 'partition-ownership'}",
+        topicPartitions = { @TopicPartition(
+            topic = "${order-processing-system.messaging.cart-update-requests.topic-name}",
+            partitions = "${order-processing-system.messaging.cart-update-requests.topic-partitions}")
+        }
+    )
     public void handle(CartUpdateRequest request, Acknowledgment ack, @Headers Map<String, Object> headers) {
+        process(request, ack, headers, null);
+    }
+
+    /**
+     * Partition ownership mode: the instances share one consumer group and subscribe to the topic,
+     * so Kafka assigns every partition (and so every cart, keyed by userId) to a single consumer.
+     * The records are written with the fencing token of the consumer assignment, see {@link PartitionOwnershipFencing}.
+     */
+    @KafkaListener(
+        groupId = "${order-processing-system.handlers.cart-update-requests.ownership-group-id:cart-service}",
+        autoStartup = "#{'${order-processing-system.handlers.cart-update-requests.concurrency-control:lock}' == 'partition-ownership'}",
+        topics = "${order-processing-system.messaging.cart-update-requests.topic-name}"
+    )
+    public void handleOwned(
+        CartUpdateRequest request,
+        Acknowledgment ack,
+        @Headers Map<String, Object> headers,
+        org.apache.kafka.clients.consumer.Consumer<?, ?> consumer
+    ) {
+        process(request, ack, headers, ownershipFencing.getObject().fencingToken(consumer));
+    }
 
-        log.info(logTemplate(headers, "Message received"));
+    /**
+     * Retry tiers: each tier has its own container, so that waiting for the delay of a tier does not hold the others.
+     * A record is handled once its due time is reached; failing again moves it to the next tier, or to the DLT.
+     */
+    @KafkaListener(
+        topics = "${order-processing-system.messaging.cart-update-requests.topic-name}-retry-0",
+        autoStartup = "${order-processing-system.messaging.cart-update-requests.retry.enabled:false}"
+    )
+    @KafkaListener(
+        topics = "${order-processing-system.messaging.cart-update-requests.topic-name}-retry-1",
+        autoStartup = "${order-processing-system.messaging.cart-update-requests.retry.enabled:false}"
+    )
+    @KafkaListener(
+        topics = "${order-processing-system.messaging.cart-update-requests.topic-name}-retry-2",
+        autoStartup = "${order-processing-system.messaging.cart-update-requests.retry.enabled:false}"
+    )
+    public void handleRetry(CartUpdateRequest request, Acknowledgment ack, @Headers Map<String, Object> headers) {
+
+        if (! cartUpdateRequestRetryer.isOwnRetry(headers)) {
+            ack.acknowledge();
+            return;
+        }
+
+        var remainingDelayMs = cartUpdateRequestRetryer.remainingDelayMs(headers);
+        if (remainingDelayMs > 0) {
+            // seek back and pause this tier until the record is due
+            ack.nack(Duration.ofMillis(remainingDelayMs));
+            return;
+        }
+
+        logAt(Level.INFO, headers, "Retry message received").log();
+
+        request.setHandlerName(getConsumerName(headers));
+
+        execute(request, headers, ack, null).block();
+    }
+
+    private void process(CartUpdateRequest request, Acknowledgment ack, Map<String, Object> headers, Mono<Long> fencingToken) {
+
+        logAt(Level.INFO, headers, "Message received").log();
 
         request.setHandlerName(getConsumerName(headers));
 
+        if (Objects.equals(consumeMode, CONCURRENT_MODE)) {
+            // offsets are committed by the dispatcher once every previous record of the partition settled
+            cartUpdateRequestDispatcher.dispatch(
+                (String) headers.get(KafkaHeaders.RECEIVED_TOPIC),
+                (Integer) headers.get(KafkaHeaders.RECEIVED_PARTITION),
+                (Long) headers.get(KafkaHeaders.OFFSET),
+                request.getUserId(),
+                ack,
+                () -> execute(request, headers, null, fencingToken)
+            );
+            return;
+        }
+
+        execute(request, headers, ack, fencingToken).block();
+    }
+
+    /**
+     * Batch mode: the records of one poll are grouped by key (userId), and the requests of each cart
+     * are coalesced into one handler call. Carts are handled concurrently, then the whole batch is committed.
+     */
+    @KafkaListener(
+        batch = "true",
+        autoStartup = "#{'${order-processing-system.handlers.cart-update-requests.consume-mode:blocking}' == 'batch'"
+            + " and '${order-processing-system.handlers.cart-update-requests.concurrency-control:lock}' != 'partition-ownership'}",
+        topicPartitions = { @TopicPartition(
+            topic = "${order-processing-system.messaging.cart-update-requests.topic-name}",
+            partitions = "${order-processing-system.messaging.cart-update-requests.topic-partitions}")
+        }
+    )
+    public void handleBatch(List<ConsumerRecord<String, CartUpdateRequest>> records, Acknowledgment ack) {
+
+        var groupId = KafkaUtils.getConsumerGroupId();
+        var requestsByUser = new LinkedHashMap<String, List<CartUpdateRequest>>();
+        var timestampsByUser = new LinkedHashMap<String, List<Long>>();
+        records.forEach(record -> {
+            var request = record.value();
+            request.setHandlerName(String.format("consumer-%s-%s", groupId, record.partition()));
+            requestsByUser.computeIfAbsent(record.key(), key -> new ArrayList<>()).add(request);
+            timestampsByUser.computeIfAbsent(record.key(), key -> new ArrayList<>()).add(record.timestamp());
+        });
+
+        batchLogAt(Level.INFO, groupId, records, "Batch received - carts={}").addArgument(requestsByUser.size()).log();
+
+        var commitedCarts = new AtomicInteger(0);
+        Flux.fromIterable(requestsByUser.entrySet())
+            .flatMap(entry -> cartUpdateRequestHandler
+                .handle(entry.getValue(), (hookName) -> {
+                    if (hookName == CartUpdateRequestHandler.REQUEST_COMMITTED) {
+                        commitedCarts.incrementAndGet();
+                        timestampsByUser.get(entry.getKey())
+                            .forEach(timestamp -> cartUpdateRequestMetrics.recordEndToEnd(timestamp, consumeMode));
+                    }
+                })
+                .onErrorResume(ex -> Mono.empty())
+            )
+            .then()
+            .block()
+        ;
+
+        ack.acknowledge();
+
+        batchLogAt(Level.INFO, groupId, records, "Batch committed - carts={} - committed_carts={}")
+            .addArgument(requestsByUser.size())
+            .addArgument(commitedCarts.get())
+            .log();
+    }
+
+    private Mono<Void> execute(CartUpdateRequest request, Map<String, Object> headers, Acknowledgment ack, Mono<Long> fencingToken) {
+
         var isCommited = new AtomicBoolean(false);
-        var execute = cartUpdateRequestHandler.handle(request, (hookName) -> {
+        Consumer<String> hook = (hookName) -> {
             if (hookName == CartUpdateRequestHandler.REQUEST_COMMITTED) {
-                ack.acknowledge();
+                if (ack != null) {
+                    ack.acknowledge();
+                }
                 isCommited.set(true);
+                cartUpdateRequestMetrics.recordEndToEnd((Long) headers.get(KafkaHeaders.RECEIVED_TIMESTAMP), consumeMode);
             }
-        });
+        };
+        var execute = fencingToken == null
+            ? cartUpdateRequestHandler.handle(request, hook)
+            : fencingToken.flatMap(token -> cartUpdateRequestHandler.handleOwned(List.of(request), token, hook));
 
-        execute
-            .onErrorResume(ex -> Mono.empty())
+        return execute
+            // a newer owner wrote the cart: the partition was reassigned, retrying or dead-lettering would only fail again
+            .onErrorResume(CartWriteFenced.class, ex -> {
+                logAt(Level.ERROR, headers, "Message fenced, the partition is owned by another consumer: {}").addArgument(ex.getMessage()).log();
+                return Mono.empty();
+            })
+            .onErrorResume(ex -> cartUpdateRequestRetryer.shouldRetry(ex, isCommited.get())
+                ? retry(request, headers, ack, isCommited.get(), ex)
+                : Mono.empty()
+            )
             .doOnTerminate(() -> {
                 if (isCommited.get()) {
-                    log.info(logTemplate(headers, "Message committed"));
+                    logAt(Level.INFO, headers, "Message committed").log();
                 } else {
-                    log.info(logTemplate(headers, "Did not commit message"));
+                    logAt(Level.INFO, headers, "Did not commit message").log();
                 }
             })
-            .block()
         ;
     }
 
+    private Mono<Void> retry(CartUpdateRequest request, Map<String, Object> headers, Acknowledgment ack, boolean isCommited, Throwable cause) {
+        return cartUpdateRequestRetryer
+            .retryOrDeadLetter(request, headers, cause)
+            .doOnSuccess(topic -> {
+                // the record now lives in the retry topic, the source offset can move on
+                if (! isCommited && ack != null) {
+                    ack.acknowledge();
+                }
+                logAt(Level.INFO, headers, "Message routed to {}").addArgument(topic).log();
+            })
+            .doOnError(ex -> logAt(Level.ERROR, headers, "Failed to route message for retry: {}").addArgument(() -> ex.getMessage()).log())
+            .onErrorResume(ex -> Mono.empty())
+            .then()
+        ;
+    }
+
+    /**
+     * Same as {@link CartUpdateRequestHandler#logAt}: nothing is formatted when the level is disabled,
+     * and the record context is carried as key-values in structured mode.
+     */
+    private LoggingEventBuilder logAt(Level level, Map<String, Object> headers, String message) {
+        if (! log.isEnabledForLevel(level)) {
+            return NOPLoggingEventBuilder.singleton();
+        }
+        if (Boolean.TRUE.equals(structuredLogging)) {
+            return log.atLevel(level)
+                .setMessage(message)
+                .addKeyValue("key", headers.get(KafkaHeaders.RECEIVED_KEY))
+                .addKeyValue("partition", headers.get(KafkaHeaders.RECEIVED_PARTITION))
+                .addKeyValue("group", headers.get(KafkaHeaders.GROUP_ID))
+                .addKeyValue("offset", headers.get(KafkaHeaders.OFFSET))
+                .addKeyValue("hostname", hostname);
+        }
+        return log.atLevel(level).setMessage(logTemplate(headers, message));
+    }
+
+    private LoggingEventBuilder batchLogAt(Level level, String groupId, List<ConsumerRecord<String, CartUpdateRequest>> records, String message) {
+        if (! log.isEnabledForLevel(level)) {
+            return NOPLoggingEventBuilder.singleton();
+        }
+        if (Boolean.TRUE.equals(structuredLogging)) {
+            return log.atLevel(level)
+                .setMessage(message)
+                .addKeyValue("batch_size", records.size())
+                .addKeyValue("group", groupId)
+                .addKeyValue("first_offset", records.isEmpty() ? null : records.getFirst().offset())
+                .addKeyValue("last_offset", records.isEmpty() ? null : records.getLast().offset())
+                .addKeyValue("hostname", hostname);
+        }
+        return log.atLevel(level).setMessage(batchLogTemplate(groupId, records, message));
+    }
+
     private String logTemplate(Map<String, Object> headers, String append) {
         return String.format(
             "key=%s - partition=%s - group=%s - offset=%s - hostname=%s - " + append,
@@ -67,7 +298,18 @@ public class CartEventsConsumer {
             headers.get(KafkaHeaders.RECEIVED_PARTITION),
             headers.get(KafkaHeaders.GROUP_ID),
             headers.get(KafkaHeaders.OFFSET),
-            env.getProperty("HOSTNAME", "cart-service")
+            hostname
+        );
+    }
+
+    private String batchLogTemplate(String groupId, List<ConsumerRecord<String, CartUpdateRequest>> records, String append) {
+        return String.format(
+            "batch_size=%s - group=%s - first_offset=%s - last_offset=%s - hostname=%s - " + append,
+            records.size(),
+            groupId,
+            records.isEmpty() ? null : records.getFirst().offset(),
+            records.isEmpty() ? null : records.getLast().offset(),
+            hostname
         );
     }
 
@@ -1,6 +1,7 @@
 package com.example.cart.services.cart_service;
 
 import com.example.cart.services.cart_service.entities.CartUpdateRequest;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
@@ -20,4 +21,8 @@ public class CartEventsPublisher {
         var key = request.getUserId();
         return Mono.fromFuture(() -> kafka.send(cartUpdateRequestsTopic, key, request)).then();
     }
+
+    public Mono<Void> publish(ProducerRecord<String, CartUpdateRequest> record) {
+        return Mono.fromFuture(() -> kafka.send(record)).then();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package com.example.cart.services.cart_service;
+
+import com.example.cart.entities.Cart;
+import com.example.cart.entities.properties.CartValidation;
+import com.example.cart.services.inventory_service.ProductAvailabilityView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Completes the carts stored as slim documents (items, version and validation types only) before they are
+ * returned to clients: the product availabilities are read from the shared {@link ProductAvailabilityView},
+ * and the validation messages are rebuilt from their types.
+ *
+ * When the inventory cannot be reached, the carts are returned without the missing availabilities.
+ */
+@Component
+public class CartHydrator {
+
+    private final Logger log = LoggerFactory.getLogger(CartHydrator.class);
+
+    @Autowired
+    private ProductAvailabilityView productAvailabilityView;
+
+    public Mono<Cart> hydrate(Cart cart) {
+        return hydrateAll(List.of(cart)).map(List::getFirst);
+    }
+
+    /**
+     * Hydrates the carts with one read of the view for all their products.
+     */
+    public Mono<List<Cart>> hydrateAll(List<Cart> carts) {
+        var missing = new HashSet<String>();
+        for (var cart : carts) {
+            if (cart.getProductAvailabilities() == null) {
+                cart.setProductAvailabilities(new HashMap<>());
+            }
+            cart.getItems().keySet().stream()
+                .filter(productId -> ! cart.getProductAvailabilities().containsKey(productId))
+                .forEach(missing::add);
+        }
+        if (missing.isEmpty()) {
+            return Mono.just(carts).doOnNext(hydrated -> hydrated.forEach(this::rebuildValidationMessages));
+        }
+        return productAvailabilityView.getProductAvailabilities(missing)
+            .map(found -> {
+                carts.forEach(cart -> cart.getItems().keySet().stream()
+                    .filter(found::containsKey)
+                    .forEach(productId -> cart.getProductAvailabilities().putIfAbsent(productId, found.get(productId)))
+                );
+                return carts;
+            })
+            .onErrorResume(ex -> {
+                log.warn("Failed to hydrate {} carts: {}", carts.size(), ex.getMessage());
+                return Mono.just(carts);
+            })
+            .doOnNext(hydrated -> hydrated.forEach(this::rebuildValidationMessages));
+    }
+
+    private void rebuildValidationMessages(Cart cart) {
+        if (cart.getValidations() == null) {
+            return;
+        }
+        cart.getValidations().replaceAll((productId, validation) -> {
+            var item = cart.getItems().get(productId);
+            var isSlim = validation.getMessage() == null || validation.getMessage().isEmpty();
+            return isSlim && item != null && validation.getType() != null
+                ? CartValidation.ofType(validation.getType(), cart, item)
+                : validation;
+        });
+    }
+}
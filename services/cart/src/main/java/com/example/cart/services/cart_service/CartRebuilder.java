@@ -0,0 +1,96 @@
+package com.example.cart.services.cart_service;
+
+import com.example.cart.entities.Cart;
+import com.example.cart.repositories.cart_repo.drivers.CartEventLogRepository;
+import com.example.cart.services.cart_service.entities.CartUpdateRequest;
+import com.example.cart.services.inventory_service.ProductAvailabilityView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Rebuilds a cart from the requests kept in its log (event-log storage driver), with the current product
+ * availabilities and validations, e.g. after a validation rule changed or a cart was written wrongly.
+ * The log must still retain all the requests of the cart, from version 1.
+ *
+ * The rebuilt cart is stored as a snapshot of the same version, only if the cart did not change meanwhile
+ * (CartVersionConflict otherwise, to call again). A request handled right after may still overwrite it.
+ */
+@Component
+public class CartRebuilder {
+
+    private final Logger log = LoggerFactory.getLogger(CartRebuilder.class);
+
+    @Autowired
+    private ObjectProvider<CartEventLogRepository> cartEventLogRepository;
+
+    @Autowired
+    private ProductAvailabilityView productAvailabilityView;
+
+    @Autowired
+    private CartValidator cartValidator;
+
+    /**
+     * @return the rebuilt cart, empty when the user has no cart
+     */
+    public Mono<Cart> rebuild(String userId) {
+        var cartRepo = cartEventLogRepository.getIfAvailable();
+        if (cartRepo == null) {
+            return Mono.error(new IllegalStateException("Carts can only be rebuilt with the event-log storage driver"));
+        }
+        return cartRepo.getCartByUserId(userId)
+            .flatMap(stored -> cartRepo.listLoggedRequests(userId).collectList()
+                .flatMap(requests -> {
+                    if (! isComplete(requests, stored.getVersionNumber())) {
+                        return Mono.error(new IllegalStateException(String.format(
+                            "The log of the cart does not retain all its requests (%s logged, version %s). User: %s",
+                            requests.size(), stored.getVersionNumber(), userId
+                        )));
+                    }
+                    var cart = new CartBuilder()
+                        .setCart(new Cart(userId))
+                        .setCartUpdateRequests(requests)
+                        .build()
+                        .getCart();
+                    return productAvailabilityView.getProductAvailabilities(cart.getItems().keySet())
+                        .map(products -> new CartBuilder()
+                            .setCart(cart)
+                            .setProductAvailabilities(List.copyOf(products.values()))
+                            .build()
+                            .setCartValidations(cartValidator.validateCartItems(cart))
+                            .build()
+                            .getCart()
+                        )
+                        .flatMap(rebuilt -> {
+                            // stored as a snapshot: the requests are logged already, nothing is archived again
+                            rebuilt.setAppliedRequests(null);
+                            rebuilt.setTouchedProductIds(null);
+                            return cartRepo.saveCartIfVersion(rebuilt, stored.getVersionNumber());
+                        });
+                })
+            )
+            .doOnSuccess(cart -> {
+                if (cart != null) {
+                    log.info("Cart rebuilt from its log - user: {} - version: {}", userId, cart.getVersionNumber());
+                }
+            });
+    }
+
+    private boolean isComplete(List<CartUpdateRequest> requests, Integer storedVersion) {
+        if (requests.isEmpty()) {
+            return false;
+        }
+        for (var i = 0; i < requests.size(); i++) {
+            if (requests.get(i).getVersionNumber() != i + 1) {
+                return false;
+            }
+        }
+        return Objects.equals(requests.getLast().getVersionNumber(), storedVersion);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.cart.services.cart_service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Runs cart update requests without blocking the listener thread.
+ * Requests with the same key (userId) are chained one after another, requests of different
+ * keys run concurrently, and offsets are committed per partition up to the contiguous watermark.
+ */
+@Component
+public class CartUpdateRequestDispatcher {
+
+    private final Logger log = LoggerFactory.getLogger(CartUpdateRequestDispatcher.class);
+
+    private final ConcurrentMap<String, CompletableFuture<Void>> keyTails = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, PartitionOffsetTracker> offsetTrackers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Semaphore> inFlightPermits = new ConcurrentHashMap<>();
+
+    @Value("${order-processing-system.handlers.cart-update-requests.max-in-flight-per-partition:256}")
+    private Integer maxInFlightPerPartition;
+
+    public void dispatch(String topic, Integer partition, Long offset, String key, Acknowledgment ack, Supplier<Mono<Void>> task) {
+
+        var partitionName = topic + "-" + partition;
+        var permits = inFlightPermits.computeIfAbsent(partitionName, p -> new Semaphore(maxInFlightPerPartition));
+        var tracker = offsetTrackers.computeIfAbsent(partitionName, p -> new PartitionOffsetTracker());
+
+        // Only the listener thread waits here, and only when the partition is saturated
+        permits.acquireUninterruptibly();
+        tracker.register(offset);
+
+        var tail = new CompletableFuture<Void>();
+        var previous = keyTails.put(key, tail);
+
+        Mono.defer(() -> previous == null ? Mono.<Void>empty() : Mono.fromFuture(previous))
+            .then(Mono.defer(task))
+            .onErrorResume(ex -> Mono.empty())
+            .doFinally(signal -> {
+                keyTails.remove(key, tail);
+                tail.complete(null);
+                var committed = tracker.complete(offset, ack);
+                permits.release();
+                log.debug("partition={} - offset={} - committed_offset={} - Record settled", partitionName, offset, committed);
+            })
+            .subscribe()
+        ;
+    }
+
+    public int inFlightCount() {
+        return offsetTrackers.values().stream().mapToInt(PartitionOffsetTracker::inFlightCount).sum();
+    }
+}
@@ -4,26 +4,39 @@ import com.example.cart.entities.Cart;
 import com.example.cart.entities.ProductAvailability;
 import com.example.cart.repositories.lock_repo.exceptions.LockUnavailable;
 import com.example.cart.repositories.cart_repo.CartRepository;
+import com.example.cart.repositories.cart_repo.exceptions.CartVersionConflict;
+import com.example.cart.repositories.cart_repo.exceptions.CartWriteFenced;
 import com.example.cart.repositories.lock_repo.LockRepository;
 import com.example.cart.repositories.lock_repo.exceptions.LockValueMismatch;
+import com.example.cart.repositories.keys.RedisKeyLayout;
+import com.example.cart.repositories.keys.exceptions.LegacyKeyConflict;
+import com.example.cart.resilience.DependencyGuard;
+import com.example.cart.resilience.exceptions.DependencyUnavailable;
 import com.example.cart.services.cart_service.entities.CartUpdateRequest;
 import com.example.cart.services.cart_service.exceptions.InvalidCartUpdateRequestVersion;
+import com.example.cart.services.cart_service.statistics.CartUpdateRequestStatistics;
 import com.example.cart.services.inventory_service.InventoryService;
+import com.example.cart.services.inventory_service.ProductAvailabilityView;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+import org.slf4j.spi.LoggingEventBuilder;
+import org.slf4j.spi.NOPLoggingEventBuilder;
+import jakarta.annotation.Resource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
 import reactor.util.retry.RetryBackoffSpec;
 
 import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import static com.example.cart.utils.ErrorUtils.*;
 
@@ -36,12 +49,10 @@ public class CartUpdateRequestHandler {
     public static final String CART_BUILT = "CART_BUILT";
     public static final String CART_SAVED = "CART_SAVED";
 
-    private final Logger log = LoggerFactory.getLogger(CartUpdateRequestHandler.class);
+    public static final String OPTIMISTIC_CONCURRENCY = "optimistic";
+    public static final String PARTITION_OWNERSHIP_CONCURRENCY = "partition-ownership";
 
-    private final ConcurrentMap<String, Integer> observedCartVersions = new ConcurrentHashMap<>();
-    private final ConcurrentMap<String, Integer> requestsHandledTotal = new ConcurrentHashMap<>();
-    public Map<String, Integer> getObservedCartVersions() { return new HashMap<>(observedCartVersions); }
-    public Map<String, Integer> getRequestsHandledTotal() { return new HashMap<>(requestsHandledTotal); }
+    private final Logger log = LoggerFactory.getLogger(CartUpdateRequestHandler.class);
 
     @Value("${HOSTNAME:cart-service}")
     private String hostname;
@@ -52,6 +63,21 @@ public class CartUpdateRequestHandler {
     @Value("${order-processing-system.handlers.cart-update-requests.wait-sec}")
     private Long waitSeconds;
 
+    @Value("${order-processing-system.handlers.cart-update-requests.retry-attempts:10}")
+    private Integer retryAttempts;
+
+    @Value("${order-processing-system.handlers.cart-update-requests.concurrency-control:lock}")
+    private String concurrencyControl;
+
+    /**
+     * 0: a locked cart is skipped right away (LockUnavailable), otherwise the lock is awaited in a FIFO queue.
+     */
+    @Value("${order-processing-system.handlers.cart-update-requests.lock-wait-ms:0}")
+    private Long lockWaitMs;
+
+    @Value("${order-processing-system.logging.structured:true}")
+    private Boolean structuredLogging;
+
     @Autowired
     private LockRepository lockRepo;
 
@@ -61,22 +87,58 @@ public class CartUpdateRequestHandler {
     @Autowired
     private InventoryService inventoryService;
 
+    @Autowired
+    private ProductAvailabilityView productAvailabilityView;
+
+    @Autowired
+    private RedisKeyLayout keyLayout;
+
     @Autowired
     private CartValidator cartValidator;
 
+    @Autowired
+    private CartUpdateRequestMetrics metrics;
+
+    @Autowired
+    private CartUpdateRequestStatistics statistics;
+
+    @Resource(name = "redisGuard")
+    private DependencyGuard redisGuard;
+
+    @Resource(name = "inventoryGuard")
+    private DependencyGuard inventoryGuard;
+
     public Mono<Void> handle(CartUpdateRequest request, Consumer<String> hook) {
+        return handle(List.of(request), hook);
+    }
+
+    /**
+     * Handles requests of the same cart with a single lock/read/validate/save cycle.
+     * The requests are applied in version order, see {@link CartValidator#selectApplicableRequests}.
+     */
+    public Mono<Void> handle(List<CartUpdateRequest> requests, Consumer<String> hook) {
+
+        var request = requests.getLast();
+        var stages = metrics.stageHook(hook);
 
-        log.info(logTemplate(request, "Handling cart update request"));
+        logAt(Level.INFO, request, requests.size() == 1
+            ? "Handling cart update request"
+            : "Handling {} coalesced cart update requests"
+        ).addArgument(requests.size()).log();
+
+        if (Objects.equals(concurrencyControl, OPTIMISTIC_CONCURRENCY)) {
+            return handleOptimistic(request, requests, null, stages).doOnSubscribe(s -> stages.start());
+        }
 
         var lockValue = UUID.randomUUID().toString();
         var isLocked = new AtomicBoolean(false);
-        var acquireLock = acquireLock(request, lockValue, isLocked, hook);
-        var releaseLock = releaseLock(request, lockValue, hook);
-        var commit = Mono.fromRunnable(() -> callHook(REQUEST_COMMITTED, hook));
+        var acquireLock = acquireLock(request, lockValue, isLocked, stages);
+        var releaseLock = releaseLock(request, lockValue, stages);
+        var commit = Mono.fromRunnable(() -> callHook(REQUEST_COMMITTED, stages));
 
-        return checkRequestVersion(request)
+        return checkRequestVersion(request, requests)
             .then(acquireLock)
-            .then(updateCart(request, hook))
+            .then(updateCart(request, requests, stages))
             .then(releaseLock.then(commit))
             .onErrorResume(InvalidCartUpdateRequestVersion.class, ex -> commit.then(Mono.error(ex)))
             .onErrorResume(LockUnavailable.class, ex -> commit.then(Mono.error(ex)))
@@ -85,132 +147,303 @@ public class CartUpdateRequestHandler {
                 : Mono.error(ex)
             )
             .timeout(Duration.ofSeconds(timeoutSeconds))
-            .doOnSuccess(cart -> log.info(logTemplate(request, "Handle cart update request successfully")))
+            .doOnSubscribe(s -> stages.start())
+            .doOnSuccess(cart -> logAt(Level.INFO, request, "Handle cart update request successfully").log())
+            .then()
+        ;
+    }
+
+    /**
+     * Handles requests of a partition owned by this consumer. The exclusion comes from the partition
+     * assignment instead of the distributed lock, and the fencing token (the epoch of the assignment and the
+     * consumer group generation, see {@link PartitionOwnershipFencing}) is stored with the cart so that
+     * a consumer which lost the partition can not overwrite it anymore.
+     */
+    public Mono<Void> handleOwned(List<CartUpdateRequest> requests, Long fencingToken, Consumer<String> hook) {
+
+        var request = requests.getLast();
+
+        logAt(Level.INFO, request, "Handling owned cart update request").addKeyValue("fencing_token", fencingToken).log();
+
+        var stages = metrics.stageHook(hook);
+
+        return handleOptimistic(request, requests, fencingToken, stages).doOnSubscribe(s -> stages.start());
+    }
+
+    /**
+     * Read-modify-write without the distributed lock: the cart is saved only if its stored version
+     * did not change since it was read. On conflict, the whole cycle is retried with a fresh read.
+     */
+    private Mono<Void> handleOptimistic(CartUpdateRequest request, List<CartUpdateRequest> requests, Long fencingToken, Consumer<String> hook) {
+
+        var commit = Mono.fromRunnable(() -> callHook(REQUEST_COMMITTED, hook));
+        var applied = new AtomicInteger(0);
+
+        return Mono
+            .defer(() -> getCart(request)
+                .defaultIfEmpty(new Cart(request.getUserId()))
+                .flatMap(cart -> {
+                    var expectedVersion = cart.getVersionNumber();
+                    // selected on every fresh read, before the inventory call which is useless when nothing applies
+                    var applicable = cartValidator.selectApplicableRequests(cart, requests);
+                    applied.set(applicable.size());
+                    return listProductAvailabilities(request, applicable)
+                        .onErrorReturn(Collections.emptyList())
+                        .flatMap(products -> buildAndValidateCart(cart, products, request, applicable, hook))
+                        .flatMap(built -> compareAndSaveCart(request, built, expectedVersion, fencingToken, hook));
+                })
+            )
+            .retryWhen(conflictRetrySpec("optimistic_cycle"))
+            .doOnSuccess(cart -> {
+                statistics.record(cart.getUserId(), applied.get(), cart.getVersionNumber());
+            })
+            .then(commit)
+            .onErrorResume(InvalidCartUpdateRequestVersion.class, ex -> commit.then(Mono.error(ex)))
+            .timeout(Duration.ofSeconds(timeoutSeconds))
+            .doOnSuccess(ok -> logAt(Level.INFO, request, "Handle cart update request successfully").log())
             .then()
         ;
     }
 
-    private Mono<Void> checkRequestVersion(CartUpdateRequest request) {
+    private Mono<Void> checkRequestVersion(CartUpdateRequest request, List<CartUpdateRequest> requests) {
         return Mono
-            .defer(() -> cartRepo.getCartByUserId(request.getUserId()))
+            .defer(() -> redisGuard.protect(cartRepo.getCartByUserId(request.getUserId())))
             .defaultIfEmpty(new Cart())
-            .retryWhen(exponentialRetrySpec())
+            .retryWhen(exponentialRetrySpec("check_request_version", redisGuard, ex -> !(ex instanceof LegacyKeyConflict)))
+            .transform(metrics.timeCall("check_request_version"))
             .timeout(Duration.ofSeconds(waitSeconds))
             .map(cart -> {
                 if (cart != null && Objects.equals(cart.getUserId(), request.getUserId())) {
-                    cartValidator.checkCartUpdateRequestVersion(cart, request);
+                    cartValidator.selectApplicableRequests(cart, requests);
                 }
                 return cart;
             })
-            .doOnError(ex -> log.error(logTemplate(request, "Failed to check request version: {}"), exceptionCause(ex).getMessage()))
-            .doOnSuccess(cart -> log.debug(logTemplate(request, "Request version checked")))
+            .doOnError(ex -> logAt(Level.ERROR, request, "Failed to check request version: {}").addArgument(() -> exceptionCause(ex).getMessage()).log())
+            .doOnSuccess(cart -> logAt(Level.DEBUG, request, "Request version checked").log())
             .then()
         ;
     }
 
     private Mono<Void> acquireLock(CartUpdateRequest request, String lockValue, AtomicBoolean isLocked, Consumer<String> hook) {
         return Mono
-            .defer(() -> lockRepo.acquireLock("carts:" + request.getUserId(), lockValue, Duration.ofSeconds(timeoutSeconds)))
-            .retryWhen(exponentialRetrySpec().filter(ex -> !(ex instanceof LockUnavailable)))
+            .defer(() -> acquireLocks(lockResources(request), lockValue))
+            .retryWhen(exponentialRetrySpec("acquire_lock", redisGuard, ex -> !(ex instanceof LockUnavailable)))
+            .transform(metrics.timeCall("acquire_lock"))
             .timeout(Duration.ofSeconds(waitSeconds))
-            .doOnError(ex -> log.error(logTemplate(request, "Lock acquire failed: {}"), exceptionCause(ex).getMessage()))
-            .doOnSuccess(ok -> log.debug(logTemplate(request, "Lock acquire success")))
+            .doOnError(ex -> logAt(Level.ERROR, request, "Lock acquire failed: {}").addArgument(() -> exceptionCause(ex).getMessage()).log())
+            .doOnSuccess(ok -> logAt(Level.DEBUG, request, "Lock acquire success").log())
             .doOnSuccess(ok -> callHook(LOCK_ACQUIRED, hook))
             .doOnSuccess(ok -> isLocked.set(true))
         ;
     }
 
+    /**
+     * The locks are taken in order, the ones taken are given back when the next one fails.
+     */
+    private Mono<Void> acquireLocks(List<String> resources, String lockValue) {
+        var acquired = new ArrayList<String>();
+        return Flux.fromIterable(resources)
+            .concatMap(resource -> acquireLock(resource, lockValue).doOnSuccess(ok -> acquired.add(resource)))
+            .then()
+            .onErrorResume(ex -> releaseLocks(acquired, lockValue).onErrorResume(releaseEx -> Mono.empty()).then(Mono.error(ex)))
+            .doOnCancel(() -> releaseLocks(acquired, lockValue).onErrorResume(releaseEx -> Mono.empty()).subscribe());
+    }
+
+    private Mono<Void> acquireLock(String resource, String lockValue) {
+        return lockWaitMs > 0
+            ? redisGuard.protect(
+                lockRepo.acquireLockQueued(resource, lockValue, Duration.ofSeconds(timeoutSeconds), Duration.ofMillis(lockWaitMs)),
+                redisGuard.getCallTimeout().plusMillis(lockWaitMs)
+            )
+            : redisGuard.protect(lockRepo.acquireLock(resource, lockValue, Duration.ofSeconds(timeoutSeconds)));
+    }
+
+    /**
+     * Released in the reverse order of the acquisition.
+     */
+    private Mono<Void> releaseLocks(List<String> resources, String lockValue) {
+        return Flux.fromIterable(resources.reversed())
+            .concatMap(resource -> redisGuard.protect(lockRepo.releaseLock(resource, lockValue)))
+            .then();
+    }
+
+    /**
+     * Same hash tag as the cart keys, so that the lock is in the same cluster slot as the cart.
+     * While migrating the key layout, the legacy name is locked too, see {@link RedisKeyLayout}.
+     */
+    private List<String> lockResources(CartUpdateRequest request) {
+        return keyLayout.lockNames("carts:", request.getUserId());
+    }
+
     private Mono<Void> releaseLock(CartUpdateRequest request, String lockValue, Consumer<String> hook) {
         return Mono
-            .defer(() -> lockRepo.releaseLock("carts:" + request.getUserId(), lockValue))
-            .retryWhen(exponentialRetrySpec().filter(ex -> !(ex instanceof LockValueMismatch)))
+            .defer(() -> releaseLocks(lockResources(request), lockValue))
+            .retryWhen(exponentialRetrySpec("release_lock", redisGuard, ex -> !(ex instanceof LockValueMismatch)))
+            .transform(metrics.timeCall("release_lock"))
             .timeout(Duration.ofSeconds(waitSeconds))
-            .doOnError(ex -> log.error(logTemplate(request, "Lock release failed: {}"), exceptionCause(ex).getMessage()))
-            .doOnSuccess(ok -> log.debug(logTemplate(request, "Lock release success")))
+            .doOnError(ex -> logAt(Level.ERROR, request, "Lock release failed: {}").addArgument(() -> exceptionCause(ex).getMessage()).log())
+            .doOnSuccess(ok -> logAt(Level.DEBUG, request, "Lock release success").log())
             .doOnSuccess(ok -> callHook(LOCK_RELEASED, hook))
         ;
     }
 
-    private Mono<Cart> updateCart(CartUpdateRequest request, Consumer<String> hook) {
+    private Mono<Cart> updateCart(CartUpdateRequest request, List<CartUpdateRequest> requests, Consumer<String> hook) {
+        var applied = new AtomicInteger(0);
         return Mono
             .zip(
                 getCart(request).defaultIfEmpty(new Cart(request.getUserId())),
-                listProductAvailabilities(request).onErrorReturn(Collections.emptyList())
+                listProductAvailabilities(request, requests).onErrorReturn(Collections.emptyList())
             )
-            .flatMap(tuple2 -> buildAndValidateCart(tuple2.getT1(), tuple2.getT2(), request, hook))
+            .flatMap(tuple2 -> {
+                var applicable = cartValidator.selectApplicableRequests(tuple2.getT1(), requests);
+                applied.set(applicable.size());
+                return buildAndValidateCart(tuple2.getT1(), tuple2.getT2(), request, applicable, hook);
+            })
             .flatMap(cart -> saveCart(request, cart, hook))
             .doOnSuccess(cart -> {
-                observedCartVersions.put(cart.getUserId(), cart.getVersionNumber());
-                requestsHandledTotal.merge(cart.getUserId(), 1, Integer::sum);
+                statistics.record(cart.getUserId(), applied.get(), cart.getVersionNumber());
             });
     }
 
     private Mono<Cart> getCart(CartUpdateRequest request) {
         return Mono
-            .defer(() -> cartRepo.getCartByUserId(request.getUserId()))
-            .retryWhen(exponentialRetrySpec())
+            .defer(() -> redisGuard.protect(cartRepo.getCartByUserId(request.getUserId())))
+            .retryWhen(exponentialRetrySpec("get_cart", redisGuard, ex -> !(ex instanceof LegacyKeyConflict)))
+            .transform(metrics.timeCall("get_cart"))
             .timeout(Duration.ofSeconds(waitSeconds))
-            .doOnError(ex -> log.error(logTemplate(request, "Failed to get cart: {}"), exceptionCause(ex).getMessage()))
+            .doOnError(ex -> logAt(Level.ERROR, request, "Failed to get cart: {}").addArgument(() -> exceptionCause(ex).getMessage()).log())
             .doOnSuccess(cart ->
-                log.debug(logTemplate(request, cart == null || cart.getVersionNumber() == 0
+                logAt(Level.DEBUG, request, cart == null || cart.getVersionNumber() == 0
                     ? "Cart not found"
                     : "Cart found"
-            )))
+            ).log())
         ;
     }
 
-    private Mono<List<ProductAvailability>> listProductAvailabilities(CartUpdateRequest request) {
+    private Mono<List<ProductAvailability>> listProductAvailabilities(CartUpdateRequest request, List<CartUpdateRequest> requests) {
+        var productIds = requests.stream()
+            .flatMap(r -> r.getProductIds().stream())
+            .filter(Objects::nonNull)
+            .distinct()
+            .toList();
+        // while watched, the view is current and only calls the inventory for the products it misses
         return Mono
-            .defer(() -> inventoryService.listProductAvailabilities(request.getProductIds()).collectList())
-            .retryWhen(weakRetrySpec())
+            .defer(() -> productAvailabilityView.isWatching()
+                ? productAvailabilityView.getProductAvailabilities(productIds).map(found -> List.copyOf(found.values()))
+                : inventoryGuard.protect(inventoryService.listProductAvailabilities(productIds).collectList())
+                    .doOnNext(productAvailabilityView::put)
+            )
+            .retryWhen(weakRetrySpec("list_product_availabilities", inventoryGuard))
+            .transform(metrics.timeCall("list_product_availabilities"))
             .timeout(Duration.ofSeconds(waitSeconds))
-            .doOnError(ex -> log.error(logTemplate(request, "Get product infos failed: {}"), exceptionCause(ex).getMessage()))
-            .doOnSuccess(ok -> log.debug(logTemplate(request, "Get product infos success - IDs: {}"), request.getProductIds()))
+            .doOnError(ex -> logAt(Level.ERROR, request, "Get product infos failed: {}").addArgument(() -> exceptionCause(ex).getMessage()).log())
+            .doOnSuccess(ok -> logAt(Level.DEBUG, request, "Get product infos success - IDs: {}").addArgument(productIds).log())
         ;
     }
 
     private Mono<Cart> saveCart(CartUpdateRequest request, Cart cart, Consumer<String> hook) {
         return Mono
-            .defer(() -> cartRepo.saveCart(cart))
-            .retryWhen(exponentialRetrySpec())
+            .defer(() -> redisGuard.protect(cartRepo.saveCart(cart)))
+            .retryWhen(exponentialRetrySpec("save_cart", redisGuard))
+            .transform(metrics.timeCall("save_cart"))
             .timeout(Duration.ofSeconds(waitSeconds))
-            .doOnError(ex -> log.error(logTemplate(request, "Saved cart failed: {}"), exceptionCause(ex).getMessage()))
-            .doOnSuccess(ok -> log.debug(logTemplate(request, "Saved cart success")))
+            .doOnError(ex -> logAt(Level.ERROR, request, "Saved cart failed: {}").addArgument(() -> exceptionCause(ex).getMessage()).log())
+            .doOnSuccess(ok -> logAt(Level.DEBUG, request, "Saved cart success").log())
             .doOnSuccess(ok -> callHook(CART_SAVED, hook))
         ;
     }
 
-    private Mono<Cart> buildAndValidateCart(Cart cart, List<ProductAvailability> products, CartUpdateRequest request, Consumer<String> hook) {
+    private Mono<Cart> compareAndSaveCart(CartUpdateRequest request, Cart cart, Integer expectedVersion, Long fencingToken, Consumer<String> hook) {
         return Mono
-            .fromCallable(() -> {
-                cartValidator.checkCartUpdateRequestVersion(cart, request);
-                return new CartBuilder()
-                    .setCart(cart)
-                    .setProductAvailabilities(products)
-                    .setCartUpdateRequest(request)
-                    .build()
-                    .setCartValidations(cartValidator.validateCartItems(cart))
-                    .build()
-                    .getCart();
-            })
-            .doOnError(ex -> log.error(logTemplate(request, "Build cart failed: {}"), ex.getMessage()))
-            .doOnSuccess(ok -> log.debug(logTemplate(request, "Build cart success")))
+            .defer(() -> redisGuard.protect(cartRepo.saveCartIfVersion(cart, expectedVersion, fencingToken)))
+            .retryWhen(exponentialRetrySpec("compare_and_save_cart", redisGuard, ex -> !(ex instanceof CartVersionConflict || ex instanceof CartWriteFenced)))
+            .transform(metrics.timeCall("compare_and_save_cart"))
+            .timeout(Duration.ofSeconds(waitSeconds))
+            .doOnError(ex -> logAt(Level.ERROR, request, "Compare and save cart failed: {}").addArgument(() -> exceptionCause(ex).getMessage()).log())
+            .doOnSuccess(ok -> logAt(Level.DEBUG, request, "Compare and save cart success").log())
+            .doOnSuccess(ok -> callHook(CART_SAVED, hook))
+        ;
+    }
+
+    private Mono<Cart> buildAndValidateCart(
+        Cart cart,
+        List<ProductAvailability> products,
+        CartUpdateRequest request,
+        List<CartUpdateRequest> applicable,
+        Consumer<String> hook
+    ) {
+        return Mono
+            .fromCallable(() -> new CartBuilder()
+                .setCart(cart)
+                .setProductAvailabilities(products)
+                .setCartUpdateRequests(applicable)
+                .build()
+                .setCartValidations(cartValidator.validateCartItems(cart))
+                .build()
+                .getCart()
+            )
+            .doOnError(ex -> logAt(Level.ERROR, request, "Build cart failed: {}").addArgument(() -> ex.getMessage()).log())
+            .doOnSuccess(ok -> logAt(Level.DEBUG, request, "Build cart success").log())
             .doOnSuccess(ok -> callHook(CART_BUILT, hook))
         ;
     }
 
-    private RetryBackoffSpec exponentialRetrySpec() {
-        return Retry.backoff(10, Duration.ofMillis(200)).jitter(0.5).doBeforeRetry(retrySignal -> {
-            log.debug("Retry attempt ({}): {}", retrySignal.totalRetries() + 1, retrySignal.failure().toString());
-        });
+    private RetryBackoffSpec exponentialRetrySpec(String call, DependencyGuard guard) {
+        return exponentialRetrySpec(call, guard, ex -> true);
+    }
+
+    /**
+     * Retries spend the retry budget of the dependency, and a call rejected by an open breaker fails fast.
+     */
+    private RetryBackoffSpec exponentialRetrySpec(String call, DependencyGuard guard, Predicate<Throwable> isRetryable) {
+        return Retry.backoff(retryAttempts, Duration.ofMillis(200)).jitter(0.5)
+            .filter(ex -> isRetryable.test(ex) && !(ex instanceof DependencyUnavailable) && guard.tryAcquireRetry())
+            .doBeforeRetry(retrySignal -> {
+                metrics.recordRetry(call);
+                if (log.isDebugEnabled()) {
+                    log.debug("Retry attempt ({}): {}", retrySignal.totalRetries() + 1, retrySignal.failure().toString());
+                }
+            });
     }
 
-    private RetryBackoffSpec weakRetrySpec() {
-        return Retry.fixedDelay(3, Duration.ofMillis(100)).doBeforeRetry(retrySignal -> {
-            log.debug("Weak retry attempt ({}): {}", retrySignal.totalRetries() + 1, retrySignal.failure().toString());
+    private RetryBackoffSpec conflictRetrySpec(String call) {
+        return Retry.backoff(5, Duration.ofMillis(20)).jitter(0.5).filter(ex -> ex instanceof CartVersionConflict).doBeforeRetry(retrySignal -> {
+            metrics.recordRetry(call);
+            if (log.isDebugEnabled()) {
+                log.debug("Conflict retry attempt ({}): {}", retrySignal.totalRetries() + 1, retrySignal.failure().toString());
+            }
         });
     }
 
+    private RetryBackoffSpec weakRetrySpec(String call, DependencyGuard guard) {
+        return Retry.fixedDelay(3, Duration.ofMillis(100))
+            .filter(ex -> !(ex instanceof DependencyUnavailable) && guard.tryAcquireRetry())
+            .doBeforeRetry(retrySignal -> {
+                metrics.recordRetry(call);
+                if (log.isDebugEnabled()) {
+                    log.debug("Weak retry attempt ({}): {}", retrySignal.totalRetries() + 1, retrySignal.failure().toString());
+                }
+            });
+    }
+
+    /**
+     * Returns a no-op builder when the level is disabled, so that nothing is formatted for filtered lines.
+     * In structured mode, the request context is carried as key-values instead of a formatted prefix.
+     */
+    LoggingEventBuilder logAt(Level level, CartUpdateRequest request, String message) {
+        if (! log.isEnabledForLevel(level)) {
+            return NOPLoggingEventBuilder.singleton();
+        }
+        if (Boolean.TRUE.equals(structuredLogging)) {
+            return log.atLevel(level)
+                .setMessage(message)
+                .addKeyValue("user_id", request.getUserId())
+                .addKeyValue("cart_ver", request.getVersionNumber())
+                .addKeyValue("handler", request.getHandlerName());
+        }
+        return log.atLevel(level).setMessage(logTemplate(request, message));
+    }
+
     private String logTemplate(CartUpdateRequest request, String append) {
         return String.format(
             "user_id=%s - cart_ver=%s - handler=%s - " + append,
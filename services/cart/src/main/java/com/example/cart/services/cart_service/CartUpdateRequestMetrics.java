@@ -0,0 +1,114 @@
+package com.example.cart.services.cart_service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Latency histograms of the cart update request handling, exported with the Prometheus registry:
+ * <ul>
+ *     <li>cart_update_request.stage: time between two hook points, tagged with the hook ending the stage</li>
+ *     <li>cart_update_request.call: time of each dependency call (redis, inventory), retries included</li>
+ *     <li>cart_update_request.retries: retries per call</li>
+ *     <li>cart_update_request.end_to_end: from the record timestamp to the commit</li>
+ * </ul>
+ */
+@Component
+public class CartUpdateRequestMetrics {
+
+    public static final String STAGE_TIMER = "cart_update_request.stage";
+    public static final String CALL_TIMER = "cart_update_request.call";
+    public static final String RETRIES_COUNTER = "cart_update_request.retries";
+    public static final String END_TO_END_TIMER = "cart_update_request.end_to_end";
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Wraps the hook of one handling, so that each hook point records the stage it ends.
+     * The first stage starts when {@link StageHook#start()} is called, on subscription.
+     */
+    public StageHook stageHook(Consumer<String> hook) {
+        return new StageHook(hook);
+    }
+
+    public <T> Function<Mono<T>, Mono<T>> timeCall(String call) {
+        return mono -> Mono.defer(() -> {
+            var startedAt = System.nanoTime();
+            return mono.doFinally(signal -> timer(CALL_TIMER, "call", call, "outcome", outcome(signal))
+                .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    public void recordRetry(String call) {
+        counters.computeIfAbsent(call, c -> Counter.builder(RETRIES_COUNTER)
+            .tag("call", c)
+            .register(registry)
+        ).increment();
+    }
+
+    /**
+     * @param recordTimestampMs the Kafka record timestamp, ignored when unknown
+     */
+    public void recordEndToEnd(Long recordTimestampMs, String consumeMode) {
+        if (recordTimestampMs == null || recordTimestampMs <= 0) {
+            return;
+        }
+        var elapsedMs = Math.max(0, System.currentTimeMillis() - recordTimestampMs);
+        timer(END_TO_END_TIMER, "consume_mode", consumeMode).record(Duration.ofMillis(elapsedMs));
+    }
+
+    private Timer timer(String name, String... tags) {
+        return timers.computeIfAbsent(name + String.join(",", tags), key -> Timer.builder(name)
+            .tags(tags)
+            .publishPercentileHistogram()
+            .register(registry)
+        );
+    }
+
+    private String outcome(SignalType signal) {
+        return switch (signal) {
+            case ON_COMPLETE -> "success";
+            case ON_ERROR -> "error";
+            default -> "cancelled";
+        };
+    }
+
+    public class StageHook implements Consumer<String> {
+
+        private final Consumer<String> hook;
+        private volatile long stageStartedAt = System.nanoTime();
+
+        private StageHook(Consumer<String> hook) {
+            this.hook = hook;
+        }
+
+        public void start() {
+            stageStartedAt = System.nanoTime();
+        }
+
+        @Override
+        public void accept(String hookName) {
+            var now = System.nanoTime();
+            timer(STAGE_TIMER, "stage", hookName.toLowerCase()).record(now - stageStartedAt, TimeUnit.NANOSECONDS);
+            stageStartedAt = now;
+            if (hook != null) {
+                hook.accept(hookName);
+            }
+        }
+    }
+}
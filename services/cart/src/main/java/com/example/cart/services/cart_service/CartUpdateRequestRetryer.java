@@ -0,0 +1,157 @@
+package com.example.cart.services.cart_service;
+
+import com.example.cart.services.cart_service.entities.CartUpdateRequest;
+import com.example.cart.services.cart_service.exceptions.InvalidCartUpdateRequestVersion;
+import jakarta.annotation.PostConstruct;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import static com.example.cart.services.cart_service.CartUpdateRequestHandler.PARTITION_OWNERSHIP_CONCURRENCY;
+import static com.example.cart.utils.ErrorUtils.exceptionCause;
+
+/**
+ * Routes the cart update requests that failed to the retry topics ("{topic}-retry-{tier}"), each tier
+ * with a longer delay, and to the dead letter topic ("{topic}-dlt") once every tier has been tried.
+ * The original headers are kept, and the failure cause is recorded in the headers.
+ */
+@Component
+public class CartUpdateRequestRetryer {
+
+    public static final String RETRY_ATTEMPT_HEADER = "x-retry-attempt";
+    public static final String RETRY_DUE_AT_HEADER = "x-retry-due-at";
+    public static final String ORIGIN_GROUP_HEADER = "x-origin-group";
+    public static final String ORIGIN_TOPIC_HEADER = "x-origin-topic";
+    public static final String ORIGIN_PARTITION_HEADER = "x-origin-partition";
+    public static final String ORIGIN_OFFSET_HEADER = "x-origin-offset";
+    public static final String FAILURE_CLASS_HEADER = "x-failure-class";
+    public static final String FAILURE_MESSAGE_HEADER = "x-failure-message";
+
+    private static final List<String> ROUTING_HEADERS = List.of(
+        RETRY_ATTEMPT_HEADER, RETRY_DUE_AT_HEADER, FAILURE_CLASS_HEADER, FAILURE_MESSAGE_HEADER
+    );
+
+    @Value("${order-processing-system.messaging.cart-update-requests.topic-name}")
+    private String topic;
+
+    @Value("${order-processing-system.messaging.cart-update-requests.retry.enabled:false}")
+    private Boolean enabled;
+
+    @Value("${order-processing-system.messaging.cart-update-requests.retry.delays-ms:1000,10000,60000}")
+    private List<Long> delaysMs;
+
+    @Value("${order-processing-system.handlers.cart-update-requests.concurrency-control:lock}")
+    private String concurrencyControl;
+
+    @Autowired
+    private CartEventsPublisher cartEventsPublisher;
+
+    /**
+     * The retry tiers are consumed by other consumers than the owner of the partition of the cart, which would write
+     * the cart without its fencing token (or with a token of their own, fencing the owner), so both are not combined.
+     */
+    @PostConstruct
+    public void checkConcurrencyControl() {
+        if (enabled && PARTITION_OWNERSHIP_CONCURRENCY.equals(concurrencyControl)) {
+            throw new IllegalStateException("The retry topics can not be enabled with the partition-ownership concurrency control");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Requests that were not committed failed unexpectedly. Requests ahead of the cart version were committed,
+     * but are retried as well, as the missing versions might be waiting in a retry topic.
+     */
+    public boolean shouldRetry(Throwable ex, boolean isCommitted) {
+        return enabled && (! isCommitted || (ex instanceof InvalidCartUpdateRequestVersion invalid && invalid.isAhead()));
+    }
+
+    /**
+     * Publishes the request to the next retry tier, or to the dead letter topic, and returns the topic name.
+     */
+    public Mono<String> retryOrDeadLetter(CartUpdateRequest request, Map<String, Object> headers, Throwable cause) {
+
+        var attempt = getHeader(headers, RETRY_ATTEMPT_HEADER).map(Integer::valueOf).orElse(0);
+        var isDeadLetter = attempt >= delaysMs.size();
+        var targetTopic = isDeadLetter ? deadLetterTopic() : retryTopic(attempt);
+
+        var recordHeaders = new RecordHeaders();
+        headers.forEach((name, value) -> {
+            if (isForwarded(name)) {
+                recordHeaders.add(name, value instanceof byte[] bytes ? bytes : String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        if (getHeader(headers, ORIGIN_TOPIC_HEADER).isEmpty()) {
+            addHeader(recordHeaders, ORIGIN_GROUP_HEADER, headers.get(KafkaHeaders.GROUP_ID));
+            addHeader(recordHeaders, ORIGIN_TOPIC_HEADER, headers.get(KafkaHeaders.RECEIVED_TOPIC));
+            addHeader(recordHeaders, ORIGIN_PARTITION_HEADER, headers.get(KafkaHeaders.RECEIVED_PARTITION));
+            addHeader(recordHeaders, ORIGIN_OFFSET_HEADER, headers.get(KafkaHeaders.OFFSET));
+        }
+        addHeader(recordHeaders, RETRY_ATTEMPT_HEADER, attempt + 1);
+        if (! isDeadLetter) {
+            addHeader(recordHeaders, RETRY_DUE_AT_HEADER, System.currentTimeMillis() + delaysMs.get(attempt));
+        }
+        addHeader(recordHeaders, FAILURE_CLASS_HEADER, exceptionCause(cause).getClass().getName());
+        addHeader(recordHeaders, FAILURE_MESSAGE_HEADER, exceptionCause(cause).getMessage());
+
+        var record = new ProducerRecord<>(targetTopic, null, request.getUserId(), request, recordHeaders);
+
+        return cartEventsPublisher.publish(record).thenReturn(targetTopic);
+    }
+
+    /**
+     * Retry records are published by every consumer group; a group only handles the records it published.
+     */
+    public boolean isOwnRetry(Map<String, Object> headers) {
+        return getHeader(headers, ORIGIN_GROUP_HEADER)
+            .map(group -> Objects.equals(group, String.valueOf(headers.get(KafkaHeaders.GROUP_ID))))
+            .orElse(true);
+    }
+
+    public long remainingDelayMs(Map<String, Object> headers) {
+        return getHeader(headers, RETRY_DUE_AT_HEADER)
+            .map(dueAt -> Long.parseLong(dueAt) - System.currentTimeMillis())
+            .orElse(0L);
+    }
+
+    public String retryTopic(int tier) {
+        return topic + "-retry-" + tier;
+    }
+
+    public String deadLetterTopic() {
+        return topic + "-dlt";
+    }
+
+    private boolean isForwarded(String name) {
+        return ! name.startsWith(KafkaHeaders.PREFIX)
+            && ! name.startsWith("__")
+            && ! name.equals(MessageHeaders.ID)
+            && ! name.equals(MessageHeaders.TIMESTAMP)
+            && ! ROUTING_HEADERS.contains(name);
+    }
+
+    private void addHeader(RecordHeaders recordHeaders, String name, Object value) {
+        if (value != null) {
+            recordHeaders.add(name, String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private Optional<String> getHeader(Map<String, Object> headers, String name) {
+        return Optional.ofNullable(headers.get(name))
+            .map(value -> value instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : String.valueOf(value));
+    }
+}
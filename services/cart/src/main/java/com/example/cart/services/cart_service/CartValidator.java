@@ -7,6 +7,8 @@ import com.example.cart.services.cart_service.exceptions.InvalidCartUpdateReques
 import lombok.NoArgsConstructor;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -21,6 +23,32 @@ public class CartValidator {
         }
     }
 
+    /**
+     * Returns the requests that can be applied on the cart, in version order: the consecutive run
+     * starting one unit ahead the cart version. Requests already applied, or after a gap, are left out.
+     */
+    public List<CartUpdateRequest> selectApplicableRequests(Cart cart, List<CartUpdateRequest> requests) throws InvalidCartUpdateRequestVersion {
+        var sorted = requests.stream()
+            .sorted(Comparator.comparing(CartUpdateRequest::getVersionNumber))
+            .toList();
+
+        var applicable = new ArrayList<CartUpdateRequest>();
+        var nextVersion = cart.getVersionNumber() + 1;
+        for (var request : sorted) {
+            if (request.getVersionNumber() == nextVersion) {
+                applicable.add(request);
+                nextVersion++;
+            } else if (request.getVersionNumber() > nextVersion) {
+                break;
+            }
+        }
+
+        if (applicable.isEmpty()) {
+            throw new InvalidCartUpdateRequestVersion(sorted.getFirst().getVersionNumber(), cart.getVersionNumber());
+        }
+        return applicable;
+    }
+
     public List<CartValidation> validateCartItems(Cart cart) {
         return cart.getItems().values().stream()
             .map(cartItem -> checkProductAvailabilities(cart, cartItem))
@@ -0,0 +1,55 @@
+package com.example.cart.services.cart_service;
+
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Tracks the records of one partition that are handled out of order, and only acknowledges
+ * the highest offset below which every record has completed (the "contiguous" watermark).
+ */
+public class PartitionOffsetTracker {
+
+    private final TreeSet<Long> inFlight = new TreeSet<>();
+    private final TreeMap<Long, Acknowledgment> completed = new TreeMap<>();
+    private long committedOffset = -1;
+
+    public synchronized void register(long offset) {
+        inFlight.add(offset);
+    }
+
+    /**
+     * Marks the record as completed and acknowledges the new watermark, if it moved.
+     * The acknowledgment happens inside the lock so that commits can never go backward.
+     *
+     * @return the committed offset after this call, or -1 if nothing was committed yet
+     */
+    public synchronized long complete(long offset, Acknowledgment ack) {
+        if (! inFlight.remove(offset)) {
+            return committedOffset;
+        }
+        completed.put(offset, ack);
+
+        var committable = inFlight.isEmpty()
+            ? completed
+            : completed.headMap(inFlight.first(), false);
+
+        if (! committable.isEmpty()) {
+            var watermark = committable.lastEntry();
+            watermark.getValue().acknowledge();
+            committedOffset = watermark.getKey();
+            committable.clear();
+        }
+
+        return committedOffset;
+    }
+
+    public synchronized int inFlightCount() {
+        return inFlight.size();
+    }
+
+    public synchronized long getCommittedOffset() {
+        return committedOffset;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.cart.services.cart_service;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fencing tokens of the partition ownership mode. Every partition assignment of a consumer of the ownership group
+ * takes a new epoch from a Redis counter, so that the tokens keep increasing when the consumer group is recreated
+ * or renamed, whereas the group generation then restarts from 1 and every cart written before would be fenced.
+ *
+ * The token is the epoch in the high bits and the group generation in the low bits: the epoch decides, and the
+ * tokens stored before the epochs existed (bare generations) stay lower than all the new ones.
+ *
+ * The counter was named carts:ownership-epoch before it took the prefix of the other keys: the first epoch
+ * taken under the new name continues from the previous counter, with a margin above the epochs the instances
+ * not deployed yet still take from it.
+ */
+@Component
+@ConditionalOnProperty(name = "order-processing-system.handlers.cart-update-requests.concurrency-control", havingValue = "partition-ownership")
+public class PartitionOwnershipFencing implements ConsumerAwareRebalanceListener {
+
+    public static final String EPOCH_KEY = "order-processing-system:carts:ownership-epoch";
+    static final String LEGACY_EPOCH_KEY = "carts:ownership-epoch";
+    static final long LEGACY_EPOCH_MARGIN = 1_000_000;
+
+    private static final int GENERATION_BITS = 24;
+    private static final long GENERATION_MASK = (1L << GENERATION_BITS) - 1;
+
+    private final Logger log = LoggerFactory.getLogger(PartitionOwnershipFencing.class);
+
+    @Value("${order-processing-system.handlers.cart-update-requests.ownership-group-id:cart-service}")
+    private String ownershipGroupId;
+
+    @Autowired
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    private final Map<Consumer<?, ?>, Long> epochs = new ConcurrentHashMap<>();
+
+    /**
+     * Runs within the rebalance, before the new owner fetches a record: a consumer that missed the rebalance
+     * still has the epoch of its previous assignment, lower than the one of the new owner.
+     */
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (! isOwnershipConsumer(consumer)) {
+            return;
+        }
+        epochs.remove(consumer);
+        try {
+            var epoch = nextEpoch().block(Duration.ofSeconds(5));
+            epochs.put(consumer, epoch);
+            log.info("Partition ownership - partitions assigned: {} - epoch: {} - generation: {}",
+                partitions, epoch, consumer.groupMetadata().generationId());
+        } catch (Exception ex) {
+            log.error("Partition ownership - failed to take an epoch for the partitions {}, taken on the first record instead: {}",
+                partitions, ex.getMessage());
+        }
+    }
+
+    /**
+     * The token of the records polled by the consumer. When the epoch could not be taken with the assignment,
+     * it is taken now, which only fences correctly as long as this consumer was not replaced in the meantime.
+     */
+    public Mono<Long> fencingToken(Consumer<?, ?> consumer) {
+        var generation = consumer.groupMetadata().generationId() & GENERATION_MASK;
+        var epoch = epochs.get(consumer);
+        if (epoch != null) {
+            return Mono.just(epoch << GENERATION_BITS | generation);
+        }
+        return nextEpoch()
+            .doOnNext(taken -> {
+                log.warn("Partition ownership - epoch taken after the assignment: {}", taken);
+                epochs.put(consumer, taken);
+            })
+            .map(taken -> taken << GENERATION_BITS | generation);
+    }
+
+    private Mono<Long> nextEpoch() {
+        return redisTemplate.hasKey(EPOCH_KEY)
+            .flatMap(exists -> exists
+                ? Mono.just(true)
+                : redisTemplate.opsForValue().get(LEGACY_EPOCH_KEY)
+                    .flatMap(legacy -> redisTemplate.opsForValue().setIfAbsent(EPOCH_KEY, String.valueOf(Long.parseLong(legacy) + LEGACY_EPOCH_MARGIN)))
+                    .defaultIfEmpty(true)
+            )
+            .then(redisTemplate.opsForValue().increment(EPOCH_KEY));
+    }
+
+    private boolean isOwnershipConsumer(Consumer<?, ?> consumer) {
+        return Objects.equals(consumer.groupMetadata().groupId(), ownershipGroupId);
+    }
+}
@@ -1,7 +1,23 @@
 package com.example.cart.services.cart_service.exceptions;
 
+import lombok.Getter;
+
+@Getter
 public class InvalidCartUpdateRequestVersion extends RuntimeException {
+
+    private final Integer requestVersion;
+    private final Integer cartVersion;
+
     public InvalidCartUpdateRequestVersion(Integer requestVersion, Integer cartVersion) {
         super(String.format("Cart update request version (%s) must be one unit ahead the current version (%s)",requestVersion, cartVersion));
+        this.requestVersion = requestVersion;
+        this.cartVersion = cartVersion;
+    }
+
+    /**
+     * The request is more than one version ahead the cart: a previous request is still missing.
+     */
+    public boolean isAhead() {
+        return requestVersion != null && cartVersion != null && requestVersion > cartVersion + 1;
     }
 }
@@ -0,0 +1,64 @@
+package com.example.cart.services.cart_service.statistics;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the handled cart update requests in constant memory, whatever the number of users:
+ * the top users by handled requests (with their last observed cart version), estimated totals per user,
+ * and the estimated number of distinct users.
+ */
+@Component
+public class CartUpdateRequestStatistics {
+
+    @Value("${order-processing-system.handlers.cart-update-requests.statistics.top-k:100}")
+    private Integer topK;
+
+    @Value("${order-processing-system.handlers.cart-update-requests.statistics.count-min-depth:4}")
+    private Integer countMinDepth;
+
+    @Value("${order-processing-system.handlers.cart-update-requests.statistics.count-min-width:2048}")
+    private Integer countMinWidth;
+
+    @Value("${order-processing-system.handlers.cart-update-requests.statistics.hll-precision:14}")
+    private Integer hllPrecision;
+
+    private SpaceSaving topUsers;
+    private CountMinSketch requestsHandled;
+    private HyperLogLog distinctUsers;
+    private final LongAdder requestsHandledTotal = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        topUsers = new SpaceSaving(topK);
+        requestsHandled = new CountMinSketch(countMinDepth, countMinWidth);
+        distinctUsers = new HyperLogLog(hllPrecision);
+    }
+
+    public void record(String userId, int requestsApplied, Integer cartVersion) {
+        topUsers.add(userId, requestsApplied, cartVersion);
+        requestsHandled.add(userId, requestsApplied);
+        distinctUsers.add(userId);
+        requestsHandledTotal.add(requestsApplied);
+    }
+
+    public long getRequestsHandledTotal() {
+        return requestsHandledTotal.sum();
+    }
+
+    public long estimateRequestsHandled(String userId) {
+        return requestsHandled.estimate(userId);
+    }
+
+    public long estimateDistinctUsers() {
+        return distinctUsers.estimate();
+    }
+
+    public List<SpaceSaving.Entry> getTopUsers() {
+        return topUsers.top();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.cart.services.cart_service.statistics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Frequency estimates in constant memory (depth x width counters). An estimate is never below the true count,
+ * and overestimates by at most 2/width of the total count with probability 1 - 0.5^depth.
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final AtomicLongArray counters;
+
+    public CountMinSketch(int depth, int width) {
+        if (depth <= 0 || width <= 0) {
+            throw new IllegalArgumentException("The depth and width of a count-min sketch must be positive");
+        }
+        this.depth = depth;
+        this.width = width;
+        this.counters = new AtomicLongArray(depth * width);
+    }
+
+    public void add(String key, long count) {
+        var hash = Hashing.hash64(key);
+        for (var row = 0; row < depth; row++) {
+            counters.addAndGet(index(row, hash), count);
+        }
+    }
+
+    public long estimate(String key) {
+        var hash = Hashing.hash64(key);
+        var estimate = Long.MAX_VALUE;
+        for (var row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, hash)));
+        }
+        return estimate;
+    }
+
+    private int index(int row, long hash) {
+        // Kirsch-Mitzenmacher: the row hashes are derived from the two halves of one 64 bits hash
+        var combined = (int) hash + row * (int) (hash >>> 32);
+        return row * width + ((combined & Integer.MAX_VALUE) % width);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.cart.services.cart_service.statistics;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 64 bits hash shared by the sketches: FNV-1a over the UTF-8 bytes, then the SplitMix64 finalizer
+ * so that the high and low bits are both well mixed.
+ */
+final class Hashing {
+
+    private Hashing() {}
+
+    static long hash64(String value) {
+        var hash = 0xcbf29ce484222325L;
+        for (var b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= (hash >>> 30);
+        hash *= 0xbf58476d1ce4e5b9L;
+        hash ^= (hash >>> 27);
+        hash *= 0x94d049bb133111ebL;
+        hash ^= (hash >>> 31);
+        return hash;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.cart.services.cart_service.statistics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Heavy hitters (top-K) with the Space-Saving algorithm: at most {@code capacity} keys are monitored.
+ * A new key replaces the key with the smallest count and inherits that count as its error, so every key
+ * with a true count above total/capacity is guaranteed to be monitored.
+ *
+ * Finding the smallest count is a linear scan, which is cheap for the small capacities used here.
+ */
+public class SpaceSaving {
+
+    @Data
+    @AllArgsConstructor
+    public static class Entry {
+        private String key;
+        private long count;
+        private long error;
+        private Integer lastValue;
+    }
+
+    private final int capacity;
+    private final Map<String, Entry> entries;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity of a space-saving sketch must be positive");
+        }
+        this.capacity = capacity;
+        this.entries = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * @param lastValue a value attached to the key, kept while the key is monitored (the last observed cart version)
+     */
+    public synchronized void add(String key, long count, Integer lastValue) {
+        var entry = entries.get(key);
+        if (entry != null) {
+            entry.setCount(entry.getCount() + count);
+            entry.setLastValue(lastValue);
+            return;
+        }
+        if (entries.size() < capacity) {
+            entries.put(key, new Entry(key, count, 0, lastValue));
+            return;
+        }
+        var min = entries.values().stream().min(Comparator.comparingLong(Entry::getCount)).orElseThrow();
+        entries.remove(min.getKey());
+        entries.put(key, new Entry(key, min.getCount() + count, min.getCount(), lastValue));
+    }
+
+    /**
+     * @return copies of the monitored entries, by descending count
+     */
+    public synchronized List<Entry> top() {
+        var top = new ArrayList<Entry>(entries.size());
+        entries.values().forEach(e -> top.add(new Entry(e.getKey(), e.getCount(), e.getError(), e.getLastValue())));
+        top.sort(Comparator.comparingLong(Entry::getCount).reversed());
+        return top;
+    }
+}
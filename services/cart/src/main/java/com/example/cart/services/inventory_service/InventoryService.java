@@ -7,4 +7,11 @@ import java.util.List;
 
 public interface InventoryService {
     Flux<ProductAvailability> listProductAvailabilities(List<String> productIds);
+
+    /**
+     * Never completes while connected. The first changes arrive at once.
+     *
+     * @param resumeToken of the last changes received, empty to watch from now
+     */
+    Flux<ProductAvailabilityChanges> watchProductAvailabilities(String resumeToken);
 }
@@ -0,0 +1,11 @@
+package com.example.cart.services.inventory_service;
+
+import com.example.cart.entities.ProductAvailability;
+
+import java.util.List;
+
+/**
+ * @param reset the changes since the resume token are unknown, availabilities kept so far must be dropped
+ * @param products current availability of the products changed since the previous changes
+ */
+public record ProductAvailabilityChanges(String resumeToken, boolean reset, List<ProductAvailability> products) {}
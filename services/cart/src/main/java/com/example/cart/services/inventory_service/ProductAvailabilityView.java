@@ -0,0 +1,159 @@
+package com.example.cart.services.inventory_service;
+
+import com.example.cart.entities.ProductAvailability;
+import com.example.cart.resilience.DependencyGuard;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * Product availabilities shared by all the carts read from this instance, kept for a short time,
+ * so that reading many carts costs one inventory call per product instead of one per cart.
+ *
+ * While the inventory is watched (see {@link ProductAvailabilityWatcher}), the view is a materialized view:
+ * the changes pushed by the inventory keep it current, so its availabilities are live and do not expire.
+ * Availabilities read from the inventory never overwrite live ones, which may be more recent. When the watch
+ * is interrupted or reset, the availabilities kept so far expire as usual.
+ */
+@Component
+public class ProductAvailabilityView {
+
+    /**
+     * @param generation the watch generation the availability is live for, or -1
+     */
+    private record Entry(ProductAvailability availability, long expiresAtMs, long generation) {}
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Resource(name = "inventoryGuard")
+    private DependencyGuard inventoryGuard;
+
+    private final long ttlMs;
+
+    private final Map<String, Entry> products;
+
+    private boolean watching;
+    private long generation;
+
+    public ProductAvailabilityView(
+        @Value("${order-processing-system.services.inventory.availability-view.ttl-ms:5000}") Long ttlMs,
+        @Value("${order-processing-system.services.inventory.availability-view.max-entries:100000}") Integer maxEntries
+    ) {
+        this.ttlMs = ttlMs;
+        this.products = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Availabilities of the given products, by product id. Products unknown to the inventory are left out.
+     */
+    public Mono<Map<String, ProductAvailability>> getProductAvailabilities(Collection<String> productIds) {
+        return Mono.defer(() -> {
+            var found = new HashMap<String, ProductAvailability>();
+            var missed = new LinkedHashSet<String>();
+            var now = System.currentTimeMillis();
+            long readGeneration;
+            synchronized (products) {
+                readGeneration = currentGeneration();
+                for (var productId : productIds) {
+                    var entry = products.get(productId);
+                    if (entry != null && (isLive(entry) || entry.expiresAtMs() > now)) {
+                        found.put(productId, entry.availability());
+                    } else {
+                        missed.add(productId);
+                    }
+                }
+            }
+            if (missed.isEmpty()) {
+                return Mono.just(found);
+            }
+            return inventoryGuard.protect(inventoryService.listProductAvailabilities(missed.stream().toList()).collectList())
+                .map(fetched -> {
+                    put(fetched, readGeneration);
+                    fetched.forEach(availability -> found.put(availability.getProductId(), availability));
+                    return found;
+                });
+        });
+    }
+
+    /**
+     * Keeps availabilities read from the inventory.
+     */
+    public void put(Collection<ProductAvailability> availabilities) {
+        synchronized (products) {
+            put(availabilities, currentGeneration());
+        }
+    }
+
+    /**
+     * The availabilities are only live when the watch generation did not change since the inventory was read:
+     * read before the watch started or was reset, they may predate the changes it missed, so they expire.
+     *
+     * @param readGeneration the watch generation when the inventory was read, or -1
+     */
+    private void put(Collection<ProductAvailability> availabilities, long readGeneration) {
+        var expiresAtMs = System.currentTimeMillis() + ttlMs;
+        synchronized (products) {
+            var entryGeneration = readGeneration == currentGeneration() ? readGeneration : -1;
+            availabilities.forEach(availability -> {
+                var entry = products.get(availability.getProductId());
+                if (entry == null || ! isLive(entry)) {
+                    products.put(availability.getProductId(), new Entry(availability, expiresAtMs, entryGeneration));
+                }
+            });
+        }
+    }
+
+    /**
+     * Applies changes pushed by the inventory watch, the view is then watching.
+     */
+    public void applyChanges(ProductAvailabilityChanges changes) {
+        var expiresAtMs = System.currentTimeMillis() + ttlMs;
+        synchronized (products) {
+            if (! watching || changes.reset()) {
+                generation++;
+                watching = true;
+            }
+            changes.products().forEach(availability ->
+                products.put(availability.getProductId(), new Entry(availability, expiresAtMs, generation))
+            );
+        }
+    }
+
+    /**
+     * The watch is interrupted: availabilities expire again.
+     */
+    public void stopWatching() {
+        synchronized (products) {
+            watching = false;
+            generation++;
+        }
+    }
+
+    public boolean isWatching() {
+        synchronized (products) {
+            return watching;
+        }
+    }
+
+    private long currentGeneration() {
+        return watching ? generation : -1;
+    }
+
+    private boolean isLive(Entry entry) {
+        return watching && entry.generation() == generation;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.cart.services.inventory_service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+
+/**
+ * Keeps the {@link ProductAvailabilityView} current with the changes pushed by the inventory, so that
+ * cart updates read the availabilities from memory instead of calling the inventory.
+ * The watch is resumed from the last changes received after a disconnection.
+ */
+@Component
+@ConditionalOnProperty(name = "order-processing-system.services.inventory.availability-view.watch.enabled", havingValue = "true")
+public class ProductAvailabilityWatcher {
+
+    private final Logger log = LoggerFactory.getLogger(ProductAvailabilityWatcher.class);
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private ProductAvailabilityView productAvailabilityView;
+
+    private volatile String resumeToken = "";
+
+    private Disposable subscription;
+
+    @PostConstruct
+    public void start() {
+        subscription = Flux
+            .defer(() -> inventoryService.watchProductAvailabilities(resumeToken))
+            .doOnNext(changes -> {
+                productAvailabilityView.applyChanges(changes);
+                resumeToken = changes.resumeToken();
+            })
+            .doOnError(ex -> {
+                log.warn("Product availabilities watch interrupted: {}", ex.getMessage());
+                productAvailabilityView.stopWatching();
+            })
+            .doOnComplete(productAvailabilityView::stopWatching)
+            .repeatWhen(completed -> completed.delayElements(Duration.ofSeconds(1)))
+            .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(500)).maxBackoff(Duration.ofSeconds(10)).transientErrors(true))
+            .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+        productAvailabilityView.stopWatching();
+    }
+}
@@ -1,54 +1,158 @@
 package com.example.cart.services.inventory_service.drivers;
 
+import com.example.cart.services.inventory_service.ProductAvailabilityChanges;
 import com.example.cart.services.inventory_service.dto.ProductAvailabilityDTO;
+import com.example.grpc.inventory.stubs.GetProductAvailabilitiesRequest;
+import com.example.grpc.inventory.stubs.GetProductAvailabilitiesResult;
 import com.example.grpc.inventory.stubs.InventoryServiceGrpc;
 import com.example.grpc.inventory.stubs.ListProductAvailabilitiesRequest;
-import com.example.grpc.inventory.stubs.ProductAvailability;
-import io.grpc.stub.StreamObserver;
+import com.example.grpc.inventory.stubs.WatchProductAvailabilitiesRequest;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
 import io.micrometer.observation.annotation.Observed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 @Service
 public class InventoryService implements com.example.cart.services.inventory_service.InventoryService {
 
+    private final Logger log = LoggerFactory.getLogger(InventoryService.class);
+
     @Autowired
     private InventoryServiceGrpc.InventoryServiceStub inventoryGRPC;
 
+    /**
+     * Up to this many products, they are read in one message (GetProductAvailabilities), beyond as a stream.
+     */
+    @Value("${order-processing-system.services.inventory.unary-max-product-ids:100}")
+    private Integer unaryMaxProductIds;
+
+    /**
+     * Cleared when the inventory answers UNIMPLEMENTED to GetProductAvailabilities (an inventory deployed
+     * before the call existed), all the products are then read as a stream.
+     */
+    private volatile boolean unarySupported = true;
+
     @Override
     @Observed(name = "list_product_availabilities", lowCardinalityKeyValues = {
         "rpc.system", "grpc",
         "rpc.service", "inventory"
     })
     public Flux<com.example.cart.entities.ProductAvailability> listProductAvailabilities(List<String> productIds) {
+        if (! unarySupported || productIds.size() > unaryMaxProductIds) {
+            return streamProductAvailabilities(productIds);
+        }
+        return getProductAvailabilities(productIds)
+            .onErrorResume(
+                ex -> Status.fromThrowable(ex).getCode() == Status.Code.UNIMPLEMENTED,
+                ex -> {
+                    if (unarySupported) {
+                        unarySupported = false;
+                        log.warn("GetProductAvailabilities not implemented by the inventory, product availabilities are read as a stream");
+                    }
+                    return streamProductAvailabilities(productIds);
+                }
+            );
+    }
 
-        Sinks.Many<com.example.cart.entities.ProductAvailability> sink = Sinks.many().unicast().onBackpressureBuffer();
+    @Override
+    public Flux<ProductAvailabilityChanges> watchProductAvailabilities(String resumeToken) {
+        var request = WatchProductAvailabilitiesRequest.newBuilder()
+            .setResumeToken(resumeToken)
+            .build();
 
+        return this.<WatchProductAvailabilitiesRequest, com.example.grpc.inventory.stubs.ProductAvailabilityChanges>flowControlled(
+                observer -> inventoryGRPC.watchProductAvailabilities(request, observer)
+            )
+            .map(ProductAvailabilityDTO::map);
+    }
+
+    private Flux<com.example.cart.entities.ProductAvailability> streamProductAvailabilities(List<String> productIds) {
         var request = ListProductAvailabilitiesRequest.newBuilder()
             .addAllProductIds(productIds)
             .build();
 
-        inventoryGRPC.listProductAvailabilities(request, new StreamObserver<>() {
-            @Override
-            public void onNext(ProductAvailability data) {
-                sink.tryEmitNext(ProductAvailabilityDTO.map(data));
-            }
-
-            @Override
-            public void onError(Throwable t) {
-                sink.tryEmitError(t);
-            }
-
-            @Override
-            public void onCompleted() {
-                sink.tryEmitComplete();
-            }
-        });
+        return this.<ListProductAvailabilitiesRequest, com.example.grpc.inventory.stubs.ProductAvailability>flowControlled(
+                observer -> inventoryGRPC.listProductAvailabilities(request, observer)
+            )
+            .map(ProductAvailabilityDTO::map);
+    }
+
+    private Flux<com.example.cart.entities.ProductAvailability> getProductAvailabilities(List<String> productIds) {
+        var request = GetProductAvailabilitiesRequest.newBuilder()
+            .addAllProductIds(productIds)
+            .build();
+
+        return Mono
+            .<GetProductAvailabilitiesResult>create(sink ->
+                inventoryGRPC.getProductAvailabilities(request, new ClientResponseObserver<GetProductAvailabilitiesRequest, GetProductAvailabilitiesResult>() {
+                    @Override
+                    public void beforeStart(ClientCallStreamObserver<GetProductAvailabilitiesRequest> requestStream) {
+                        sink.onCancel(() -> requestStream.cancel("Call cancelled", null));
+                    }
 
-        return sink.asFlux();
+                    @Override
+                    public void onNext(GetProductAvailabilitiesResult result) {
+                        sink.success(result);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        sink.error(t);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        sink.success();
+                    }
+                })
+            )
+            .flatMapIterable(GetProductAvailabilitiesResult::getProductsList)
+            .map(ProductAvailabilityDTO::map);
+    }
+
+    /**
+     * A server-streaming call whose messages are requested from the server as the subscriber requests them,
+     * so that nothing is buffered when the subscriber is slower, and which is cancelled with the subscription.
+     */
+    private <Q, R> Flux<R> flowControlled(Consumer<ClientResponseObserver<Q, R>> call) {
+        return Flux.create(sink -> {
+            var requestStream = new AtomicReference<ClientCallStreamObserver<Q>>();
+            call.accept(new ClientResponseObserver<>() {
+                @Override
+                public void beforeStart(ClientCallStreamObserver<Q> stream) {
+                    stream.disableAutoRequestWithInitial(0);
+                    requestStream.set(stream);
+                    sink.onDispose(() -> stream.cancel("Call disposed", null));
+                }
+
+                @Override
+                public void onNext(R data) {
+                    sink.next(data);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    sink.error(t);
+                }
+
+                @Override
+                public void onCompleted() {
+                    sink.complete();
+                }
+            });
+            // messages can only be requested once the call is started, not from beforeStart
+            sink.onRequest(n -> requestStream.get().request((int) Math.min(n, Integer.MAX_VALUE)));
+        });
     }
 }
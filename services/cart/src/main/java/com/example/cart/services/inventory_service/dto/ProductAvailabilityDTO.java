@@ -1,6 +1,7 @@
 package com.example.cart.services.inventory_service.dto;
 
 import com.example.cart.entities.ProductAvailability;
+import com.example.cart.services.inventory_service.ProductAvailabilityChanges;
 
 public class ProductAvailabilityDTO {
     public static ProductAvailability map(com.example.grpc.inventory.stubs.ProductAvailability data) {
@@ -12,4 +13,12 @@ public class ProductAvailabilityDTO {
             data.getIsAvailable()
         );
     }
+
+    public static ProductAvailabilityChanges map(com.example.grpc.inventory.stubs.ProductAvailabilityChanges data) {
+        return new ProductAvailabilityChanges(
+            data.getResumeToken(),
+            data.getReset(),
+            data.getProductsList().stream().map(ProductAvailabilityDTO::map).toList()
+        );
+    }
 }
@@ -0,0 +1,93 @@
+package com.example.cart.grpc;
+
+import com.example.cart.TestBase;
+import com.example.cart.entities.Cart;
+import com.example.cart.repositories.cart_repo.CartRepository;
+import com.example.grpc.cart.stubs.GetCartsByUserIdsRequest;
+import com.example.grpc.cart.stubs.GetCartsByUserIdsResult;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestPropertySource(properties = {
+    "order-processing-system.repositories.carts.batch-read.max-user-ids=5",
+    "order-processing-system.repositories.carts.batch-read.max-reply-bytes=400"
+})
+public class CartGrpcServiceTests extends TestBase {
+
+    @Autowired
+    private CartGrpcService cartGrpcService;
+
+    @Autowired
+    private CartRepository cartRepo;
+
+    private Cart saveCart(int items) {
+        var cart = new Cart(UUID.randomUUID().toString());
+        cart.setVersionNumber(1);
+        for (var i = 0; i < items; i++) {
+            var productId = String.format("PRODUCT_%03d", i);
+            cart.getItems().put(productId, new Cart.CartItem(productId, "Product " + i, 1));
+        }
+        return cartRepo.saveCart(cart).block();
+    }
+
+    private List<GetCartsByUserIdsResult> getCarts(List<String> userIds) throws Exception {
+        var results = new CopyOnWriteArrayList<GetCartsByUserIdsResult>();
+        var completed = new CompletableFuture<Void>();
+        cartGrpcService.getCartsByUserIds(GetCartsByUserIdsRequest.newBuilder().addAllUserIds(userIds).build(), new StreamObserver<>() {
+            @Override
+            public void onNext(GetCartsByUserIdsResult result) { results.add(result); }
+
+            @Override
+            public void onError(Throwable t) { completed.completeExceptionally(t); }
+
+            @Override
+            public void onCompleted() { completed.complete(null); }
+        });
+        completed.get(5, TimeUnit.SECONDS);
+        return results;
+    }
+
+    @Test
+    void whenCartsExceedReplyBytes_thenStreamSeveralResultsInOrder() throws Exception {
+        var userIds = IntStream.range(0, 4).mapToObj(i -> saveCart(3).getUserId()).toList();
+
+        var results = getCarts(userIds);
+
+        assertTrue(results.size() > 1);
+        results.forEach(result -> assertTrue(result.getCartsCount() == 1 || result.getSerializedSize() <= 400));
+        assertEquals(userIds, results.stream().flatMap(result -> result.getCartsList().stream()).map(cart -> cart.getUserId()).toList());
+    }
+
+    @Test
+    void whenCartLargerThanReplyBytes_thenSentAlone() throws Exception {
+        var first = saveCart(1).getUserId();
+        var large = saveCart(20).getUserId();
+        var last = saveCart(1).getUserId();
+
+        var results = getCarts(List.of(first, large, last));
+
+        assertEquals(3, results.size());
+        assertEquals(large, results.get(1).getCarts(0).getUserId());
+    }
+
+    @Test
+    void whenTooManyUserIds_thenInvalidArgument() {
+        var userIds = IntStream.range(0, 6).mapToObj(i -> UUID.randomUUID().toString()).toList();
+
+        var ex = assertThrows(Exception.class, () -> getCarts(userIds));
+
+        assertEquals(Status.Code.INVALID_ARGUMENT, Status.fromThrowable(ex.getCause()).getCode());
+    }
+}
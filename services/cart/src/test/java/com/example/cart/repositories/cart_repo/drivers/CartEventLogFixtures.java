@@ -0,0 +1,44 @@
+package com.example.cart.repositories.cart_repo.drivers;
+
+import com.example.cart.entities.Cart;
+import com.example.cart.entities.ProductAvailability;
+import com.example.cart.services.cart_service.CartBuilder;
+import com.example.cart.services.cart_service.entities.CartUpdateRequest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Appends requests to the cart log as the handler does, for the tests of the event-log storage driver.
+ */
+public final class CartEventLogFixtures {
+
+    private CartEventLogFixtures() {
+    }
+
+    public static CartUpdateRequest request(String userId, int version, String productId, int qty, CartUpdateRequest.CartAction action) {
+        var request = new CartUpdateRequest();
+        request.setUserId(userId);
+        request.setVersionNumber(version);
+        request.setEntries(List.of(new CartUpdateRequest.CartUpdateRequestEntry(productId, productId, qty, action)));
+        return request;
+    }
+
+    /**
+     * Applies the request on the stored cart and saves it if the cart did not change, with an availability
+     * of the product (10 in stock) that may differ from the one of the inventory (see TestConfigs).
+     */
+    public static Cart applyAndSave(CartEventLogRepository cartRepo, String userId, CartUpdateRequest request) {
+        var cart = cartRepo.getCartByUserId(userId).defaultIfEmpty(new Cart(userId)).block();
+        assertNotNull(cart);
+        var expectedVersion = cart.getVersionNumber();
+        var built = new CartBuilder()
+            .setCart(cart)
+            .setCartUpdateRequest(request)
+            .setProductAvailabilities(List.of(new ProductAvailability(request.getEntries().getFirst().getProductId(), "", 1.0, 10, true)))
+            .build()
+            .getCart();
+        return cartRepo.saveCartIfVersion(built, expectedVersion).block();
+    }
+}
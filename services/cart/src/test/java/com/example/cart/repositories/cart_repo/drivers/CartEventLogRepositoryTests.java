@@ -0,0 +1,64 @@
+package com.example.cart.repositories.cart_repo.drivers;
+
+import com.example.cart.TestBase;
+import com.example.cart.repositories.cart_repo.exceptions.CartVersionConflict;
+import com.example.cart.services.cart_service.entities.CartUpdateRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+import java.util.UUID;
+
+import static com.example.cart.repositories.cart_repo.drivers.CartEventLogFixtures.applyAndSave;
+import static com.example.cart.repositories.cart_repo.drivers.CartEventLogFixtures.request;
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestPropertySource(properties = {
+    "order-processing-system.repositories.carts.storage-driver=event-log",
+    "order-processing-system.repositories.carts.event-log.snapshot-every=3",
+    "order-processing-system.repositories.carts.event-log.max-length=100"
+})
+public class CartEventLogRepositoryTests extends TestBase {
+
+    @Autowired
+    private CartEventLogRepository cartRepo;
+
+    @Test
+    void whenRequestsAppended_thenMaterializeSnapshotAndTail() {
+        var userId = UUID.randomUUID().toString();
+        applyAndSave(cartRepo, userId, request(userId, 1, "P001", 1, CartUpdateRequest.CartAction.QTY_CHANGE));
+        applyAndSave(cartRepo, userId, request(userId, 2, "P002", 2, CartUpdateRequest.CartAction.QTY_CHANGE));
+        applyAndSave(cartRepo, userId, request(userId, 3, "P003", 3, CartUpdateRequest.CartAction.QTY_CHANGE));
+        applyAndSave(cartRepo, userId, request(userId, 4, "P001", 0, CartUpdateRequest.CartAction.DROP_ITEM));
+        applyAndSave(cartRepo, userId, request(userId, 5, "P002", 7, CartUpdateRequest.CartAction.QTY_CHANGE));
+
+        var cart = cartRepo.getCartByUserId(userId).block();
+
+        assertNotNull(cart);
+        assertEquals(5, cart.getVersionNumber());
+        assertFalse(cart.getItems().containsKey("P001"));
+        assertEquals(7, cart.getItems().get("P002").getQuantity());
+        assertEquals(3, cart.getItems().get("P003").getQuantity());
+    }
+
+    @Test
+    void whenRequestsAppended_thenListThemFromTheLog() {
+        var userId = UUID.randomUUID().toString();
+        applyAndSave(cartRepo, userId, request(userId, 1, "P001", 1, CartUpdateRequest.CartAction.QTY_CHANGE));
+        applyAndSave(cartRepo, userId, request(userId, 2, "P001", 4, CartUpdateRequest.CartAction.QTY_CHANGE));
+
+        var requests = cartRepo.listLoggedRequests(userId).collectList().block();
+
+        assertNotNull(requests);
+        assertEquals(List.of(1, 2), requests.stream().map(CartUpdateRequest::getVersionNumber).toList());
+    }
+
+    @Test
+    void saveCartIfVersion_whenVersionMismatch_thenThrowException() {
+        var userId = UUID.randomUUID().toString();
+        var cart = applyAndSave(cartRepo, userId, request(userId, 1, "P001", 1, CartUpdateRequest.CartAction.QTY_CHANGE));
+
+        assertThrows(CartVersionConflict.class, () -> cartRepo.saveCartIfVersion(cart, 0).block());
+    }
+}
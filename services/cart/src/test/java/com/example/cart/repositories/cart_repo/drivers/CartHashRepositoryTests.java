@@ -0,0 +1,88 @@
+package com.example.cart.repositories.cart_repo.drivers;
+
+import com.example.cart.TestBase;
+import com.example.cart.entities.Cart;
+import com.example.cart.entities.ProductAvailability;
+import com.example.cart.entities.properties.CartValidation;
+import com.example.cart.repositories.cart_repo.exceptions.CartVersionConflict;
+import com.example.cart.repositories.cart_repo.exceptions.CartWriteFenced;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestPropertySource(properties = "order-processing-system.repositories.carts.storage-driver=hash")
+public class CartHashRepositoryTests extends TestBase {
+
+    @Autowired
+    private Map<String, ProductAvailability> productAvailabilities;
+
+    @Autowired
+    private CartHashRepository cartRepo;
+
+    private Cart buildCart() {
+        var cart = new Cart(UUID.randomUUID().toString());
+        cart.setVersionNumber(1);
+        cart.setProductAvailabilities(new HashMap<>(productAvailabilities));
+        cart.getItems().put("PRODUCT_001", new Cart.CartItem("PRODUCT_001", "", 1));
+        cart.getItems().put("PRODUCT_002", new Cart.CartItem("PRODUCT_002", "", 2));
+        cart.getValidations().put("PRODUCT_001", CartValidation.productUnavailable(cart.getItems().get("PRODUCT_001")));
+        return cart;
+    }
+
+    @Test
+    void afterSavedCart_canGetByUserId() {
+        var cart = buildCart();
+        var savedCart = cartRepo.saveCart(cart).then(cartRepo.getCartByUserId(cart.getUserId())).block();
+        assertEquals(cart, savedCart);
+    }
+
+    @Test
+    void whenProductsTouched_thenOnlyWriteTheirFields() {
+        var cart = buildCart();
+        var stored = cartRepo.saveCart(cart).then(cartRepo.getCartByUserId(cart.getUserId())).block();
+        assertNotNull(stored);
+
+        // another writer changes PRODUCT_002, which this update does not touch
+        var concurrent = cartRepo.getCartByUserId(cart.getUserId()).block();
+        assertNotNull(concurrent);
+        concurrent.getItems().get("PRODUCT_002").setQuantity(5);
+        concurrent.touchProduct("PRODUCT_002");
+        cartRepo.saveCart(concurrent).block();
+
+        stored.setVersionNumber(2);
+        stored.getItems().remove("PRODUCT_001");
+        stored.getValidations().remove("PRODUCT_001");
+        stored.touchProduct("PRODUCT_001");
+        var updated = cartRepo.saveCartIfVersion(stored, 1).then(cartRepo.getCartByUserId(cart.getUserId())).block();
+
+        assertNotNull(updated);
+        assertEquals(2, updated.getVersionNumber());
+        assertFalse(updated.getItems().containsKey("PRODUCT_001"));
+        assertFalse(updated.getValidations().containsKey("PRODUCT_001"));
+        assertEquals(5, updated.getItems().get("PRODUCT_002").getQuantity());
+    }
+
+    @Test
+    void saveCartIfVersion_whenVersionMismatch_thenThrowException() {
+        var cart = buildCart();
+        var saveStale = cartRepo.saveCart(cart).then(cartRepo.saveCartIfVersion(cart, 0));
+
+        assertThrows(CartVersionConflict.class, saveStale::block);
+    }
+
+    @Test
+    void saveCartIfVersion_whenFencingTokenIsOlder_thenThrowException() {
+        var cart = buildCart();
+        var saveWithOlderToken = cartRepo
+            .saveCartIfVersion(cart, 0, 5L)
+            .then(cartRepo.saveCartIfVersion(cart, 1, 4L));
+
+        assertThrows(CartWriteFenced.class, saveWithOlderToken::block);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.cart.repositories.cart_repo.drivers;
+
+import com.example.cart.entities.Cart;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CartNearCacheTests {
+
+    private final String topic = "cart-update-requests";
+
+    private CartNearCache buildCache() {
+        var cache = new CartNearCache(10);
+        ReflectionTestUtils.setField(cache, "topic", topic);
+        return cache;
+    }
+
+    private Consumer<?, ?> consumerWithSinglePartition() {
+        Consumer<?, ?> consumer = mock(Consumer.class);
+        when(consumer.partitionsFor(topic)).thenReturn(List.of(new PartitionInfo(topic, 0, null, null, null)));
+        return consumer;
+    }
+
+    @Test
+    void whenPartitionNotOwned_thenDoNotCache() {
+        var cache = buildCache();
+        cache.put(new Cart("USR_01"));
+
+        assertNull(cache.get("USR_01"));
+    }
+
+    @Test
+    void whenPartitionOwned_thenServeCopyOfCart() {
+        var cache = buildCache();
+        cache.onPartitionsAssigned(consumerWithSinglePartition(), List.of(new TopicPartition(topic, 0)));
+
+        var cart = new Cart("USR_01");
+        cart.getItems().put("PRODUCT_001", new Cart.CartItem("PRODUCT_001", "", 1));
+        cache.put(cart);
+        cart.getItems().get("PRODUCT_001").setQuantity(5);
+
+        var cached = cache.get("USR_01");
+        assertNotNull(cached);
+        assertEquals(1, cached.getItems().get("PRODUCT_001").getQuantity());
+    }
+
+    @Test
+    void whenPartitionRevoked_thenDropCachedCarts() {
+        var cache = buildCache();
+        var consumer = consumerWithSinglePartition();
+        cache.onPartitionsAssigned(consumer, List.of(new TopicPartition(topic, 0)));
+        cache.put(new Cart("USR_01"));
+
+        cache.onPartitionsRevokedBeforeCommit(consumer, List.of(new TopicPartition(topic, 0)));
+
+        assertNull(cache.get("USR_01"));
+        assertFalse(cache.isOwned("USR_01"));
+    }
+
+    @Test
+    void whenReadCompletesAfterSave_thenKeepSavedVersion() {
+        var cache = buildCache();
+        cache.onPartitionsAssigned(consumerWithSinglePartition(), List.of(new TopicPartition(topic, 0)));
+        var read = new Cart("USR_01");
+        read.setVersionNumber(4);
+        var saved = new Cart("USR_01");
+        saved.setVersionNumber(5);
+
+        // the read of version 4 started before the save of version 5, and completes after it
+        cache.put(saved);
+        cache.fill(read);
+
+        assertEquals(5, cache.get("USR_01").getVersionNumber());
+    }
+
+    @Test
+    void whenNotCached_thenFillWithRead() {
+        var cache = buildCache();
+        cache.onPartitionsAssigned(consumerWithSinglePartition(), List.of(new TopicPartition(topic, 0)));
+        var read = new Cart("USR_01");
+        read.setVersionNumber(4);
+
+        cache.fill(read);
+
+        assertEquals(4, cache.get("USR_01").getVersionNumber());
+    }
+}
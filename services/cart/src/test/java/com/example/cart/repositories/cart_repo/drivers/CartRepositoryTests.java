@@ -5,13 +5,24 @@ import com.example.cart.entities.Cart;
 import com.example.cart.entities.ProductAvailability;
 import com.example.cart.entities.properties.CartValidation;
 import com.example.cart.repositories.cart_repo.CartRepository;
+import com.example.cart.repositories.cart_repo.exceptions.CartVersionConflict;
+import com.example.cart.repositories.cart_repo.exceptions.CartWriteFenced;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class CartRepositoryTests extends TestBase {
 
@@ -21,6 +32,12 @@ public class CartRepositoryTests extends TestBase {
     @Autowired
     private CartRepository cartRepo;
 
+    @Autowired
+    private ReactiveRedisTemplate<String, Cart> redisTemplate;
+
+    @Autowired
+    private ReactiveRedisConnectionFactory connectionFactory;
+
     private Cart buildCart() {
         var cart = new Cart(UUID.randomUUID().toString());
         cart.setVersionNumber(1);
@@ -42,4 +59,101 @@ public class CartRepositoryTests extends TestBase {
         var savedCart = cartRepo.saveCart(cart).then(cartRepo.getCartByUserId(cart.getUserId())).block();
         assertEquals(cart, savedCart);
     }
+
+    @Test
+    void whenDefaultStorageFormat_thenReadableByPreviousInstances() {
+        var cart = buildCart();
+        cartRepo.saveCart(cart).block();
+
+        // the instances before the binary format read the carts with Jackson only
+        var previousTemplate = new ReactiveRedisTemplate<>(connectionFactory, RedisSerializationContext
+            .<String, Cart>newSerializationContext(new StringRedisSerializer())
+            .value(new Jackson2JsonRedisSerializer<>(Cart.class))
+            .build()
+        );
+
+        assertEquals(cart, previousTemplate.opsForValue().get("order-processing-system:carts:" + cart.getUserId()).block());
+    }
+
+    @Test
+    void getCartsByUserIds_thenReturnSavedCartsInRequestedOrder() {
+        var first = buildCart();
+        var second = buildCart();
+        var missing = UUID.randomUUID().toString();
+
+        var carts = cartRepo.saveCart(first)
+            .then(cartRepo.saveCart(second))
+            .thenMany(cartRepo.getCartsByUserIds(List.of(second.getUserId(), missing, first.getUserId(), second.getUserId())))
+            .collectList()
+            .block();
+
+        assertEquals(List.of(second, first), carts);
+    }
+
+    @Test
+    void saveCartIfVersion_whenVersionMatches_thenSave() {
+        var cart = buildCart();
+        var saved = cartRepo
+            .saveCart(cart)
+            .then(Mono.fromCallable(() -> { cart.setVersionNumber(2); return cart; }))
+            .flatMap(updated -> cartRepo.saveCartIfVersion(updated, 1))
+            .then(cartRepo.getCartByUserId(cart.getUserId()))
+            .block();
+
+        assertNotNull(saved);
+        assertEquals(2, saved.getVersionNumber());
+    }
+
+    @Test
+    void saveCartIfVersion_whenCartNotExist_thenExpectVersionZero() {
+        var cart = buildCart();
+        assertEquals(cart, cartRepo.saveCartIfVersion(cart, 0).block());
+    }
+
+    @Test
+    void saveCartIfVersion_whenVersionMismatch_thenThrowException() {
+        var cart = buildCart();
+        var saveStale = cartRepo.saveCart(cart).then(cartRepo.saveCartIfVersion(cart, 0));
+
+        assertThrows(CartVersionConflict.class, saveStale::block);
+    }
+
+    @Test
+    void saveCartIfVersion_whenFencingTokenIsOlder_thenThrowException() {
+        var cart = buildCart();
+        var saveWithOlderToken = cartRepo
+            .saveCartIfVersion(cart, 0, 5L)
+            .then(cartRepo.saveCartIfVersion(cart, 1, 4L));
+
+        assertThrows(CartWriteFenced.class, saveWithOlderToken::block);
+    }
+
+    @Test
+    void saveCart_whenIdleTtlConfigured_thenCartExpires() {
+        var cart = buildCart();
+        var ttl = cartRepo.saveCart(cart).then(redisTemplate.getExpire("order-processing-system:carts:" + cart.getUserId())).block();
+
+        assertNotNull(ttl);
+        assertTrue(ttl.compareTo(Duration.ZERO) > 0);
+    }
+
+    @Test
+    void saveCart_whenCartAbandoned_thenArchivePreviousCart() {
+        var cart = buildCart();
+        cart.setProductAvailabilities(new HashMap<>(cart.getProductAvailabilities()));
+        cart.setValidations(new HashMap<>(cart.getValidations()));
+        cartRepo.saveCart(cart).block();
+
+        var previous = new Cart(cart.getUserId(), cart.getVersionNumber(), new HashMap<>(cart.getItems()), cart.getProductAvailabilities(), cart.getValidations());
+        cart.abandon();
+        cart.setVersionNumber(2);
+        var saved = cartRepo.saveCart(cart).then(cartRepo.getCartByUserId(cart.getUserId())).block();
+        var archived = redisTemplate.opsForValue().get("order-processing-system:carts:" + cart.getUserId() + ":archive").block();
+
+        assertNotNull(saved);
+        assertEquals(2, saved.getVersionNumber());
+        assertTrue(saved.getItems().isEmpty());
+        assertNotNull(archived);
+        assertEquals(previous.getItems(), archived.getItems());
+    }
 }
@@ -0,0 +1,79 @@
+package com.example.cart.repositories.cart_repo.serializers;
+
+import com.example.cart.entities.Cart;
+import com.example.cart.entities.ProductAvailability;
+import com.example.cart.entities.properties.CartValidation;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write and read time of one cart against its stored size, with and without LZ4, from a consumer
+ * cart (5 items) to a B2B one (500 items), in both storage formats.
+ * Every item has its product availability, and one item out of ten a validation.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.example.cart.repositories.cart_repo.serializers.CartRedisSerializerBenchmark
+ * The measured times and stored sizes are in docs/tasks/cart_serializer_storage_format.md.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartRedisSerializerBenchmark {
+
+    @Param({"5", "20", "50", "100", "500"})
+    public int items;
+
+    @Param({CartRedisSerializer.PROTO_FORMAT, CartRedisSerializer.JSON_FORMAT})
+    public String format;
+
+    /**
+     * 0 never compresses, 1 always does.
+     */
+    @Param({"0", "1"})
+    public int compressThreshold;
+
+    private CartRedisSerializer serializer;
+    private Cart cart;
+    private byte[] stored;
+
+    @Setup
+    public void setUp() {
+        serializer = new CartRedisSerializer(format, compressThreshold);
+        cart = new Cart("USR-000042");
+        cart.setVersionNumber(1042);
+        for (var i = 0; i < items; i++) {
+            var productId = String.format("PRODUCT_%06d", i);
+            var productName = "Industrial supply item " + i + " - box of " + (i % 12 + 1);
+            cart.getItems().put(productId, new Cart.CartItem(productId, productName, i % 20 + 1));
+            cart.getProductAvailabilities().put(productId, new ProductAvailability(productId, productName, 4.99 + i * 0.37, 1000 - i, true));
+            if (i % 10 == 0) {
+                cart.getValidations().put(productId, CartValidation.insufficientStock(cart, cart.getItems().get(productId)));
+            }
+        }
+        stored = serializer.serialize(cart);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(cart);
+    }
+
+    @Benchmark
+    public Cart deserialize() {
+        return serializer.deserialize(stored);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(CartRedisSerializerBenchmark.class.getSimpleName())
+            .build()
+        ).run();
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.cart.repositories.cart_repo.serializers;
+
+import com.example.cart.entities.Cart;
+import com.example.cart.entities.ProductAvailability;
+import com.example.cart.entities.properties.CartValidation;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CartRedisSerializerTests {
+
+    private Cart cart() {
+        return cart(5);
+    }
+
+    private Cart cart(int itemsCount) {
+        var cart = new Cart("USR-001");
+        cart.setVersionNumber(7);
+        for (var i = 1; i <= itemsCount; i++) {
+            var productId = "P00" + i;
+            cart.getItems().put(productId, new Cart.CartItem(productId, "Product " + i, i));
+            cart.getProductAvailabilities().put(productId, new ProductAvailability(productId, "Product " + i, 9.99 * i, 100, true));
+        }
+        cart.getValidations().put("P001", new CartValidation("P001", "The item Product 1 has run out of stock", CartValidation.CartValidationType.OUT_OF_STOCK));
+        return cart;
+    }
+
+    @Test
+    void whenSerializedAsProto_thenReadBackTheSameCart() {
+        var serializer = new CartRedisSerializer(CartRedisSerializer.PROTO_FORMAT);
+        var bytes = serializer.serialize(cart());
+
+        assertEquals(CartRedisSerializer.MARKER, bytes[0]);
+        assertEquals(CartRedisSerializer.PROTO_V1, bytes[1]);
+        assertEquals(cart(), serializer.deserialize(bytes));
+    }
+
+    @Test
+    void whenLegacyJsonStored_thenReadTransparently() {
+        var legacy = new Jackson2JsonRedisSerializer<>(Cart.class).serialize(cart());
+        var serializer = new CartRedisSerializer(CartRedisSerializer.PROTO_FORMAT);
+
+        assertEquals(cart(), serializer.deserialize(legacy));
+        assertTrue(serializer.serialize(cart()).length < legacy.length / 2);
+    }
+
+    @Test
+    void whenFormatVersionUnknown_thenThrow() {
+        var serializer = new CartRedisSerializer(CartRedisSerializer.PROTO_FORMAT);
+
+        assertThrows(SerializationException.class, () -> serializer.deserialize(new byte[] { 0x00, 0x7f }));
+    }
+
+    @Test
+    void whenAboveCompressThreshold_thenCompressAndReadBack() {
+        var serializer = new CartRedisSerializer(CartRedisSerializer.PROTO_FORMAT, 1024);
+        var uncompressed = new CartRedisSerializer(CartRedisSerializer.PROTO_FORMAT).serialize(cart(200));
+        var bytes = serializer.serialize(cart(200));
+
+        assertEquals(CartRedisSerializer.MARKER, bytes[0]);
+        assertEquals(CartRedisSerializer.PROTO_V1_LZ4, bytes[1]);
+        assertTrue(bytes.length < uncompressed.length);
+        assertEquals(cart(200), serializer.deserialize(bytes));
+    }
+
+    @Test
+    void whenBelowCompressThreshold_thenDoNotCompress() {
+        var serializer = new CartRedisSerializer(CartRedisSerializer.PROTO_FORMAT, 1024 * 1024);
+
+        assertEquals(CartRedisSerializer.PROTO_V1, serializer.serialize(cart(200))[1]);
+    }
+
+    @Test
+    void whenJsonAboveCompressThreshold_thenCompressAndReadBack() {
+        var serializer = new CartRedisSerializer(CartRedisSerializer.JSON_FORMAT, 1024);
+        var bytes = serializer.serialize(cart(200));
+
+        assertEquals(CartRedisSerializer.MARKER, bytes[0]);
+        assertEquals(CartRedisSerializer.JSON_LZ4, bytes[1]);
+        assertEquals(cart(200), serializer.deserialize(bytes));
+    }
+
+    @Test
+    void whenCompressionDisabled_thenStillReadCompressedCarts() {
+        var compressed = new CartRedisSerializer(CartRedisSerializer.PROTO_FORMAT, 1024).serialize(cart(200));
+        var serializer = new CartRedisSerializer(CartRedisSerializer.PROTO_FORMAT);
+
+        assertEquals(cart(200), serializer.deserialize(compressed));
+    }
+
+    @Test
+    void whenCompressedCartTruncated_thenThrow() {
+        var compressed = new CartRedisSerializer(CartRedisSerializer.PROTO_FORMAT, 1024).serialize(cart(200));
+        var truncated = Arrays.copyOf(compressed, compressed.length / 2);
+        var serializer = new CartRedisSerializer(CartRedisSerializer.PROTO_FORMAT);
+
+        assertThrows(SerializationException.class, () -> serializer.deserialize(truncated));
+    }
+
+    @Test
+    void whenSlim_thenKeepOnlyItemsVersionAndValidationTypes() {
+        var serializer = new CartRedisSerializer(CartRedisSerializer.PROTO_FORMAT, 0, true);
+        var full = new CartRedisSerializer(CartRedisSerializer.PROTO_FORMAT).serialize(cart());
+        var bytes = serializer.serialize(cart());
+        var read = serializer.deserialize(bytes);
+
+        assertTrue(bytes.length < full.length);
+        assertEquals(cart().getItems(), read.getItems());
+        assertEquals(7, read.getVersionNumber());
+        assertTrue(read.getProductAvailabilities().isEmpty());
+        assertEquals(CartValidation.CartValidationType.OUT_OF_STOCK, read.getValidations().get("P001").getType());
+        assertEquals("", read.getValidations().get("P001").getMessage());
+    }
+}
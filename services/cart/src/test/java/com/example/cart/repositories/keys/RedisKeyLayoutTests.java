@@ -0,0 +1,133 @@
+package com.example.cart.repositories.keys;
+
+import com.example.cart.TestBase;
+import com.example.cart.entities.Cart;
+import com.example.cart.repositories.cart_repo.CartRepository;
+import com.example.cart.repositories.keys.exceptions.LegacyKeyConflict;
+import com.example.cart.repositories.lock_repo.LockRepository;
+import com.example.cart.repositories.lock_repo.exceptions.LockUnavailable;
+import com.example.cart.services.cart_service.CartUpdateRequestHandler;
+import com.example.cart.services.cart_service.PartitionOwnershipFencing;
+import com.example.cart.services.cart_service.entities.CartUpdateRequest;
+import io.lettuce.core.cluster.SlotHash;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestPropertySource(properties = {
+    "order-processing-system.repositories.key-layout=hash-tagged",
+    "order-processing-system.repositories.migrate-legacy-keys=true"
+})
+public class RedisKeyLayoutTests extends TestBase {
+
+    @Autowired
+    private RedisKeyLayout keyLayout;
+
+    @Autowired
+    private RedisKeyMigrator keyMigrator;
+
+    @Autowired
+    private CartRepository cartRepo;
+
+    @Autowired
+    private CartUpdateRequestHandler handler;
+
+    @Autowired
+    private LockRepository lockRepo;
+
+    @Autowired
+    private ReactiveRedisTemplate<String, Cart> redisTemplate;
+
+    @Autowired
+    private ReactiveStringRedisTemplate stringRedisTemplate;
+
+    private Cart legacyCart() {
+        var cart = new Cart(UUID.randomUUID().toString());
+        cart.setVersionNumber(3);
+        cart.getItems().put("PRODUCT_001", new Cart.CartItem("PRODUCT_001", "", 1));
+        redisTemplate.opsForValue().set("order-processing-system:carts:" + cart.getUserId(), cart).block();
+        return cart;
+    }
+
+    @Test
+    void whenHashTagged_thenCartAndLockKeysShareTheSlot() {
+        var userId = UUID.randomUUID().toString();
+        var cartKey = "order-processing-system:carts:" + keyLayout.user(userId);
+        var lockKey = "order-processing-system:locks:carts:" + keyLayout.user(userId);
+
+        assertEquals(SlotHash.getSlot(cartKey), SlotHash.getSlot(lockKey));
+        assertEquals(SlotHash.getSlot(cartKey), SlotHash.getSlot(cartKey + ":version"));
+    }
+
+    @Test
+    void whenLegacyCartRead_thenRenameToHashTaggedKey() {
+        var cart = legacyCart();
+
+        assertEquals(cart, cartRepo.getCartByUserId(cart.getUserId()).block());
+        assertEquals(Boolean.FALSE, redisTemplate.hasKey("order-processing-system:carts:" + cart.getUserId()).block());
+        assertEquals(Boolean.TRUE, redisTemplate.hasKey("order-processing-system:carts:{" + cart.getUserId() + "}").block());
+    }
+
+    @Test
+    void whenMigratorRuns_thenRenameLegacyKeys() {
+        var cart = legacyCart();
+        stringRedisTemplate.opsForValue().setIfAbsent(PartitionOwnershipFencing.EPOCH_KEY, "1").block();
+
+        var result = keyMigrator.migrate(100_000).block();
+
+        assertNotNull(result);
+        assertTrue(result.migrated() >= 1);
+        assertEquals(Boolean.TRUE, redisTemplate.hasKey("order-processing-system:carts:{" + cart.getUserId() + "}").block());
+        // the ownership epoch counter shares the prefix of the carts, but is not a cart
+        assertEquals(Boolean.TRUE, stringRedisTemplate.hasKey(PartitionOwnershipFencing.EPOCH_KEY).block());
+    }
+
+    @Test
+    void whenLegacyKeyWrittenAgain_thenReadFailsAndMigratorReportsIt() {
+        var cart = legacyCart();
+        cartRepo.getCartByUserId(cart.getUserId()).block();
+        // a legacy instance writes the cart again under the legacy key
+        var legacyKey = "order-processing-system:carts:" + cart.getUserId();
+        redisTemplate.opsForValue().set(legacyKey, cart).block();
+
+        assertThrows(LegacyKeyConflict.class, () -> cartRepo.getCartByUserId(cart.getUserId()).block());
+
+        var result = keyMigrator.migrate(100_000).block();
+        assertNotNull(result);
+        assertTrue(result.skippedKeys().contains(legacyKey));
+        assertEquals(Boolean.TRUE, redisTemplate.hasKey(legacyKey).block());
+    }
+
+    @Test
+    void whenMigrating_thenLockBothNames() {
+        var userId = UUID.randomUUID().toString();
+        var request = new CartUpdateRequest(userId, 1, List.of(
+            new CartUpdateRequest.CartUpdateRequestEntry("PRODUCT_001", "Product_1", 1, CartUpdateRequest.CartAction.QTY_CHANGE)
+        ), "unknown");
+
+        // a legacy instance holds the legacy name
+        lockRepo.acquireLock("carts:" + userId, "legacy-instance", Duration.ofSeconds(10)).block();
+        assertThrows(LockUnavailable.class, () -> handler.handle(request, null).block());
+        lockRepo.releaseLock("carts:" + userId, "legacy-instance").block();
+
+        // an instance done with the migration holds the hash-tagged name (not left locked by the failed handler)
+        assertThatNoException().isThrownBy(() -> lockRepo.acquireLock("carts:{" + userId + "}", "next-instance", Duration.ofSeconds(10)).block());
+        assertThrows(LockUnavailable.class, () -> handler.handle(request, null).block());
+        lockRepo.releaseLock("carts:{" + userId + "}", "next-instance").block();
+
+        handler.handle(request, null).block();
+        assertThatNoException().isThrownBy(() -> lockRepo.acquireLock("carts:" + userId, "legacy-instance", Duration.ofSeconds(10))
+            .then(lockRepo.acquireLock("carts:{" + userId + "}", "next-instance", Duration.ofSeconds(10)))
+            .block()
+        );
+    }
+}
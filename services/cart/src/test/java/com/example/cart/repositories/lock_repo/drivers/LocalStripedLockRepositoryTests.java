@@ -0,0 +1,171 @@
+package com.example.cart.repositories.lock_repo.drivers;
+
+import com.example.cart.TestBase;
+import com.example.cart.repositories.lock_repo.exceptions.LockUnavailable;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The methods run one at a time, as they check the deltas of the lock meters.
+ */
+@Execution(ExecutionMode.SAME_THREAD)
+@TestPropertySource(properties = "order-processing-system.repositories.locks.local-fast-path.enabled=true")
+public class LocalStripedLockRepositoryTests extends TestBase {
+
+    @Autowired
+    private LocalStripedLockRepository lockRepo;
+
+    @Autowired
+    @Qualifier("lockStorage")
+    private com.example.cart.repositories.lock_repo.LockRepository remoteLockRepo;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    private double contended(String scope) {
+        return registry.get("locks.contended").tag("scope", scope).counter().count();
+    }
+
+    private long localWait() {
+        return registry.get("locks.local_wait").timer().count();
+    }
+
+    private String remoteQueueKey(String resource) {
+        return "order-processing-system:locks:" + resource + ":queue";
+    }
+
+    @Test
+    void whenLockedByThisInstance_thenFailWithoutRemoteCall() {
+        var randomResourceId = UUID.randomUUID().toString();
+        var localContended = contended("local");
+        var remoteContended = contended("remote");
+        lockRepo.acquireLock(randomResourceId, "holder", Duration.ofSeconds(10)).block();
+
+        assertThrows(LockUnavailable.class, () -> lockRepo.acquireLock(randomResourceId, "other", Duration.ofSeconds(10)).block());
+        assertEquals(localContended + 1, contended("local"));
+        assertEquals(remoteContended, contended("remote"));
+    }
+
+    @Test
+    void whenLockedByAnotherInstance_thenFailOnRemoteLock() {
+        var randomResourceId = UUID.randomUUID().toString();
+        var remoteContended = contended("remote");
+        remoteLockRepo.acquireLock(randomResourceId, "other-instance", Duration.ofSeconds(10)).block();
+
+        assertThrows(LockUnavailable.class, () -> lockRepo.acquireLock(randomResourceId, "holder", Duration.ofSeconds(10)).block());
+        assertEquals(remoteContended + 1, contended("remote"));
+
+        // the local lock was given back with the remote failure
+        remoteLockRepo.releaseLock(randomResourceId, "other-instance").block();
+        assertThatNoException().isThrownBy(() -> lockRepo.acquireLock(randomResourceId, "holder", Duration.ofSeconds(10)).block());
+    }
+
+    @Test
+    void afterLocalLockReleased_thenRemoteLockReleased() {
+        var randomResourceId = UUID.randomUUID().toString();
+        lockRepo.acquireLock(randomResourceId, "holder", Duration.ofSeconds(10))
+            .then(lockRepo.releaseLock(randomResourceId, "holder"))
+            .block();
+
+        assertThatNoException().isThrownBy(() -> remoteLockRepo.acquireLock(randomResourceId, "other-instance", Duration.ofSeconds(10)).block());
+    }
+
+    @Test
+    void afterLocalLockExpires_thenAcquireLockSuccess() {
+        var randomResourceId = UUID.randomUUID().toString();
+        lockRepo.acquireLock(randomResourceId, "holder", Duration.ofMillis(200)).block();
+
+        assertThatNoException().isThrownBy(() -> Mono.delay(Duration.ofMillis(400))
+            .then(lockRepo.acquireLock(randomResourceId, "other", Duration.ofSeconds(10)))
+            .block()
+        );
+    }
+
+    @Test
+    void whenQueuedWaitElapsed_thenThrowException() {
+        var randomResourceId = UUID.randomUUID().toString();
+        lockRepo.acquireLock(randomResourceId, "holder", Duration.ofSeconds(10)).block();
+
+        assertThrows(LockUnavailable.class, () -> lockRepo.acquireLockQueued(
+            randomResourceId, "waiter", Duration.ofSeconds(10), Duration.ofMillis(300)
+        ).block());
+    }
+
+    @Test
+    void whenLocalWaitersQueued_thenNoRemoteCallWhileWaiting() {
+        var randomResourceId = UUID.randomUUID().toString();
+        var localContended = contended("local");
+        var remoteContended = contended("remote");
+        var localWaits = localWait();
+        lockRepo.acquireLock(randomResourceId, "holder", Duration.ofSeconds(10)).block();
+
+        var waiters = List.of("waiter-1", "waiter-2").stream()
+            .map(waiter -> lockRepo.acquireLockQueued(randomResourceId, waiter, Duration.ofSeconds(10), Duration.ofSeconds(5))
+                .then(lockRepo.releaseLock(randomResourceId, waiter))
+                .subscribeOn(Schedulers.parallel())
+            )
+            .toList();
+        var checkThenRelease = Mono.delay(Duration.ofMillis(300))
+            .then(redisTemplate.opsForList().size(remoteQueueKey(randomResourceId)))
+            .doOnNext(remoteQueued -> {
+                // the waiters are not in the Redis wait queue, and still waiting
+                assertEquals(0L, remoteQueued);
+                assertEquals(localContended + 2, contended("local"));
+                assertEquals(localWaits, localWait());
+            })
+            .then(lockRepo.releaseLock(randomResourceId, "holder"));
+
+        Mono.when(waiters).and(checkThenRelease).block(Duration.ofSeconds(10));
+
+        assertEquals(remoteContended, contended("remote"));
+        assertEquals(localWaits + 2, localWait());
+    }
+
+    @Test
+    void whenRemoteWaitersQueued_thenLocalWaitersKeepArrivalOrder() {
+        var randomResourceId = UUID.randomUUID().toString();
+        var acquired = new CopyOnWriteArrayList<String>();
+        remoteLockRepo.acquireLock(randomResourceId, "other-instance", Duration.ofSeconds(10)).block();
+
+        var otherInstanceWaiter = remoteLockRepo.acquireLockQueued(randomResourceId, "other-instance-waiter", Duration.ofSeconds(10), Duration.ofSeconds(5))
+            .then(Mono.fromRunnable(() -> acquired.add("other-instance-waiter")))
+            .then(Mono.delay(Duration.ofMillis(50)))
+            .then(remoteLockRepo.releaseLock(randomResourceId, "other-instance-waiter"))
+            .subscribeOn(Schedulers.parallel());
+        var localWaiters = List.of("waiter-1", "waiter-2", "waiter-3").stream()
+            .map(waiter -> Mono.delay(Duration.ofMillis(100L * Integer.parseInt(waiter.substring(7))))
+                .then(lockRepo.acquireLockQueued(randomResourceId, waiter, Duration.ofSeconds(10), Duration.ofSeconds(5)))
+                .then(Mono.fromRunnable(() -> acquired.add(waiter)))
+                .then(Mono.delay(Duration.ofMillis(50)))
+                .then(lockRepo.releaseLock(randomResourceId, waiter))
+                .subscribeOn(Schedulers.parallel())
+            )
+            .toList();
+        var releaseLater = Mono.delay(Duration.ofMillis(500)).then(remoteLockRepo.releaseLock(randomResourceId, "other-instance"));
+
+        Mono.when(localWaiters).and(otherInstanceWaiter).and(releaseLater).block(Duration.ofSeconds(10));
+
+        // the first local waiter queues in Redis behind the other instance, the next ones wait locally behind it
+        assertEquals(List.of("other-instance-waiter", "waiter-1", "waiter-2", "waiter-3"), acquired);
+    }
+}
@@ -6,12 +6,17 @@ import com.example.cart.repositories.lock_repo.exceptions.LockUnavailable;
 import com.example.cart.repositories.lock_repo.exceptions.LockValueMismatch;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.util.retry.Retry;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class LockRepositoryTests extends TestBase {
@@ -72,4 +77,71 @@ public class LockRepositoryTests extends TestBase {
             () -> acquireLock1.then(acquireLock2.retryWhen(Retry.fixedDelay(5, Duration.ofMillis(300)))).block()
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    void whenLockReleased_thenWakeUpQueuedWaiter() {
+        var randomResourceId = UUID.randomUUID().toString();
+        var acquireLock = lockRepo.acquireLock(randomResourceId, "holder", Duration.ofSeconds(10));
+        var waitLock = lockRepo.acquireLockQueued(randomResourceId, "waiter", Duration.ofSeconds(10), Duration.ofSeconds(5));
+        var releaseLater = Mono.delay(Duration.ofMillis(200)).then(lockRepo.releaseLock(randomResourceId, "holder"));
+
+        assertThatNoException().isThrownBy(() -> acquireLock.then(Mono.when(waitLock, releaseLater)).block());
+    }
+
+    @Test
+    void whenQueuedWaitElapsed_thenThrowException() {
+        var randomResourceId = UUID.randomUUID().toString();
+        var acquireLock = lockRepo.acquireLock(randomResourceId, "holder", Duration.ofSeconds(10));
+        var waitLock = lockRepo.acquireLockQueued(randomResourceId, "waiter", Duration.ofSeconds(10), Duration.ofMillis(300));
+
+        assertThrows(LockUnavailable.class, () -> acquireLock.then(waitLock).block());
+    }
+
+    @Test
+    void whenQueuedWaitElapsedAfterGrant_thenLockReleased() {
+        var randomResourceId = UUID.randomUUID().toString();
+        // the lock was given to the waiter by an attempt whose reply was not awaited anymore
+        var grantedInFlight = lockRepo.acquireLock(randomResourceId, "waiter", Duration.ofSeconds(10));
+        var waitLock = lockRepo.acquireLockQueued(randomResourceId, "waiter", Duration.ofSeconds(10), Duration.ofMillis(300));
+
+        assertThrows(LockUnavailable.class, () -> grantedInFlight.then(waitLock).block());
+        assertThatNoException().isThrownBy(() -> lockRepo.acquireLock(randomResourceId, "next", Duration.ofSeconds(10)).block());
+    }
+
+    @Test
+    void whenQueuedWaiterCancelled_thenNextWaiterNotBlocked() {
+        var randomResourceId = UUID.randomUUID().toString();
+        lockRepo.acquireLock(randomResourceId, "holder", Duration.ofSeconds(10)).block();
+
+        var cancelled = lockRepo.acquireLockQueued(randomResourceId, "cancelled", Duration.ofSeconds(10), Duration.ofSeconds(5))
+            .timeout(Duration.ofMillis(200));
+        assertThrows(Exception.class, cancelled::block);
+
+        var waitLock = lockRepo.acquireLockQueued(randomResourceId, "waiter", Duration.ofSeconds(10), Duration.ofMillis(500));
+        var releaseLater = Mono.delay(Duration.ofMillis(100)).then(lockRepo.releaseLock(randomResourceId, "holder"));
+
+        assertThatNoException().isThrownBy(() -> Mono.when(waitLock, releaseLater).block());
+    }
+
+    @Test
+    void whenManyWaitersQueued_thenAcquireInArrivalOrder() {
+        var randomResourceId = UUID.randomUUID().toString();
+        var acquired = new CopyOnWriteArrayList<String>();
+        lockRepo.acquireLock(randomResourceId, "holder", Duration.ofSeconds(10)).block();
+
+        var waiters = List.of("waiter-1", "waiter-2", "waiter-3").stream()
+            .map(waiter -> Mono.delay(Duration.ofMillis(100L * Integer.parseInt(waiter.substring(7))))
+                .then(lockRepo.acquireLockQueued(randomResourceId, waiter, Duration.ofSeconds(10), Duration.ofSeconds(5)))
+                .then(Mono.fromRunnable(() -> acquired.add(waiter)))
+                .then(Mono.delay(Duration.ofMillis(50)))
+                .then(lockRepo.releaseLock(randomResourceId, waiter))
+                .subscribeOn(Schedulers.parallel())
+            )
+            .toList();
+        var releaseLater = Mono.delay(Duration.ofMillis(500)).then(lockRepo.releaseLock(randomResourceId, "holder"));
+
+        Mono.when(waiters).and(releaseLater).block(Duration.ofSeconds(10));
+
+        assertEquals(List.of("waiter-1", "waiter-2", "waiter-3"), acquired);
+    }
+}
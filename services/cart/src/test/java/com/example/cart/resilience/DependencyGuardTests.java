@@ -0,0 +1,89 @@
+package com.example.cart.resilience;
+
+import com.example.cart.resilience.exceptions.DependencyUnavailable;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DependencyGuardTests {
+
+    private DependencyGuardSettings settings(Duration openDuration, double retryRatio, double maxRetryTokens) {
+        return new DependencyGuardSettings(10, 4, 0.5, openDuration, 2, Duration.ofSeconds(1), retryRatio, 0, maxRetryTokens);
+    }
+
+    private void fail(DependencyGuard guard) {
+        guard.protect(Mono.error(new IllegalStateException("down"))).onErrorResume(ex -> Mono.empty()).block();
+    }
+
+    private void succeed(DependencyGuard guard) {
+        guard.protect(Mono.just("ok")).block();
+    }
+
+    @Test
+    void whenFailureRateCrossesThreshold_thenRejectCalls() {
+        var guard = new DependencyGuard("redis", settings(Duration.ofMinutes(1), 0.2, 10), List.of());
+        succeed(guard);
+        succeed(guard);
+        fail(guard);
+        assertEquals(DependencyGuard.State.CLOSED, guard.getState());
+
+        fail(guard);
+        assertEquals(DependencyGuard.State.OPEN, guard.getState());
+        assertThrows(DependencyUnavailable.class, () -> succeed(guard));
+        assertEquals(1L, guard.snapshot().get("rejected_calls"));
+    }
+
+    @Test
+    void whenIgnoredExceptionThrown_thenCountAsSuccess() {
+        var guard = new DependencyGuard("redis", settings(Duration.ofMinutes(1), 0.2, 10), List.of(IllegalStateException.class));
+        for (var i = 0; i < 5; i++) {
+            fail(guard);
+        }
+        assertEquals(DependencyGuard.State.CLOSED, guard.getState());
+        assertEquals(0, guard.snapshot().get("window_failures"));
+    }
+
+    @Test
+    void whenTrialCallsSucceed_thenCloseAfterOpenDuration() throws InterruptedException {
+        var guard = new DependencyGuard("redis", settings(Duration.ofMillis(50), 0.2, 10), List.of());
+        for (var i = 0; i < 4; i++) {
+            fail(guard);
+        }
+        assertEquals(DependencyGuard.State.OPEN, guard.getState());
+
+        Thread.sleep(100);
+        assertEquals(DependencyGuard.State.HALF_OPEN, guard.getState());
+        succeed(guard);
+        succeed(guard);
+        assertEquals(DependencyGuard.State.CLOSED, guard.getState());
+    }
+
+    @Test
+    void whenTrialCallFails_thenOpenAgain() throws InterruptedException {
+        var guard = new DependencyGuard("redis", settings(Duration.ofMillis(50), 0.2, 10), List.of());
+        for (var i = 0; i < 4; i++) {
+            fail(guard);
+        }
+        Thread.sleep(100);
+        fail(guard);
+        assertEquals(DependencyGuard.State.OPEN, guard.getState());
+    }
+
+    @Test
+    void whenRetryBudgetSpent_thenRejectRetries() {
+        var guard = new DependencyGuard("inventory", settings(Duration.ofMinutes(1), 0.5, 2), List.of());
+        assertTrue(guard.tryAcquireRetry());
+        assertTrue(guard.tryAcquireRetry());
+        assertFalse(guard.tryAcquireRetry());
+
+        // two calls earn one retry token back
+        succeed(guard);
+        succeed(guard);
+        assertTrue(guard.tryAcquireRetry());
+        assertFalse(guard.tryAcquireRetry());
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.cart.services.cart_service;
+
+import com.example.cart.services.cart_service.entities.CartUpdateRequest;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class CartDeadLetterReplayerTests {
+
+    private final String replayGroupId = "cart-service-dlt-replay";
+    private final TopicPartition deadLetterPartition = new TopicPartition("cart-update-requests-dlt", 0);
+
+    /**
+     * Offsets committed by the replay group, shared by the consumers of every replay (as the broker would).
+     */
+    private final Map<TopicPartition, OffsetAndMetadata> groupOffsets = new ConcurrentHashMap<>();
+
+    private final List<ConsumerRecord<String, Object>> deadLetters = new ArrayList<>();
+    private final List<CartUpdateRequest> published = new ArrayList<>();
+
+    private CartDeadLetterReplayer buildReplayer() {
+        var retryer = new CartUpdateRequestRetryer();
+        ReflectionTestUtils.setField(retryer, "topic", "cart-update-requests");
+
+        var publisher = mock(CartEventsPublisher.class);
+        when(publisher.publishCartUpdateRequest(any())).thenAnswer(invocation -> {
+            published.add(invocation.getArgument(0));
+            return Mono.empty();
+        });
+
+        ConsumerFactory<?, ?> consumerFactory = mock(ConsumerFactory.class);
+        doAnswer(invocation -> groupConsumer()).when(consumerFactory).createConsumer(eq(replayGroupId), eq("-dlt-replay"));
+
+        var replayer = new CartDeadLetterReplayer();
+        ReflectionTestUtils.setField(replayer, "replayGroupId", replayGroupId);
+        ReflectionTestUtils.setField(replayer, "retryer", retryer);
+        ReflectionTestUtils.setField(replayer, "cartEventsPublisher", publisher);
+        ReflectionTestUtils.setField(replayer, "consumerFactory", consumerFactory);
+        return replayer;
+    }
+
+    /**
+     * A consumer of the replay group: starts from the offset committed by the previous replay.
+     */
+    private MockConsumer<String, Object> groupConsumer() {
+        var consumer = new MockConsumer<String, Object>(OffsetResetStrategy.EARLIEST) {
+            @Override
+            public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+                super.commitSync(offsets);
+                groupOffsets.putAll(offsets);
+            }
+        };
+        consumer.updateBeginningOffsets(Map.of(deadLetterPartition, 0L));
+        consumer.schedulePollTask(() -> {
+            consumer.rebalance(List.of(deadLetterPartition));
+            var committed = groupOffsets.get(deadLetterPartition);
+            var start = committed == null ? 0L : committed.offset();
+            consumer.seek(deadLetterPartition, start);
+            deadLetters.stream().filter(record -> record.offset() >= start).forEach(consumer::addRecord);
+        });
+        return consumer;
+    }
+
+    private void addDeadLetter(String userId) {
+        Object value = null;
+        if (userId != null) {
+            var request = new CartUpdateRequest();
+            request.setUserId(userId);
+            request.setVersionNumber(1);
+            value = request;
+        }
+        deadLetters.add(new ConsumerRecord<>(deadLetterPartition.topic(), deadLetterPartition.partition(), deadLetters.size(), userId, value));
+    }
+
+    @Test
+    void whenReplayedAgain_thenResumeFromSharedGroupOffset() {
+        addDeadLetter("USR_01");
+        addDeadLetter("USR_02");
+        addDeadLetter("USR_03");
+        addDeadLetter("USR_04");
+        var replayer = buildReplayer();
+
+        var first = replayer.replay(2).block();
+        var second = replayer.replay(10).block();
+
+        assertEquals(new CartDeadLetterReplayer.Result(2, 0), first);
+        assertEquals(new CartDeadLetterReplayer.Result(2, 0), second);
+        assertEquals(List.of("USR_01", "USR_02", "USR_03", "USR_04"), published.stream().map(CartUpdateRequest::getUserId).toList());
+        assertEquals(4L, groupOffsets.get(deadLetterPartition).offset());
+    }
+
+    @Test
+    void whenRecordHasNoRequest_thenSkippedNotReplayed() {
+        addDeadLetter("USR_01");
+        addDeadLetter(null);
+        addDeadLetter("USR_03");
+        var replayer = buildReplayer();
+
+        var result = replayer.replay(10).block();
+
+        assertEquals(new CartDeadLetterReplayer.Result(2, 1), result);
+        assertEquals(List.of("USR_01", "USR_03"), published.stream().map(CartUpdateRequest::getUserId).toList());
+        assertEquals(3L, groupOffsets.get(deadLetterPartition).offset());
+    }
+
+    @Test
+    void whenPublishFails_thenCommitOnlyReplayedRecords() {
+        addDeadLetter("USR_01");
+        addDeadLetter("USR_02");
+        var replayer = buildReplayer();
+        var publisher = (CartEventsPublisher) ReflectionTestUtils.getField(replayer, "cartEventsPublisher");
+        when(publisher.publishCartUpdateRequest(any()))
+            .thenReturn(Mono.empty())
+            .thenReturn(Mono.error(new IllegalStateException("Kafka down")));
+
+        assertThrows(IllegalStateException.class, () -> replayer.replay(10).block());
+        assertEquals(1L, groupOffsets.get(deadLetterPartition).offset());
+    }
+}
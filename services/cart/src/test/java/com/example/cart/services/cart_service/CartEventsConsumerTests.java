@@ -0,0 +1,76 @@
+package com.example.cart.services.cart_service;
+
+import com.example.cart.services.cart_service.entities.CartUpdateRequest;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.cart.services.cart_service.CartUpdateRequestRetryer.ORIGIN_GROUP_HEADER;
+import static com.example.cart.services.cart_service.CartUpdateRequestRetryer.RETRY_DUE_AT_HEADER;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class CartEventsConsumerTests {
+
+    private CartUpdateRequestHandler handler;
+
+    private CartEventsConsumer buildConsumer() {
+        var retryer = new CartUpdateRequestRetryer();
+        ReflectionTestUtils.setField(retryer, "topic", "cart-update-requests");
+        ReflectionTestUtils.setField(retryer, "enabled", true);
+        ReflectionTestUtils.setField(retryer, "delaysMs", List.of(1000L, 10000L, 60000L));
+
+        handler = mock(CartUpdateRequestHandler.class);
+
+        var consumer = new CartEventsConsumer();
+        ReflectionTestUtils.setField(consumer, "cartUpdateRequestRetryer", retryer);
+        ReflectionTestUtils.setField(consumer, "cartUpdateRequestHandler", handler);
+        ReflectionTestUtils.setField(consumer, "structuredLogging", true);
+        return consumer;
+    }
+
+    private Map<String, Object> retryHeaders(String originGroup, long dueAt) {
+        var headers = new HashMap<String, Object>();
+        headers.put(KafkaHeaders.GROUP_ID, "cart-service");
+        headers.put(KafkaHeaders.RECEIVED_TOPIC, "cart-update-requests-retry-0");
+        headers.put(KafkaHeaders.RECEIVED_PARTITION, 0);
+        headers.put(ORIGIN_GROUP_HEADER, originGroup.getBytes(StandardCharsets.UTF_8));
+        headers.put(RETRY_DUE_AT_HEADER, String.valueOf(dueAt).getBytes(StandardCharsets.UTF_8));
+        return headers;
+    }
+
+    @Test
+    void whenRetryNotDue_thenNackForRemainingDelay() {
+        var consumer = buildConsumer();
+        var ack = mock(Acknowledgment.class);
+
+        consumer.handleRetry(new CartUpdateRequest(), ack, retryHeaders("cart-service", System.currentTimeMillis() + 5000));
+
+        var delay = ArgumentCaptor.forClass(Duration.class);
+        verify(ack).nack(delay.capture());
+        assertTrue(delay.getValue().toMillis() > 4000 && delay.getValue().toMillis() <= 5000);
+        verify(ack, never()).acknowledge();
+        verify(handler, never()).handle(any(CartUpdateRequest.class), any());
+    }
+
+    @Test
+    void whenRetryOfAnotherGroup_thenAcknowledgeWithoutHandling() {
+        var consumer = buildConsumer();
+        var ack = mock(Acknowledgment.class);
+
+        consumer.handleRetry(new CartUpdateRequest(), ack, retryHeaders("other-group", System.currentTimeMillis() + 5000));
+
+        verify(ack).acknowledge();
+        verify(ack, never()).nack(any(Duration.class));
+        verify(handler, never()).handle(any(CartUpdateRequest.class), any());
+    }
+}
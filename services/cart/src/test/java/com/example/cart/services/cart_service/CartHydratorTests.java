@@ -0,0 +1,84 @@
+package com.example.cart.services.cart_service;
+
+import com.example.cart.entities.Cart;
+import com.example.cart.entities.ProductAvailability;
+import com.example.cart.entities.properties.CartValidation;
+import com.example.cart.resilience.DependencyGuard;
+import com.example.cart.resilience.DependencyGuardSettings;
+import com.example.cart.services.inventory_service.InventoryService;
+import com.example.cart.services.inventory_service.ProductAvailabilityChanges;
+import com.example.cart.services.inventory_service.ProductAvailabilityView;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CartHydratorTests {
+
+    private final List<List<String>> inventoryCalls = new ArrayList<>();
+
+    private CartHydrator hydrator;
+
+    @BeforeEach
+    void setUp() {
+        var inventory = new InventoryService() {
+            @Override
+            public Flux<ProductAvailability> listProductAvailabilities(List<String> productIds) {
+                inventoryCalls.add(productIds);
+                return Flux.fromIterable(productIds)
+                    .filter(productId -> ! productId.equals("UNKNOWN"))
+                    .map(productId -> new ProductAvailability(productId, "Product", 9.99, 2, true));
+            }
+
+            @Override
+            public Flux<ProductAvailabilityChanges> watchProductAvailabilities(String resumeToken) {
+                return Flux.never();
+            }
+        };
+        var guardSettings = new DependencyGuardSettings(10, 4, 0.5, Duration.ofSeconds(5), 2, Duration.ofSeconds(1), 0.2, 0, 10);
+        var view = new ProductAvailabilityView(60_000L, 100);
+        ReflectionTestUtils.setField(view, "inventoryService", inventory);
+        ReflectionTestUtils.setField(view, "inventoryGuard", new DependencyGuard("inventory", guardSettings, List.of()));
+        hydrator = new CartHydrator();
+        ReflectionTestUtils.setField(hydrator, "productAvailabilityView", view);
+    }
+
+    private Cart slimCart(String userId, String... productIds) {
+        var cart = new Cart(userId);
+        for (var productId : productIds) {
+            cart.getItems().put(productId, new Cart.CartItem(productId, "Product", 5));
+        }
+        return cart;
+    }
+
+    @Test
+    void whenAvailabilitiesMissing_thenHydrateAndRebuildValidationMessages() {
+        var cart = slimCart("USR-001", "P001");
+        cart.getValidations().put("P001", new CartValidation("P001", "", CartValidation.CartValidationType.INSUFFICIENT_STOCK));
+
+        var hydrated = hydrator.hydrate(cart).block();
+
+        assertNotNull(hydrated);
+        assertEquals(9.99, hydrated.getProductAvailability("P001").getPrice());
+        assertEquals("Insufficient stocks for Product, only 2 are available", hydrated.getValidations().get("P001").getMessage());
+    }
+
+    @Test
+    void whenManyCarts_thenReadEachProductOnce() {
+        var carts = List.of(slimCart("USR-001", "P001", "P002"), slimCart("USR-002", "P002", "UNKNOWN"));
+
+        hydrator.hydrateAll(carts).block();
+        hydrator.hydrateAll(List.of(slimCart("USR-003", "P001"))).block();
+
+        assertEquals(1, inventoryCalls.size());
+        assertEquals(3, inventoryCalls.getFirst().size());
+        assertNotNull(carts.get(1).getProductAvailability("P002"));
+        assertNull(carts.get(1).getProductAvailability("UNKNOWN"));
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.cart.services.cart_service;
+
+import com.example.cart.TestBase;
+import com.example.cart.repositories.cart_repo.drivers.CartEventLogRepository;
+import com.example.cart.services.cart_service.entities.CartUpdateRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+import java.util.UUID;
+
+import static com.example.cart.repositories.cart_repo.drivers.CartEventLogFixtures.applyAndSave;
+import static com.example.cart.repositories.cart_repo.drivers.CartEventLogFixtures.request;
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestPropertySource(properties = {
+    "order-processing-system.repositories.carts.storage-driver=event-log",
+    "order-processing-system.repositories.carts.event-log.snapshot-every=3",
+    "order-processing-system.repositories.carts.event-log.max-length=100"
+})
+public class CartRebuilderTests extends TestBase {
+
+    @Autowired
+    private CartRebuilder cartRebuilder;
+
+    @Autowired
+    private CartEventLogRepository cartRepo;
+
+    @Test
+    void whenRebuilt_thenCurrentAvailabilitiesAndValidations() {
+        var userId = UUID.randomUUID().toString();
+        applyAndSave(cartRepo, userId, request(userId, 1, "PRODUCT_001", 1, CartUpdateRequest.CartAction.QTY_CHANGE));
+        applyAndSave(cartRepo, userId, request(userId, 2, "PRODUCT_003", 2, CartUpdateRequest.CartAction.QTY_CHANGE));
+        applyAndSave(cartRepo, userId, request(userId, 3, "PRODUCT_003", 5, CartUpdateRequest.CartAction.QTY_CHANGE));
+
+        var rebuilt = cartRebuilder.rebuild(userId).block();
+        var stored = cartRepo.getCartByUserId(userId).block();
+
+        assertNotNull(rebuilt);
+        assertNotNull(stored);
+        assertEquals(3, stored.getVersionNumber());
+        assertEquals(1, stored.getItems().get("PRODUCT_001").getQuantity());
+        assertEquals(5, stored.getItems().get("PRODUCT_003").getQuantity());
+        assertFalse(stored.getProductAvailabilities().get("PRODUCT_001").getIsAvailable());
+        assertEquals(3, stored.getProductAvailabilities().get("PRODUCT_003").getAvailableStock());
+        assertTrue(stored.getValidations().containsKey("PRODUCT_001"));
+        assertTrue(stored.getValidations().containsKey("PRODUCT_003"));
+
+        // the rebuild is stored as a snapshot, the log keeps the requests once
+        assertEquals(List.of(1, 2, 3), cartRepo.listLoggedRequests(userId).map(CartUpdateRequest::getVersionNumber).collectList().block());
+    }
+
+    @Test
+    void whenLogMissesFirstRequests_thenNotRebuilt() {
+        var userId = UUID.randomUUID().toString();
+        // e.g. a cart migrated from another storage driver, logged from version 2 only
+        applyAndSave(cartRepo, userId, request(userId, 2, "PRODUCT_003", 2, CartUpdateRequest.CartAction.QTY_CHANGE));
+
+        var rebuild = cartRebuilder.rebuild(userId);
+
+        assertThrows(IllegalStateException.class, rebuild::block);
+        assertEquals(10, cartRepo.getCartByUserId(userId).block().getProductAvailabilities().get("PRODUCT_003").getAvailableStock());
+    }
+
+    @Test
+    void whenNoCart_thenEmpty() {
+        assertNull(cartRebuilder.rebuild(UUID.randomUUID().toString()).block());
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.cart.services.cart_service;
+
+import com.example.cart.TestBase;
+import com.example.cart.entities.Cart;
+import com.example.cart.repositories.cart_repo.CartRepository;
+import com.example.cart.services.cart_service.entities.CartUpdateRequest;
+import com.example.cart.services.cart_service.exceptions.InvalidCartUpdateRequestVersion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestPropertySource(properties = "order-processing-system.handlers.cart-update-requests.concurrency-control=optimistic")
+public class CartUpdateRequestHandlerOptimisticTests extends TestBase {
+
+    @Autowired
+    private CartUpdateRequestHandler handler;
+
+    @Autowired
+    private CartRepository cartRepo;
+
+    @Autowired
+    private ReactiveRedisTemplate<String, Cart> cartTemplate;
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Value("${spring.data.redis.host:localhost}")
+    private String redisHost;
+
+    @Value("${spring.data.redis.port:6379}")
+    private Integer redisPort;
+
+    private LettuceConnectionFactory concurrentConnectionFactory;
+
+    private com.example.cart.repositories.cart_repo.drivers.CartRepository concurrentRepo;
+
+    /**
+     * The other instance has its own Redis client: the hooks run on the event loop of the shared connection,
+     * which can not serve a save that the hook waits for.
+     */
+    @BeforeEach
+    void setUpConcurrentInstance() {
+        concurrentConnectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(redisHost, redisPort));
+        concurrentConnectionFactory.afterPropertiesSet();
+        concurrentConnectionFactory.start();
+
+        concurrentRepo = new com.example.cart.repositories.cart_repo.drivers.CartRepository();
+        context.getAutowireCapableBeanFactory().autowireBean(concurrentRepo);
+        ReflectionTestUtils.setField(concurrentRepo, "redisTemplate",
+            new ReactiveRedisTemplate<>(concurrentConnectionFactory, cartTemplate.getSerializationContext()));
+    }
+
+    @AfterEach
+    void tearDownConcurrentInstance() {
+        concurrentConnectionFactory.destroy();
+    }
+
+    private CartUpdateRequest buildRequest(String userId, int version, String productId, int qty) {
+        return new CartUpdateRequest(userId, version, List.of(
+            new CartUpdateRequest.CartUpdateRequestEntry(productId, productId, qty, CartUpdateRequest.CartAction.QTY_CHANGE)
+        ), "unknown");
+    }
+
+    /**
+     * Another instance saves the cart between the read and the compare-and-save of this handler:
+     * the hook returns once the save is done.
+     */
+    private void saveConcurrently(Cart cart) {
+        concurrentRepo.saveCart(cart).toFuture().join();
+    }
+
+    @Test
+    void whenCartNotExist_thenSaveWithoutLock() {
+        var hooks = new ConcurrentHashMap<String, Boolean>();
+        var userId = UUID.randomUUID().toString();
+
+        var saved = handler
+            .handle(buildRequest(userId, 1, "PRODUCT_003", 2), (hookName) -> hooks.putIfAbsent(hookName, true))
+            .then(cartRepo.getCartByUserId(userId))
+            .block();
+
+        assertFalse(hooks.containsKey("LOCK_ACQUIRED"));
+        assertTrue(hooks.containsKey("CART_SAVED"));
+        assertTrue(hooks.containsKey("REQUEST_COMMITTED"));
+
+        assertNotNull(saved);
+        assertEquals(1, saved.getVersionNumber());
+        assertEquals(2, saved.getItems().get("PRODUCT_003").getQuantity());
+    }
+
+    @Test
+    void whenVersionConflict_thenRetryOnFreshRead() {
+        var hooks = new ConcurrentHashMap<String, Integer>();
+        var userId = UUID.randomUUID().toString();
+        var second = buildRequest(userId, 2, "PRODUCT_001", 1);
+        var third = buildRequest(userId, 3, "PRODUCT_003", 2);
+
+        var concurrent = new Cart(userId, 2, new HashMap<>(Map.of(
+            "PRODUCT_001", new Cart.CartItem("PRODUCT_001", "PRODUCT_001", 4)
+        )), new HashMap<>(), new HashMap<>());
+
+        var saved = cartRepo
+            .saveCart(new Cart(userId, 1, new HashMap<>(), new HashMap<>(), new HashMap<>()))
+            .then(handler.handle(List.of(second, third), (hookName) -> {
+                // the first cycle built versions 2 and 3 on version 1, meanwhile version 2 is saved elsewhere
+                if (hooks.merge(hookName, 1, Integer::sum) == 1 && Objects.equals(hookName, "CART_BUILT")) {
+                    saveConcurrently(concurrent);
+                }
+            }))
+            .then(cartRepo.getCartByUserId(userId))
+            .block();
+
+        assertEquals(2, hooks.get("CART_BUILT"));
+        assertEquals(1, hooks.get("CART_SAVED"));
+        assertEquals(1, hooks.get("REQUEST_COMMITTED"));
+
+        // only the third request applied on the fresh read, the item of the concurrent save is kept
+        assertNotNull(saved);
+        assertEquals(3, saved.getVersionNumber());
+        assertEquals(4, saved.getItems().get("PRODUCT_001").getQuantity());
+        assertEquals(2, saved.getItems().get("PRODUCT_003").getQuantity());
+    }
+
+    @Test
+    void whenConcurrentSaveAppliedTheRequest_thenCommitWithoutSave() {
+        var hooks = new ConcurrentHashMap<String, Integer>();
+        var userId = UUID.randomUUID().toString();
+        var request = buildRequest(userId, 2, "PRODUCT_003", 2);
+
+        var concurrent = new Cart(userId, 2, new HashMap<>(Map.of(
+            "PRODUCT_003", new Cart.CartItem("PRODUCT_003", "PRODUCT_003", 1)
+        )), new HashMap<>(), new HashMap<>());
+
+        var execute = cartRepo
+            .saveCart(new Cart(userId, 1, new HashMap<>(), new HashMap<>(), new HashMap<>()))
+            .then(handler.handle(request, (hookName) -> {
+                if (hooks.merge(hookName, 1, Integer::sum) == 1 && Objects.equals(hookName, "CART_BUILT")) {
+                    saveConcurrently(concurrent);
+                }
+            }));
+
+        assertThrows(InvalidCartUpdateRequestVersion.class, execute::block);
+        assertEquals(1, hooks.get("CART_BUILT"));
+        assertNull(hooks.get("CART_SAVED"));
+        assertEquals(1, hooks.get("REQUEST_COMMITTED"));
+        assertEquals(1, cartRepo.getCartByUserId(userId).block().getItems().get("PRODUCT_003").getQuantity());
+    }
+}
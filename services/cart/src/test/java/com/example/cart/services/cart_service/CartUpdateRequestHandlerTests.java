@@ -319,4 +319,29 @@ public class CartUpdateRequestHandlerTests extends TestBase {
         assertTrue(hooks.containsKey("REQUEST_COMMITTED"));
         assertTrue(hooks.containsKey("CART_SAVED"));
     }
+
+    @Test
+    void whenRequestsCoalesced_thenApplyInVersionOrderWithSingleSave() {
+        var hooks = new ConcurrentHashMap<String, Integer>();
+        var userId = UUID.randomUUID().toString();
+        var first = buildRequest(userId);
+        var second = new CartUpdateRequest(userId, 2, List.of(
+            new CartUpdateRequest.CartUpdateRequestEntry("PRODUCT_001", "Product_1", 5, CartUpdateRequest.CartAction.QTY_CHANGE),
+            new CartUpdateRequest.CartUpdateRequestEntry("PRODUCT_002", "Product_2", 0, CartUpdateRequest.CartAction.DROP_ITEM)
+        ), "unknown");
+
+        var cartAfterSaved = handler
+            .handle(List.of(second, first), (hookName) -> hooks.merge(hookName, 1, Integer::sum))
+            .then(cartRepo.getCartByUserId(userId))
+            .block();
+
+        assertEquals(1, hooks.get("LOCK_ACQUIRED"));
+        assertEquals(1, hooks.get("CART_SAVED"));
+        assertEquals(1, hooks.get("REQUEST_COMMITTED"));
+
+        assertNotNull(cartAfterSaved);
+        assertEquals(2, cartAfterSaved.getVersionNumber());
+        assertEquals(5, cartAfterSaved.getItems().get("PRODUCT_001").getQuantity());
+        assertFalse(cartAfterSaved.getItems().containsKey("PRODUCT_002"));
+    }
 }
@@ -0,0 +1,109 @@
+package com.example.cart.services.cart_service;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.example.cart.services.cart_service.entities.CartUpdateRequest;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the handler log lines of one message (1 INFO line, 6 DEBUG lines), with DEBUG disabled
+ * (production) and enabled, for the formatted prefix and the structured mode.
+ * The logger has no appender, so only the formatting and the event creation are measured.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.example.cart.services.cart_service.CartUpdateRequestLoggingBenchmark
+ * The "gc.alloc.rate.norm" lines of the GC profiler give the bytes allocated per message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartUpdateRequestLoggingBenchmark {
+
+    private static final List<String> DEBUG_LINES = List.of(
+        "Request version checked",
+        "Lock acquire success",
+        "Cart found",
+        "Build cart success",
+        "Saved cart success",
+        "Lock release success"
+    );
+
+    @Param({"INFO", "DEBUG"})
+    public String level;
+
+    private CartUpdateRequest request;
+    private CartUpdateRequestHandler legacyHandler;
+    private CartUpdateRequestHandler structuredHandler;
+    private org.slf4j.Logger log;
+
+    @Setup
+    public void setUp() {
+        var logger = (Logger) LoggerFactory.getLogger(CartUpdateRequestHandler.class);
+        logger.detachAndStopAllAppenders();
+        logger.setAdditive(false);
+        logger.setLevel(Level.toLevel(level));
+        log = logger;
+
+        request = new CartUpdateRequest();
+        request.setUserId("USR-000042");
+        request.setVersionNumber(1042);
+        request.setHandlerName("consumer-cart-service-3");
+
+        legacyHandler = new CartUpdateRequestHandler();
+        ReflectionTestUtils.setField(legacyHandler, "structuredLogging", false);
+        structuredHandler = new CartUpdateRequestHandler();
+        ReflectionTestUtils.setField(structuredHandler, "structuredLogging", true);
+    }
+
+    /**
+     * The previous implementation: the prefix is always formatted, even for disabled DEBUG lines.
+     */
+    @Benchmark
+    public void eagerStringFormat(Blackhole blackhole) {
+        log.info(String.format("user_id=%s - cart_ver=%s - handler=%s - Handling cart update request",
+            request.getUserId(), request.getVersionNumber(), request.getHandlerName()));
+        for (var line : DEBUG_LINES) {
+            log.debug(String.format("user_id=%s - cart_ver=%s - handler=%s - " + line,
+                request.getUserId(), request.getVersionNumber(), request.getHandlerName()));
+        }
+        blackhole.consume(request);
+    }
+
+    @Benchmark
+    public void lazyFormattedPrefix(Blackhole blackhole) {
+        legacyHandler.logAt(org.slf4j.event.Level.INFO, request, "Handling cart update request").log();
+        for (var line : DEBUG_LINES) {
+            legacyHandler.logAt(org.slf4j.event.Level.DEBUG, request, line).log();
+        }
+        blackhole.consume(request);
+    }
+
+    @Benchmark
+    public void structuredKeyValues(Blackhole blackhole) {
+        structuredHandler.logAt(org.slf4j.event.Level.INFO, request, "Handling cart update request").log();
+        for (var line : DEBUG_LINES) {
+            structuredHandler.logAt(org.slf4j.event.Level.DEBUG, request, line).log();
+        }
+        blackhole.consume(request);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(CartUpdateRequestLoggingBenchmark.class.getSimpleName())
+            .addProfiler("gc")
+            .build()
+        ).run();
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.cart.services.cart_service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CartUpdateRequestMetricsTests {
+
+    private SimpleMeterRegistry registry;
+    private CartUpdateRequestMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new CartUpdateRequestMetrics();
+        ReflectionTestUtils.setField(metrics, "registry", registry);
+    }
+
+    @Test
+    void whenHookPointsCalled_thenRecordOneStagePerHookAndForwardTheHook() {
+        var forwarded = new ArrayList<String>();
+        var stages = metrics.stageHook(forwarded::add);
+        stages.start();
+
+        stages.accept(CartUpdateRequestHandler.LOCK_ACQUIRED);
+        stages.accept(CartUpdateRequestHandler.CART_BUILT);
+        stages.accept(CartUpdateRequestHandler.CART_BUILT);
+
+        assertEquals(1, registry.get(CartUpdateRequestMetrics.STAGE_TIMER).tag("stage", "lock_acquired").timer().count());
+        assertEquals(2, registry.get(CartUpdateRequestMetrics.STAGE_TIMER).tag("stage", "cart_built").timer().count());
+        assertEquals(3, forwarded.size());
+    }
+
+    @Test
+    void whenCallTimed_thenTagTheOutcome() {
+        Mono.just(1).transform(metrics.timeCall("get_cart")).block();
+        Mono.error(new RuntimeException()).transform(metrics.timeCall("get_cart")).onErrorResume(ex -> Mono.empty()).block();
+
+        assertEquals(1, registry.get(CartUpdateRequestMetrics.CALL_TIMER).tags("call", "get_cart", "outcome", "success").timer().count());
+        assertEquals(1, registry.get(CartUpdateRequestMetrics.CALL_TIMER).tags("call", "get_cart", "outcome", "error").timer().count());
+    }
+
+    @Test
+    void whenRetriedAndCommitted_thenCountRetriesAndEndToEnd() {
+        metrics.recordRetry("save_cart");
+        metrics.recordRetry("save_cart");
+        metrics.recordEndToEnd(System.currentTimeMillis() - 50, "blocking");
+        metrics.recordEndToEnd(null, "blocking");
+
+        assertEquals(2.0, registry.get(CartUpdateRequestMetrics.RETRIES_COUNTER).tag("call", "save_cart").counter().count());
+        assertEquals(1, registry.get(CartUpdateRequestMetrics.END_TO_END_TIMER).timer().count());
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.cart.services.cart_service;
+
+import com.example.cart.services.cart_service.entities.CartUpdateRequest;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.StreamSupport;
+
+import static com.example.cart.services.cart_service.CartUpdateRequestRetryer.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class CartUpdateRequestRetryerTests {
+
+    private final String topic = "cart-update-requests";
+
+    private CartEventsPublisher publisher;
+
+    private CartUpdateRequestRetryer buildRetryer(String concurrencyControl) {
+        publisher = mock(CartEventsPublisher.class);
+        when(publisher.publish(any())).thenReturn(Mono.empty());
+
+        var retryer = new CartUpdateRequestRetryer();
+        ReflectionTestUtils.setField(retryer, "topic", topic);
+        ReflectionTestUtils.setField(retryer, "enabled", true);
+        ReflectionTestUtils.setField(retryer, "delaysMs", List.of(1000L, 10000L, 60000L));
+        ReflectionTestUtils.setField(retryer, "concurrencyControl", concurrencyControl);
+        ReflectionTestUtils.setField(retryer, "cartEventsPublisher", publisher);
+        return retryer;
+    }
+
+    private CartUpdateRequest buildRequest() {
+        return new CartUpdateRequest("USR_01", 2, List.of(
+            new CartUpdateRequest.CartUpdateRequestEntry("PRODUCT_003", "Product_3", 1, CartUpdateRequest.CartAction.QTY_CHANGE)
+        ), "unknown");
+    }
+
+    private Map<String, Object> sourceHeaders() {
+        var headers = new HashMap<String, Object>();
+        headers.put(KafkaHeaders.GROUP_ID, "cart-service");
+        headers.put(KafkaHeaders.RECEIVED_TOPIC, topic);
+        headers.put(KafkaHeaders.RECEIVED_PARTITION, 3);
+        headers.put(KafkaHeaders.OFFSET, 42L);
+        headers.put("traceparent", "00-trace-span-01".getBytes(StandardCharsets.UTF_8));
+        return headers;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ProducerRecord<String, CartUpdateRequest> publishedRecord() {
+        var captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(publisher).publish(captor.capture());
+        return captor.getValue();
+    }
+
+    private String header(ProducerRecord<?, ?> record, String name) {
+        var header = record.headers().lastHeader(name);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void whenFirstFailure_thenFirstTierWithOriginAndFailureHeaders() {
+        var retryer = buildRetryer("lock");
+
+        var target = retryer.retryOrDeadLetter(buildRequest(), sourceHeaders(), new IllegalStateException("Redis down")).block();
+
+        var record = publishedRecord();
+        assertEquals(topic + "-retry-0", target);
+        assertEquals(target, record.topic());
+        assertEquals("USR_01", record.key());
+        assertEquals("1", header(record, RETRY_ATTEMPT_HEADER));
+        assertNotNull(header(record, RETRY_DUE_AT_HEADER));
+        assertEquals("cart-service", header(record, ORIGIN_GROUP_HEADER));
+        assertEquals(topic, header(record, ORIGIN_TOPIC_HEADER));
+        assertEquals("3", header(record, ORIGIN_PARTITION_HEADER));
+        assertEquals("42", header(record, ORIGIN_OFFSET_HEADER));
+        assertEquals(IllegalStateException.class.getName(), header(record, FAILURE_CLASS_HEADER));
+        assertEquals("Redis down", header(record, FAILURE_MESSAGE_HEADER));
+        assertEquals("00-trace-span-01", header(record, "traceparent"));
+    }
+
+    @Test
+    void whenRetriedAgain_thenNextTierKeepsOriginAndReplacesRouting() {
+        var retryer = buildRetryer("lock");
+        var headers = sourceHeaders();
+        headers.put(KafkaHeaders.RECEIVED_TOPIC, topic + "-retry-0");
+        headers.put(ORIGIN_GROUP_HEADER, "cart-service".getBytes(StandardCharsets.UTF_8));
+        headers.put(ORIGIN_TOPIC_HEADER, topic.getBytes(StandardCharsets.UTF_8));
+        headers.put(ORIGIN_OFFSET_HEADER, "7".getBytes(StandardCharsets.UTF_8));
+        headers.put(RETRY_ATTEMPT_HEADER, "1".getBytes(StandardCharsets.UTF_8));
+        headers.put(FAILURE_MESSAGE_HEADER, "Redis down".getBytes(StandardCharsets.UTF_8));
+
+        var target = retryer.retryOrDeadLetter(buildRequest(), headers, new IllegalStateException("Lock timeout")).block();
+
+        var record = publishedRecord();
+        assertEquals(topic + "-retry-1", target);
+        assertEquals("2", header(record, RETRY_ATTEMPT_HEADER));
+        assertEquals(topic, header(record, ORIGIN_TOPIC_HEADER));
+        assertEquals("7", header(record, ORIGIN_OFFSET_HEADER));
+        assertEquals("Lock timeout", header(record, FAILURE_MESSAGE_HEADER));
+        // the routing headers of the previous attempt are not forwarded next to the new ones
+        assertEquals(1, StreamSupport.stream(record.headers().headers(FAILURE_MESSAGE_HEADER).spliterator(), false).count());
+        assertEquals(1, StreamSupport.stream(record.headers().headers(RETRY_ATTEMPT_HEADER).spliterator(), false).count());
+    }
+
+    @Test
+    void whenEveryTierTried_thenDeadLetterWithoutDueTime() {
+        var retryer = buildRetryer("lock");
+        var headers = sourceHeaders();
+        headers.put(RETRY_ATTEMPT_HEADER, "3".getBytes(StandardCharsets.UTF_8));
+
+        var target = retryer.retryOrDeadLetter(buildRequest(), headers, new IllegalStateException("Redis down")).block();
+
+        var record = publishedRecord();
+        assertEquals(topic + "-dlt", target);
+        assertEquals("4", header(record, RETRY_ATTEMPT_HEADER));
+        assertNull(header(record, RETRY_DUE_AT_HEADER));
+    }
+
+    @Test
+    void whenDueTimeAhead_thenRemainingDelay() {
+        var retryer = buildRetryer("lock");
+        var headers = new HashMap<String, Object>();
+        headers.put(RETRY_DUE_AT_HEADER, String.valueOf(System.currentTimeMillis() + 5000).getBytes(StandardCharsets.UTF_8));
+
+        var remaining = retryer.remainingDelayMs(headers);
+
+        assertTrue(remaining > 4000 && remaining <= 5000);
+        assertEquals(0L, retryer.remainingDelayMs(Map.of()));
+    }
+
+    @Test
+    void whenRetryOfAnotherGroup_thenNotOwn() {
+        var retryer = buildRetryer("lock");
+        var headers = new HashMap<String, Object>();
+        headers.put(KafkaHeaders.GROUP_ID, "cart-service");
+        headers.put(ORIGIN_GROUP_HEADER, "other-group".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(retryer.isOwnRetry(headers));
+
+        headers.put(ORIGIN_GROUP_HEADER, "cart-service".getBytes(StandardCharsets.UTF_8));
+        assertTrue(retryer.isOwnRetry(headers));
+    }
+
+    @Test
+    void whenPartitionOwnership_thenRefuseRetryTopics() {
+        var retryer = buildRetryer(CartUpdateRequestHandler.PARTITION_OWNERSHIP_CONCURRENCY);
+
+        assertThrows(IllegalStateException.class, retryer::checkConcurrencyControl);
+
+        ReflectionTestUtils.setField(retryer, "enabled", false);
+        assertDoesNotThrow(retryer::checkConcurrencyControl);
+    }
+}
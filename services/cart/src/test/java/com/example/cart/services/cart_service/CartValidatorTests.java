@@ -9,6 +9,7 @@ import com.example.cart.services.cart_service.exceptions.InvalidCartUpdateReques
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThatNoException;
@@ -50,6 +51,35 @@ public class CartValidatorTests extends TestBase {
         assertThatNoException().isThrownBy(() -> validator.checkCartUpdateRequestVersion(cart, request));
     }
 
+    @Test
+    void selectApplicableRequests_mustReturnConsecutiveRunInVersionOrder() {
+        var cart = new Cart("USR_01");
+        cart.setVersionNumber(2);
+
+        var stale = new CartUpdateRequest();
+        var v3 = new CartUpdateRequest();
+        var v4 = new CartUpdateRequest();
+        var afterGap = new CartUpdateRequest();
+        stale.setVersionNumber(2);
+        v3.setVersionNumber(3);
+        v4.setVersionNumber(4);
+        afterGap.setVersionNumber(6);
+
+        var applicable = validator.selectApplicableRequests(cart, List.of(afterGap, v4, stale, v3));
+        assertEquals(List.of(v3, v4), applicable);
+    }
+
+    @Test
+    void selectApplicableRequests_mustThrowInvalidCartUpdateRequestVersion() {
+        var cart = new Cart("USR_01");
+        cart.setVersionNumber(2);
+
+        var request = new CartUpdateRequest();
+        request.setVersionNumber(4);
+
+        assertThrows(InvalidCartUpdateRequestVersion.class, () -> validator.selectApplicableRequests(cart, List.of(request)));
+    }
+
     @Test
     void validateCart_mustReturnProductUnavailable() {
         var cart = new Cart("USR_01");
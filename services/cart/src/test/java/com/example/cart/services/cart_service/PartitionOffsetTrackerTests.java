@@ -0,0 +1,57 @@
+package com.example.cart.services.cart_service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PartitionOffsetTrackerTests {
+
+    private Acknowledgment ackFor(long offset, List<Long> acknowledged) {
+        return () -> acknowledged.add(offset);
+    }
+
+    @Test
+    void whenCompletedInOrder_thenCommitEachOffset() {
+        var acknowledged = new ArrayList<Long>();
+        var tracker = new PartitionOffsetTracker();
+        tracker.register(0);
+        tracker.register(1);
+
+        assertEquals(0, tracker.complete(0, ackFor(0, acknowledged)));
+        assertEquals(1, tracker.complete(1, ackFor(1, acknowledged)));
+        assertEquals(List.of(0L, 1L), acknowledged);
+    }
+
+    @Test
+    void whenCompletedOutOfOrder_thenCommitOnlyContiguousWatermark() {
+        var acknowledged = new ArrayList<Long>();
+        var tracker = new PartitionOffsetTracker();
+        tracker.register(10);
+        tracker.register(11);
+        tracker.register(12);
+
+        assertEquals(-1, tracker.complete(12, ackFor(12, acknowledged)));
+        assertEquals(-1, tracker.complete(11, ackFor(11, acknowledged)));
+        assertTrue(acknowledged.isEmpty());
+
+        assertEquals(12, tracker.complete(10, ackFor(10, acknowledged)));
+        assertEquals(List.of(12L), acknowledged);
+        assertEquals(0, tracker.inFlightCount());
+    }
+
+    @Test
+    void whenOffsetCompletedTwice_thenIgnoreTheSecondCall() {
+        var acknowledged = new ArrayList<Long>();
+        var tracker = new PartitionOffsetTracker();
+        tracker.register(5);
+
+        tracker.complete(5, ackFor(5, acknowledged));
+        tracker.complete(5, ackFor(5, acknowledged));
+
+        assertEquals(List.of(5L), acknowledged);
+    }
+}
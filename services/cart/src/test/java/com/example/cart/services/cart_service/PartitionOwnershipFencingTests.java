@@ -0,0 +1,130 @@
+package com.example.cart.services.cart_service;
+
+import com.example.cart.TestBase;
+import com.example.cart.repositories.cart_repo.CartRepository;
+import com.example.cart.repositories.cart_repo.exceptions.CartWriteFenced;
+import com.example.cart.services.cart_service.entities.CartUpdateRequest;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerGroupMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Execution(ExecutionMode.SAME_THREAD)
+public class PartitionOwnershipFencingTests extends TestBase {
+
+    private final String groupId = "cart-service";
+
+    @Autowired
+    private CartUpdateRequestHandler handler;
+
+    @Autowired
+    private CartRepository cartRepo;
+
+    @Autowired
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    private PartitionOwnershipFencing buildFencing() {
+        var fencing = new PartitionOwnershipFencing();
+        ReflectionTestUtils.setField(fencing, "ownershipGroupId", groupId);
+        ReflectionTestUtils.setField(fencing, "redisTemplate", redisTemplate);
+        return fencing;
+    }
+
+    private Consumer<?, ?> assignedConsumer(PartitionOwnershipFencing fencing, String group, int generation) {
+        Consumer<?, ?> consumer = mock(Consumer.class);
+        when(consumer.groupMetadata()).thenReturn(new ConsumerGroupMetadata(group, generation, UUID.randomUUID().toString(), Optional.empty()));
+        fencing.onPartitionsAssigned(consumer, List.of(new TopicPartition("cart-update-requests", 0)));
+        return consumer;
+    }
+
+    private CartUpdateRequest buildRequest(String userId, int version) {
+        return new CartUpdateRequest(userId, version, List.of(
+            new CartUpdateRequest.CartUpdateRequestEntry("PRODUCT_003", "Product_3", version, CartUpdateRequest.CartAction.QTY_CHANGE)
+        ), "unknown");
+    }
+
+    @Test
+    void whenNextAssignment_thenTokenIncreases() {
+        var fencing = buildFencing();
+        var first = fencing.fencingToken(assignedConsumer(fencing, groupId, 7)).block();
+        var next = fencing.fencingToken(assignedConsumer(fencing, groupId, 8)).block();
+
+        assertNotNull(first);
+        assertNotNull(next);
+        assertTrue(next > first);
+    }
+
+    @Test
+    void whenGroupRecreated_thenNewOwnerIsNotFenced() {
+        var fencing = buildFencing();
+        var userId = UUID.randomUUID().toString();
+        var previousOwner = assignedConsumer(fencing, groupId, 42);
+
+        handler.handleOwned(List.of(buildRequest(userId, 1)), fencing.fencingToken(previousOwner).block(), null).block();
+
+        // the recreated group restarts its generations
+        var newOwner = assignedConsumer(fencing, groupId, 1);
+        handler.handleOwned(List.of(buildRequest(userId, 2)), fencing.fencingToken(newOwner).block(), null).block();
+
+        var saved = cartRepo.getCartByUserId(userId).block();
+        assertNotNull(saved);
+        assertEquals(2, saved.getVersionNumber());
+    }
+
+    @Test
+    void whenPreviousOwnerWrites_thenFencedWithoutCommit() {
+        var hooks = new ConcurrentHashMap<String, Boolean>();
+        var fencing = buildFencing();
+        var userId = UUID.randomUUID().toString();
+        var previousOwner = assignedConsumer(fencing, groupId, 3);
+        var staleToken = fencing.fencingToken(previousOwner).block();
+
+        // the partition moves to another consumer, which writes the cart first
+        var newOwner = assignedConsumer(fencing, groupId, 4);
+        handler.handleOwned(List.of(buildRequest(userId, 1)), fencing.fencingToken(newOwner).block(), null).block();
+
+        var staleWrite = handler.handleOwned(List.of(buildRequest(userId, 2)), staleToken, (hookName) -> hooks.putIfAbsent(hookName, true));
+
+        assertThrows(CartWriteFenced.class, staleWrite::block);
+        assertFalse(hooks.containsKey("CART_SAVED"));
+        assertFalse(hooks.containsKey("REQUEST_COMMITTED"));
+        assertEquals(1, cartRepo.getCartByUserId(userId).block().getVersionNumber());
+    }
+
+    @Test
+    void whenNotOwnershipGroup_thenNoEpochTaken() {
+        var fencing = buildFencing();
+        var epochBefore = redisTemplate.opsForValue().get(PartitionOwnershipFencing.EPOCH_KEY).block();
+
+        assignedConsumer(fencing, "other-group", 1);
+
+        assertEquals(epochBefore, redisTemplate.opsForValue().get(PartitionOwnershipFencing.EPOCH_KEY).block());
+    }
+
+    @Test
+    void whenOnlyLegacyEpochKey_thenContinueAboveIt() {
+        var fencing = buildFencing();
+        var current = fencing.fencingToken(assignedConsumer(fencing, groupId, 1)).block() >> 24;
+        redisTemplate.opsForValue().set(PartitionOwnershipFencing.LEGACY_EPOCH_KEY, String.valueOf(current)).block();
+        redisTemplate.delete(PartitionOwnershipFencing.EPOCH_KEY).block();
+
+        var next = fencing.fencingToken(assignedConsumer(fencing, groupId, 1)).block() >> 24;
+
+        assertEquals(current + PartitionOwnershipFencing.LEGACY_EPOCH_MARGIN + 1, next);
+        assertEquals(String.valueOf(next), redisTemplate.opsForValue().get(PartitionOwnershipFencing.EPOCH_KEY).block());
+    }
+}
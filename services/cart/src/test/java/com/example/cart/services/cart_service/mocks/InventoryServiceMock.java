@@ -2,6 +2,7 @@ package com.example.cart.services.cart_service.mocks;
 
 import com.example.cart.entities.ProductAvailability;
 import com.example.cart.services.inventory_service.InventoryService;
+import com.example.cart.services.inventory_service.ProductAvailabilityChanges;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Profile;
@@ -28,4 +29,8 @@ public class InventoryServiceMock implements InventoryService {
         ;
         return Flux.fromIterable(matches);
     }
+
+    public Flux<ProductAvailabilityChanges> watchProductAvailabilities(String resumeToken) {
+        return Flux.never();
+    }
 }
@@ -0,0 +1,58 @@
+package com.example.cart.services.cart_service.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SketchesTests {
+
+    @Test
+    void whenKeysAdded_thenCountMinNeverUnderestimates() {
+        var sketch = new CountMinSketch(4, 256);
+        for (var i = 0; i < 1000; i++) {
+            sketch.add("user-" + i, 1);
+        }
+        sketch.add("user-hot", 500);
+
+        assertTrue(sketch.estimate("user-hot") >= 500);
+        assertTrue(sketch.estimate("user-hot") <= 500 + 2 * 1500 / 256);
+        assertTrue(sketch.estimate("user-7") >= 1);
+    }
+
+    @Test
+    void whenManyDistinctKeysAdded_thenHyperLogLogEstimatesWithinError() {
+        var hll = new HyperLogLog(14);
+        for (var i = 0; i < 100_000; i++) {
+            hll.add("user-" + i);
+            hll.add("user-" + i);
+        }
+        var estimate = hll.estimate();
+
+        assertTrue(Math.abs(estimate - 100_000) < 100_000 * 0.03, "estimate: " + estimate);
+    }
+
+    @Test
+    void whenFewDistinctKeysAdded_thenHyperLogLogUsesLinearCounting() {
+        var hll = new HyperLogLog(14);
+        for (var i = 0; i < 10; i++) {
+            hll.add("user-" + i);
+        }
+
+        assertTrue(Math.abs(hll.estimate() - 10) <= 1);
+    }
+
+    @Test
+    void whenCapacityExceeded_thenSpaceSavingKeepsHeavyHitters() {
+        var topK = new SpaceSaving(3);
+        for (var i = 0; i < 100; i++) {
+            topK.add("user-hot", 1, i);
+            topK.add("user-cold-" + i, 1, 1);
+        }
+
+        var top = topK.top();
+        assertEquals(3, top.size());
+        assertEquals("user-hot", top.getFirst().getKey());
+        assertTrue(top.getFirst().getCount() >= 100);
+        assertEquals(99, top.getFirst().getLastValue());
+    }
+}
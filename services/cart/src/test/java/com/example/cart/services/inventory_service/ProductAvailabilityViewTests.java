@@ -0,0 +1,131 @@
+package com.example.cart.services.inventory_service;
+
+import com.example.cart.entities.ProductAvailability;
+import com.example.cart.resilience.DependencyGuard;
+import com.example.cart.resilience.DependencyGuardSettings;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductAvailabilityViewTests {
+
+    private final List<List<String>> inventoryCalls = new ArrayList<>();
+
+    private ProductAvailabilityView view;
+
+    private Runnable duringInventoryCall = () -> {};
+
+    @BeforeEach
+    void setUp() {
+        var inventory = new InventoryService() {
+            @Override
+            public Flux<ProductAvailability> listProductAvailabilities(List<String> productIds) {
+                inventoryCalls.add(productIds);
+                duringInventoryCall.run();
+                return Flux.fromIterable(productIds).map(productId -> availability(productId, 10));
+            }
+
+            @Override
+            public Flux<ProductAvailabilityChanges> watchProductAvailabilities(String resumeToken) {
+                return Flux.never();
+            }
+        };
+        var guardSettings = new DependencyGuardSettings(10, 4, 0.5, Duration.ofSeconds(5), 2, Duration.ofSeconds(1), 0.2, 0, 10);
+        // every availability read from the inventory expires at once
+        view = new ProductAvailabilityView(0L, 100);
+        ReflectionTestUtils.setField(view, "inventoryService", inventory);
+        ReflectionTestUtils.setField(view, "inventoryGuard", new DependencyGuard("inventory", guardSettings, List.of()));
+    }
+
+    private ProductAvailability availability(String productId, int stock) {
+        return new ProductAvailability(productId, "Product", 9.99, stock, true);
+    }
+
+    private int stockOf(String productId) {
+        return view.getProductAvailabilities(List.of(productId)).block().get(productId).getAvailableStock();
+    }
+
+    @Test
+    void whenNotWatching_thenExpiredAvailabilitiesReadFromInventory() {
+        view.put(List.of(availability("P001", 3)));
+
+        assertEquals(10, stockOf("P001"));
+        assertEquals(1, inventoryCalls.size());
+        assertFalse(view.isWatching());
+    }
+
+    @Test
+    void whenWatching_thenChangedAvailabilitiesLive() {
+        view.applyChanges(new ProductAvailabilityChanges("t1", false, List.of(availability("P001", 3))));
+
+        assertTrue(view.isWatching());
+        assertEquals(3, stockOf("P001"));
+        assertEquals(3, stockOf("P001"));
+        assertTrue(inventoryCalls.isEmpty());
+    }
+
+    @Test
+    void whenWatching_thenReadAvailabilitiesLiveUntilChanged() {
+        view.applyChanges(new ProductAvailabilityChanges("t1", false, List.of()));
+
+        assertEquals(10, stockOf("P002"));
+        assertEquals(10, stockOf("P002"));
+        assertEquals(1, inventoryCalls.size());
+
+        view.applyChanges(new ProductAvailabilityChanges("t2", false, List.of(availability("P002", 4))));
+        assertEquals(4, stockOf("P002"));
+    }
+
+    @Test
+    void whenWatching_thenReadAvailabilitiesNeverOverwriteChanges() {
+        view.applyChanges(new ProductAvailabilityChanges("t1", false, List.of(availability("P001", 3))));
+        view.put(List.of(availability("P001", 7)));
+
+        assertEquals(3, stockOf("P001"));
+    }
+
+    @Test
+    void whenWatchInterruptedOrReset_thenAvailabilitiesExpire() {
+        view.applyChanges(new ProductAvailabilityChanges("t1", false, List.of(availability("P001", 3), availability("P002", 3))));
+        view.stopWatching();
+
+        assertFalse(view.isWatching());
+        assertEquals(10, stockOf("P001"));
+
+        view.applyChanges(new ProductAvailabilityChanges("t2", false, List.of(availability("P001", 3))));
+        view.applyChanges(new ProductAvailabilityChanges("t3", true, List.of()));
+        assertEquals(10, stockOf("P001"));
+    }
+
+    @Test
+    void whenWatchStartedDuringRead_thenReadAvailabilitiesExpire() {
+        duringInventoryCall = () -> view.applyChanges(new ProductAvailabilityChanges("t1", false, List.of()));
+
+        assertEquals(10, stockOf("P003"));
+        duringInventoryCall = () -> {};
+        assertEquals(10, stockOf("P003"));
+        assertEquals(2, inventoryCalls.size());
+    }
+
+    @Test
+    void whenWatchResetDuringRead_thenReadAvailabilitiesExpire() {
+        view.applyChanges(new ProductAvailabilityChanges("t1", false, List.of()));
+        duringInventoryCall = () -> view.applyChanges(new ProductAvailabilityChanges("t2", true, List.of()));
+
+        assertEquals(10, stockOf("P003"));
+        duringInventoryCall = () -> {};
+        assertEquals(10, stockOf("P003"));
+        assertEquals(2, inventoryCalls.size());
+
+        // read within the same generation, the availability is live
+        assertEquals(10, stockOf("P003"));
+        assertEquals(2, inventoryCalls.size());
+    }
+}
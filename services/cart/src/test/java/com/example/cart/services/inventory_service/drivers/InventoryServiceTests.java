@@ -0,0 +1,108 @@
+package com.example.cart.services.inventory_service.drivers;
+
+import com.example.cart.services.inventory_service.ProductAvailabilityChanges;
+import com.example.grpc.inventory.stubs.InventoryServiceGrpc;
+import com.example.grpc.inventory.stubs.ListProductAvailabilitiesRequest;
+import com.example.grpc.inventory.stubs.ProductAvailability;
+import com.example.grpc.inventory.stubs.WatchProductAvailabilitiesRequest;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InventoryServiceTests {
+
+    private final AtomicInteger streamCalls = new AtomicInteger();
+
+    private Server server;
+    private ManagedChannel channel;
+    private InventoryService inventoryService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        var name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name).directExecutor()
+            .addService(new InventoryServiceGrpc.InventoryServiceImplBase() {
+                /**
+                 * An inventory deployed before GetProductAvailabilities existed: the unary call answers UNIMPLEMENTED.
+                 */
+                @Override
+                public void listProductAvailabilities(ListProductAvailabilitiesRequest request, StreamObserver<ProductAvailability> responseObserver) {
+                    streamCalls.incrementAndGet();
+                    request.getProductIdsList().forEach(productId -> responseObserver.onNext(availability(productId)));
+                    responseObserver.onCompleted();
+                }
+
+                @Override
+                public void watchProductAvailabilities(WatchProductAvailabilitiesRequest request, StreamObserver<com.example.grpc.inventory.stubs.ProductAvailabilityChanges> responseObserver) {
+                    List.of("t1", "t2", "t3").forEach(resumeToken -> responseObserver.onNext(com.example.grpc.inventory.stubs.ProductAvailabilityChanges.newBuilder()
+                        .setResumeToken(resumeToken)
+                        .addProducts(availability("P001"))
+                        .build()
+                    ));
+                    responseObserver.onCompleted();
+                }
+            })
+            .build()
+            .start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+
+        inventoryService = new InventoryService();
+        ReflectionTestUtils.setField(inventoryService, "inventoryGRPC", InventoryServiceGrpc.newStub(channel));
+        ReflectionTestUtils.setField(inventoryService, "unaryMaxProductIds", 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    private ProductAvailability availability(String productId) {
+        return ProductAvailability.newBuilder()
+            .setProductId(productId)
+            .setAvailableStock(10)
+            .setIsAvailable(true)
+            .build();
+    }
+
+    @Test
+    void whenWatched_thenChangesStreamedAsRequested() {
+        var changes = inventoryService.watchProductAvailabilities("").limitRate(1).collectList().block();
+
+        assertNotNull(changes);
+        assertEquals(List.of("t1", "t2", "t3"), changes.stream().map(ProductAvailabilityChanges::resumeToken).toList());
+    }
+
+    @Test
+    void whenWatchCancelled_thenNoMoreChanges() {
+        var first = inventoryService.watchProductAvailabilities("").next().block();
+
+        assertNotNull(first);
+        assertEquals("t1", first.resumeToken());
+    }
+
+    @Test
+    void whenUnaryCallUnimplemented_thenFallBackToStream() {
+        var availabilities = inventoryService.listProductAvailabilities(List.of("P001", "P002")).collectList().block();
+
+        assertNotNull(availabilities);
+        assertEquals(List.of("P001", "P002"), availabilities.stream().map(com.example.cart.entities.ProductAvailability::getProductId).toList());
+        assertEquals(1, streamCalls.get());
+
+        // the next calls go to the stream right away
+        assertEquals(1, inventoryService.listProductAvailabilities(List.of("P003")).collectList().block().size());
+        assertEquals(2, streamCalls.get());
+        assertEquals(Boolean.FALSE, ReflectionTestUtils.getField(inventoryService, "unarySupported"));
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.inventory.entities;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Getter
+public class Reservation {
+
+    public enum Status { PENDING, CONFIRMED, RELEASED, EXPIRED }
+
+    private final String reservationId;
+
+    /**
+     * Quantities by product id.
+     */
+    private final Map<String, Integer> items;
+
+    private final long expiresAtMs;
+
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<Status> status = new AtomicReference<>(Status.PENDING);
+
+    public Reservation(String reservationId, Map<String, Integer> items, long expiresAtMs) {
+        this(reservationId, items, expiresAtMs, Status.PENDING);
+    }
+
+    public Reservation(String reservationId, Map<String, Integer> items, long expiresAtMs, Status status) {
+        this.reservationId = reservationId;
+        this.items = Map.copyOf(items);
+        this.expiresAtMs = expiresAtMs;
+        this.status.set(status);
+    }
+
+    public Status getStatus() {
+        return status.get();
+    }
+
+    /**
+     * @return false when the reservation is not in the expected status, it was then left unchanged
+     */
+    public boolean transition(Status from, Status to) {
+        return status.compareAndSet(from, to);
+    }
+}
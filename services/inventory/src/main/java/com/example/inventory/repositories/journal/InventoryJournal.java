@@ -0,0 +1,234 @@
+package com.example.inventory.repositories.journal;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the inventory state on local disk: every change is appended to a memory-mapped log ({@link MappedLog}),
+ * and the whole state is snapshotted periodically. Recovery loads the latest snapshot and replays only
+ * the records written after it, then the log segments before the snapshot are deleted.
+ *
+ * Changes run as {@link #mutate} calls, that run concurrently with each other, but never while a snapshot
+ * copies the state: a snapshot then holds exactly the records before its log position.
+ *
+ * When disabled, nothing is written, and mutations run as they are.
+ */
+@Component
+public class InventoryJournal {
+
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d{20})\\.bin");
+
+    private final Logger log = LoggerFactory.getLogger(InventoryJournal.class);
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentSize;
+    private final long snapshotIntervalMs;
+    private final long forceIntervalMs;
+
+    private final ReentrantReadWriteLock barrier = new ReentrantReadWriteLock();
+    private MappedLog mappedLog;
+    private ScheduledExecutorService scheduler;
+    private Timer snapshotTimer;
+
+    public InventoryJournal(
+        @Value("${order-processing-system.repositories.journal.enabled:false}") Boolean enabled,
+        @Value("${order-processing-system.repositories.journal.dir:./data/inventory}") String dir,
+        @Value("${order-processing-system.repositories.journal.segment-size-bytes:67108864}") Integer segmentSize,
+        @Value("${order-processing-system.repositories.journal.snapshot-interval-ms:60000}") Long snapshotIntervalMs,
+        @Value("${order-processing-system.repositories.journal.force-interval-ms:1000}") Long forceIntervalMs
+    ) {
+        this.enabled = enabled;
+        this.dir = Path.of(dir);
+        this.segmentSize = segmentSize;
+        this.snapshotIntervalMs = snapshotIntervalMs;
+        this.forceIntervalMs = forceIntervalMs;
+    }
+
+    @PostConstruct
+    public void registerMeters() {
+        snapshotTimer = Timer.builder("inventory_journal.snapshot").register(registry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean hasSnapshot() {
+        return enabled && Files.isDirectory(dir) && ! snapshots().isEmpty();
+    }
+
+    /**
+     * Restores the state: the latest snapshot, if any, then the records written after it.
+     * Must be called once, before any mutation.
+     *
+     * @return false when there was no snapshot to restore
+     */
+    public boolean recover(Consumer<InventorySnapshot> onSnapshot, Consumer<JournalRecord> onRecord) {
+        if (! enabled) {
+            return false;
+        }
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(String.format("Failed to create the journal directory %s", dir), ex);
+        }
+        var startedAt = System.currentTimeMillis();
+        var snapshots = snapshots();
+        var fromLsn = 0L;
+        if (! snapshots.isEmpty()) {
+            try {
+                var content = SnapshotFile.read(snapshots.getLast());
+                onSnapshot.accept(content.snapshot());
+                fromLsn = content.lsn();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(String.format("Failed to read the snapshot %s", snapshots.getLast()), ex);
+            }
+        }
+        var replayed = new long[1];
+        mappedLog = new MappedLog(dir, segmentSize);
+        var endLsn = mappedLog.recover(fromLsn, payload -> {
+            try {
+                onRecord.accept(JournalRecord.decode(payload));
+                replayed[0]++;
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to read a journal record", ex);
+            }
+        });
+        log.info("Recovered the inventory in {} ms: snapshot at {}, {} records replayed up to {}",
+            System.currentTimeMillis() - startedAt, fromLsn, replayed[0], endLsn);
+        return ! snapshots.isEmpty();
+    }
+
+    /**
+     * Snapshots the state periodically, and forces the log to disk.
+     */
+    public void start(Supplier<InventorySnapshot> capture) {
+        if (! enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "inventory-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                mappedLog.force();
+            } catch (RuntimeException ex) {
+                log.error("Failed to force the journal to disk", ex);
+            }
+        }, forceIntervalMs, forceIntervalMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot(capture);
+            } catch (RuntimeException ex) {
+                log.error("Failed to snapshot the inventory", ex);
+            }
+        }, snapshotIntervalMs, snapshotIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        if (mappedLog != null) {
+            mappedLog.close();
+        }
+    }
+
+    public <T> T mutate(Supplier<T> mutation) {
+        if (! enabled) {
+            return mutation.get();
+        }
+        barrier.readLock().lock();
+        try {
+            return mutation.get();
+        } finally {
+            barrier.readLock().unlock();
+        }
+    }
+
+    /**
+     * Must be called within the {@link #mutate} call of the change.
+     */
+    public void append(JournalRecord record) {
+        if (enabled) {
+            mappedLog.append(record.encode());
+        }
+    }
+
+    /**
+     * Copies the state while no mutation runs, then writes it out, and deletes what it makes obsolete.
+     */
+    public void snapshot(Supplier<InventorySnapshot> capture) {
+        if (! enabled) {
+            return;
+        }
+        var startedAt = System.nanoTime();
+        InventorySnapshot snapshot;
+        long lsn;
+        barrier.writeLock().lock();
+        try {
+            snapshot = capture.get();
+            lsn = mappedLog.position();
+        } finally {
+            barrier.writeLock().unlock();
+        }
+        var path = dir.resolve(String.format("snapshot-%020d.bin", lsn));
+        try {
+            SnapshotFile.write(path, lsn, snapshot);
+            for (var older : snapshots()) {
+                if (! older.equals(path)) {
+                    Files.deleteIfExists(older);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(String.format("Failed to write the snapshot %s", path), ex);
+        }
+        mappedLog.truncateBefore(lsn);
+        if (snapshotTimer != null) {
+            snapshotTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * In the order of their log position.
+     */
+    private ArrayList<Path> snapshots() {
+        var snapshots = new ArrayList<Path>();
+        try (var files = Files.list(dir)) {
+            files.filter(path -> SNAPSHOT_NAME.matcher(path.getFileName().toString()).matches()).forEach(snapshots::add);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(String.format("Failed to list the snapshots in %s", dir), ex);
+        }
+        snapshots.sort(Comparator.comparing(path -> path.getFileName().toString()));
+        return snapshots;
+    }
+}
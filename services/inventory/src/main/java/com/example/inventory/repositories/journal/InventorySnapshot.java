@@ -0,0 +1,11 @@
+package com.example.inventory.repositories.journal;
+
+import com.example.inventory.entities.Reservation;
+import com.example.inventory.repositories.product_repo.ProductCatalog;
+
+import java.util.List;
+
+/**
+ * The whole inventory state at one point in the journal.
+ */
+public record InventorySnapshot(ProductCatalog products, List<Reservation> reservations) {}
@@ -0,0 +1,72 @@
+package com.example.inventory.repositories.journal;
+
+import com.example.inventory.entities.Reservation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A change of the inventory state, as written to the journal. Replaying the records after a snapshot
+ * restores the state: a reservation holds its stock, and confirming, releasing or expiring it closes it.
+ *
+ * @param expiresAtMs set for RESERVE only
+ * @param items quantities by product id, set for RESERVE only
+ */
+public record JournalRecord(Type type, String reservationId, long expiresAtMs, Map<String, Integer> items) {
+
+    public enum Type { RESERVE, CONFIRM, RELEASE, EXPIRE }
+
+    public static JournalRecord reserve(Reservation reservation) {
+        return new JournalRecord(Type.RESERVE, reservation.getReservationId(), reservation.getExpiresAtMs(), reservation.getItems());
+    }
+
+    public static JournalRecord close(Type type, String reservationId) {
+        return new JournalRecord(type, reservationId, 0, Map.of());
+    }
+
+    byte[] encode() {
+        var bytes = new ByteArrayOutputStream(64);
+        try (var output = new DataOutputStream(bytes)) {
+            output.writeByte(type.ordinal());
+            output.writeUTF(reservationId);
+            if (type == Type.RESERVE) {
+                output.writeLong(expiresAtMs);
+                output.writeInt(items.size());
+                for (var item : items.entrySet()) {
+                    output.writeUTF(item.getKey());
+                    output.writeInt(item.getValue());
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    static JournalRecord decode(byte[] bytes) throws IOException {
+        try (var input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            var typeOrdinal = input.readUnsignedByte();
+            if (typeOrdinal >= Type.values().length) {
+                throw new IOException(String.format("Unknown journal record type: %s", typeOrdinal));
+            }
+            var type = Type.values()[typeOrdinal];
+            var reservationId = input.readUTF();
+            if (type != Type.RESERVE) {
+                return close(type, reservationId);
+            }
+            var expiresAtMs = input.readLong();
+            var itemsCount = input.readInt();
+            var items = new LinkedHashMap<String, Integer>();
+            for (var i = 0; i < itemsCount; i++) {
+                items.put(input.readUTF(), input.readInt());
+            }
+            return new JournalRecord(type, reservationId, expiresAtMs, items);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.inventory.repositories.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log in memory-mapped segment files of a fixed size, named after the position (LSN)
+ * of their first byte in the log. Appending is a copy into the mapped memory: the records survive
+ * a crash of the process right away, and a crash of the machine once {@link #force()} has run.
+ *
+ * Record: length (4 bytes), CRC32C of the payload (4 bytes), payload. A zero length ends a segment,
+ * since the files are zero-filled when created, and a record that does not check out (torn write)
+ * ends the log.
+ */
+final class MappedLog implements AutoCloseable {
+
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("wal-(\\d{20})\\.log");
+
+    private record Segment(long startLsn, Path path) {}
+
+    private final Path dir;
+    private final int segmentSize;
+
+    private long segmentStartLsn = -1;
+    private MappedByteBuffer segment;
+
+    MappedLog(Path dir, int segmentSize) {
+        if (segmentSize <= RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException(String.format("Invalid journal segment size: %s", segmentSize));
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Reads the records from the given position to the end of the log, then positions the log
+     * after the last valid record for appending. Segments after a torn record are deleted.
+     *
+     * @return the position of the end of the log
+     */
+    synchronized long recover(long fromLsn, Consumer<byte[]> onRecord) {
+        var segments = segments();
+        var endLsn = fromLsn;
+        var endSegment = -1;
+        for (var i = 0; i < segments.size(); i++) {
+            var current = segments.get(i);
+            var nextStartLsn = i + 1 < segments.size() ? segments.get(i + 1).startLsn() : Long.MAX_VALUE;
+            if (nextStartLsn <= fromLsn) {
+                continue;
+            }
+            if (current.startLsn() > endLsn) {
+                // a gap, the log ends before this segment
+                break;
+            }
+            var buffer = map(current.path());
+            var offset = (int) Math.max(0, endLsn - current.startLsn());
+            var ended = false;
+            while (true) {
+                if (offset + RECORD_HEADER_SIZE > segmentSize) {
+                    break;
+                }
+                var length = buffer.getInt(offset);
+                if (length == 0) {
+                    // end of a full segment, or of the log in the last one
+                    ended = nextStartLsn == Long.MAX_VALUE || nextStartLsn != current.startLsn() + segmentSize;
+                    break;
+                }
+                if (length < 0 || offset + RECORD_HEADER_SIZE + length > segmentSize) {
+                    ended = true;
+                    break;
+                }
+                var payload = new byte[length];
+                buffer.get(offset + RECORD_HEADER_SIZE, payload);
+                if (crc(payload) != buffer.getInt(offset + Integer.BYTES)) {
+                    ended = true;
+                    break;
+                }
+                onRecord.accept(payload);
+                offset += RECORD_HEADER_SIZE + length;
+            }
+            endLsn = current.startLsn() + offset;
+            endSegment = i;
+            if (ended) {
+                break;
+            }
+            endLsn = current.startLsn() + segmentSize;
+        }
+        for (var i = endSegment + 1; i < segments.size(); i++) {
+            if (segments.get(i).startLsn() >= fromLsn) {
+                delete(segments.get(i).path());
+            }
+        }
+        openAt(endLsn);
+        clearFrom(segment.position());
+        return endLsn;
+    }
+
+    /**
+     * @return the position after the record
+     */
+    synchronized long append(byte[] payload) {
+        var recordSize = RECORD_HEADER_SIZE + payload.length;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException(String.format("Journal record too large: %s bytes", payload.length));
+        }
+        if (segment == null) {
+            throw new IllegalStateException("The journal is not recovered");
+        }
+        if (segment.position() + recordSize > segmentSize) {
+            segment.force();
+            openAt(segmentStartLsn + segmentSize);
+        }
+        var offset = segment.position();
+        segment.put(offset + RECORD_HEADER_SIZE, payload);
+        segment.putInt(offset + Integer.BYTES, crc(payload));
+        segment.putInt(offset, payload.length);
+        segment.position(offset + recordSize);
+        return position();
+    }
+
+    synchronized long position() {
+        return segmentStartLsn + segment.position();
+    }
+
+    synchronized void force() {
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Deletes the segments that only hold records before the given position.
+     */
+    synchronized void truncateBefore(long lsn) {
+        var segments = segments();
+        for (var i = 0; i + 1 < segments.size(); i++) {
+            if (segments.get(i + 1).startLsn() <= lsn && segments.get(i).startLsn() != segmentStartLsn) {
+                delete(segments.get(i).path());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        force();
+        segment = null;
+    }
+
+    private void openAt(long lsn) {
+        var startLsn = lsn - Math.floorMod(lsn, segmentSize);
+        var path = dir.resolve(String.format("wal-%020d.log", startLsn));
+        segment = map(path);
+        segment.position((int) (lsn - startLsn));
+        segmentStartLsn = startLsn;
+    }
+
+    /**
+     * Zeroes what follows the end of the log, so that a torn record is never followed by appended records.
+     */
+    private void clearFrom(int offset) {
+        var zeros = new byte[64 * 1024];
+        while (offset < segmentSize) {
+            var length = Math.min(zeros.length, segmentSize - offset);
+            segment.put(offset, zeros, 0, length);
+            offset += length;
+        }
+    }
+
+    private MappedByteBuffer map(Path path) {
+        try (var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(String.format("Failed to map the journal segment %s", path), ex);
+        }
+    }
+
+    private List<Segment> segments() {
+        var segments = new ArrayList<Segment>();
+        try (var files = Files.list(dir)) {
+            files.forEach(path -> {
+                var matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.add(new Segment(Long.parseLong(matcher.group(1)), path));
+                }
+            });
+        } catch (IOException ex) {
+            throw new UncheckedIOException(String.format("Failed to list the journal segments in %s", dir), ex);
+        }
+        segments.sort((a, b) -> Long.compare(a.startLsn(), b.startLsn()));
+        return segments;
+    }
+
+    private void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(String.format("Failed to delete the journal segment %s", path), ex);
+        }
+    }
+
+    private static int crc(byte[] payload) {
+        var crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
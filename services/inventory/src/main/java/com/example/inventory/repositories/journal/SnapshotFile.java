@@ -0,0 +1,127 @@
+package com.example.inventory.repositories.journal;
+
+import com.example.inventory.entities.Reservation;
+import com.example.inventory.repositories.product_repo.ProductCatalog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Snapshot of the inventory state, written to a temporary file then moved in place, so that a snapshot
+ * file is always complete. It ends with the CRC32C of its content.
+ *
+ * Layout: magic, version, journal position (LSN) of the snapshot, the products by column, the reservations.
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x494E5653;
+    private static final int VERSION = 1;
+
+    record Content(long lsn, InventorySnapshot snapshot) {}
+
+    private SnapshotFile() {}
+
+    static void write(Path path, long lsn, InventorySnapshot snapshot) throws IOException {
+        var tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        var crc = new CRC32C();
+        try (var output = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16), crc))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(lsn);
+
+            var products = snapshot.products();
+            output.writeInt(products.size());
+            for (var i = 0; i < products.size(); i++) {
+                output.writeUTF(products.productId(i));
+                output.writeUTF(products.productName(i) == null ? "" : products.productName(i));
+                output.writeDouble(products.price(i));
+                output.writeBoolean(products.isAvailable(i));
+                output.writeInt(products.totalStock(i));
+                output.writeInt(products.reservedStock(i));
+            }
+
+            output.writeInt(snapshot.reservations().size());
+            for (var reservation : snapshot.reservations()) {
+                output.writeUTF(reservation.getReservationId());
+                output.writeByte(reservation.getStatus().ordinal());
+                output.writeLong(reservation.getExpiresAtMs());
+                output.writeInt(reservation.getItems().size());
+                for (var item : reservation.getItems().entrySet()) {
+                    output.writeUTF(item.getKey());
+                    output.writeInt(item.getValue());
+                }
+            }
+            // read before writing it, the checksum does not cover itself
+            output.writeInt((int) crc.getValue());
+        }
+        try (var channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    static Content read(Path path) throws IOException {
+        var crc = new CRC32C();
+        try (var input = new DataInputStream(new CheckedInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16), crc))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException(String.format("Not a snapshot file: %s", path));
+            }
+            var version = input.readInt();
+            if (version != VERSION) {
+                throw new IOException(String.format("Unknown snapshot version %s: %s", version, path));
+            }
+            var lsn = input.readLong();
+
+            var productsCount = input.readInt();
+            var productIds = new String[productsCount];
+            var productNames = new String[productsCount];
+            var prices = new double[productsCount];
+            var availables = new BitSet(productsCount);
+            var totalStocks = new int[productsCount];
+            var reservedStocks = new int[productsCount];
+            for (var i = 0; i < productsCount; i++) {
+                productIds[i] = input.readUTF();
+                productNames[i] = input.readUTF();
+                prices[i] = input.readDouble();
+                availables.set(i, input.readBoolean());
+                totalStocks[i] = input.readInt();
+                reservedStocks[i] = input.readInt();
+            }
+
+            var reservationsCount = input.readInt();
+            var reservations = new ArrayList<Reservation>(reservationsCount);
+            for (var i = 0; i < reservationsCount; i++) {
+                var reservationId = input.readUTF();
+                var status = Reservation.Status.values()[input.readUnsignedByte()];
+                var expiresAtMs = input.readLong();
+                var itemsCount = input.readInt();
+                var items = new HashMap<String, Integer>();
+                for (var j = 0; j < itemsCount; j++) {
+                    items.put(input.readUTF(), input.readInt());
+                }
+                reservations.add(new Reservation(reservationId, items, expiresAtMs, status));
+            }
+
+            var expectedCrc = (int) crc.getValue();
+            if (input.readInt() != expectedCrc) {
+                throw new IOException(String.format("Corrupted snapshot file: %s", path));
+            }
+            var products = new ProductCatalog(productIds, productNames, prices, availables, totalStocks, reservedStocks);
+            return new Content(lsn, new InventorySnapshot(products, reservations));
+        }
+    }
+}
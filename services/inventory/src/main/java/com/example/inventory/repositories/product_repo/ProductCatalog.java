@@ -0,0 +1,58 @@
+package com.example.inventory.repositories.product_repo;
+
+import java.util.BitSet;
+
+/**
+ * Copy of the catalog with its stock counters at one point in time, by column, used to snapshot
+ * and restore the inventory. Products are addressed by their position, from 0 to size - 1.
+ */
+public final class ProductCatalog {
+
+    private final String[] productIds;
+    private final String[] productNames;
+    private final double[] prices;
+    private final BitSet availables;
+    private final int[] totalStocks;
+    private final int[] reservedStocks;
+
+    public ProductCatalog(String[] productIds, String[] productNames, double[] prices, BitSet availables, int[] totalStocks, int[] reservedStocks) {
+        var size = productIds.length;
+        if (productNames.length != size || prices.length != size || totalStocks.length != size || reservedStocks.length != size) {
+            throw new IllegalArgumentException("Product catalog columns must have the same size");
+        }
+        this.productIds = productIds;
+        this.productNames = productNames;
+        this.prices = prices;
+        this.availables = availables;
+        this.totalStocks = totalStocks;
+        this.reservedStocks = reservedStocks;
+    }
+
+    public int size() {
+        return productIds.length;
+    }
+
+    public String productId(int position) {
+        return productIds[position];
+    }
+
+    public String productName(int position) {
+        return productNames[position];
+    }
+
+    public double price(int position) {
+        return prices[position];
+    }
+
+    public boolean isAvailable(int position) {
+        return availables.get(position);
+    }
+
+    public int totalStock(int position) {
+        return totalStocks[position];
+    }
+
+    public int reservedStock(int position) {
+        return reservedStocks[position];
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.inventory.repositories.product_repo;
+
+import com.example.inventory.entities.ProductAvailability;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the catalog loaded at startup from a CSV file, one product per line:
+ * product_id,price,available_stock,is_available,product_name
+ * The name comes last so that it can hold commas. A first line starting with product_id is a header.
+ *
+ * Without a catalog file, the demo products are loaded.
+ */
+@Component
+public class ProductCatalogLoader {
+
+    private static final List<ProductAvailability> demoProducts = List.of(
+        new ProductAvailability("P001", "Laptop", 1200.00, 10, true),
+        new ProductAvailability("P002", "Smartphone", 800.00, 25, true),
+        new ProductAvailability("P003", "Headphones", 150.00, 50, true),
+        new ProductAvailability("P004", "Keyboard", 60.00, 40, true),
+        new ProductAvailability("P005", "Mouse", 30.00, 45, true),
+        new ProductAvailability("P006", "Monitor", 300.00, 20, true),
+        new ProductAvailability("P007", "USB-C Cable", 15.00, 100, true),
+        new ProductAvailability("P008", "External HDD", 90.00, 35, true),
+        new ProductAvailability("P009", "Printer", 200.00, 12, true),
+        new ProductAvailability("P010", "Tablet", 500.00, 18, true)
+    );
+
+    private final String catalogPath;
+
+    public ProductCatalogLoader(@Value("${order-processing-system.repositories.products.catalog-path:}") String catalogPath) {
+        this.catalogPath = catalogPath;
+    }
+
+    public List<ProductAvailability> load() {
+        if (catalogPath == null || catalogPath.isBlank()) {
+            return demoProducts;
+        }
+        var products = new ArrayList<ProductAvailability>();
+        try (var reader = Files.newBufferedReader(Path.of(catalogPath), StandardCharsets.UTF_8)) {
+            String line;
+            var lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && line.startsWith("product_id"))) {
+                    continue;
+                }
+                products.add(parse(line, lineNumber));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(String.format("Failed to read the product catalog: %s", catalogPath), ex);
+        }
+        return products;
+    }
+
+    private ProductAvailability parse(String line, int lineNumber) {
+        var fields = line.split(",", 5);
+        if (fields.length < 5) {
+            throw new IllegalArgumentException(String.format("Invalid product catalog line %s: %s", lineNumber, line));
+        }
+        try {
+            return new ProductAvailability(
+                fields[0].trim(),
+                fields[4].trim(),
+                Double.parseDouble(fields[1].trim()),
+                Integer.parseInt(fields[2].trim()),
+                Boolean.parseBoolean(fields[3].trim())
+            );
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(String.format("Invalid product catalog line %s: %s", lineNumber, line), ex);
+        }
+    }
+}
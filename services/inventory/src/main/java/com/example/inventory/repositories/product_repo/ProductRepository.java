@@ -0,0 +1,61 @@
+package com.example.inventory.repositories.product_repo;
+
+import com.example.inventory.entities.ProductAvailability;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ProductRepository {
+
+    /**
+     * @return null when the product is unknown
+     */
+    ProductAvailability getProduct(String productId);
+
+    /**
+     * Products in the requested order. Unknown products are left out, duplicated ids are returned once.
+     */
+    List<ProductAvailability> getProducts(Collection<String> productIds);
+
+    /**
+     * Holds stock of the product, when at least the quantity is available.
+     * @return false when less than the quantity is available
+     * @throws com.example.inventory.repositories.product_repo.exceptions.ProductNotFound
+     */
+    boolean reserveStock(String productId, int quantity);
+
+    /**
+     * Gives back held stock.
+     * @throws com.example.inventory.repositories.product_repo.exceptions.ProductNotFound
+     */
+    void releaseStock(String productId, int quantity);
+
+    /**
+     * Deducts held stock for good.
+     * @throws com.example.inventory.repositories.product_repo.exceptions.ProductNotFound
+     */
+    void commitStock(String productId, int quantity);
+
+    /**
+     * Adds the deltas to the stock counters without any check, to replay journaled changes.
+     * @throws com.example.inventory.repositories.product_repo.exceptions.ProductNotFound
+     */
+    void adjustStock(String productId, int totalDelta, int reservedDelta);
+
+    /**
+     * Copy of the whole catalog with its stock counters.
+     */
+    ProductCatalog copyCatalog();
+
+    /**
+     * Replaces the whole catalog with a copy made by {@link #copyCatalog()}.
+     */
+    void restoreCatalog(ProductCatalog catalog);
+
+    /**
+     * Replaces the whole catalog, stock counters included. Readers see either the previous catalog or the new one.
+     */
+    void loadAll(Collection<ProductAvailability> products);
+
+    int count();
+}
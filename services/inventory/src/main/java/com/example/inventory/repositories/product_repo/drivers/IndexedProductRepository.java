@@ -0,0 +1,90 @@
+package com.example.inventory.repositories.product_repo.drivers;
+
+import com.example.inventory.entities.ProductAvailability;
+import com.example.inventory.repositories.product_repo.ProductCatalog;
+import com.example.inventory.repositories.product_repo.exceptions.ProductNotFound;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+@Component
+public class IndexedProductRepository implements com.example.inventory.repositories.product_repo.ProductRepository {
+
+    private volatile ProductIndex index = new ProductIndex(List.of());
+
+    @Override
+    public ProductAvailability getProduct(String productId) {
+        var current = index;
+        var ordinal = current.ordinalOf(productId);
+        return ordinal < 0 ? null : current.get(ordinal);
+    }
+
+    @Override
+    public List<ProductAvailability> getProducts(Collection<String> productIds) {
+        var current = index;
+        var products = new ArrayList<ProductAvailability>(productIds.size());
+        var seen = productIds.size() > 1 ? new HashSet<Integer>() : null;
+        for (var productId : productIds) {
+            var ordinal = current.ordinalOf(productId);
+            if (ordinal >= 0 && (seen == null || seen.add(ordinal))) {
+                products.add(current.get(ordinal));
+            }
+        }
+        return products;
+    }
+
+    @Override
+    public boolean reserveStock(String productId, int quantity) {
+        var current = index;
+        return current.reserve(ordinalOf(current, productId), quantity);
+    }
+
+    @Override
+    public void releaseStock(String productId, int quantity) {
+        var current = index;
+        current.release(ordinalOf(current, productId), quantity);
+    }
+
+    @Override
+    public void commitStock(String productId, int quantity) {
+        var current = index;
+        current.commit(ordinalOf(current, productId), quantity);
+    }
+
+    @Override
+    public void adjustStock(String productId, int totalDelta, int reservedDelta) {
+        var current = index;
+        current.adjust(ordinalOf(current, productId), totalDelta, reservedDelta);
+    }
+
+    @Override
+    public ProductCatalog copyCatalog() {
+        return index.copy();
+    }
+
+    @Override
+    public void restoreCatalog(ProductCatalog catalog) {
+        index = new ProductIndex(catalog);
+    }
+
+    @Override
+    public void loadAll(Collection<ProductAvailability> products) {
+        index = new ProductIndex(products);
+    }
+
+    @Override
+    public int count() {
+        return index.size();
+    }
+
+    private int ordinalOf(ProductIndex current, String productId) {
+        var ordinal = current.ordinalOf(productId);
+        if (ordinal < 0) {
+            throw new ProductNotFound(productId);
+        }
+        return ordinal;
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.inventory.repositories.product_repo.drivers;
+
+import com.example.inventory.entities.ProductAvailability;
+import com.example.inventory.repositories.product_repo.ProductCatalog;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Immutable catalog stored by column in primitive arrays, with an open-addressing (linear probing) table
+ * of product ordinals keyed by product id. A lookup costs a hash and usually one or two probes,
+ * whatever the catalog size, and a product takes a few dozen bytes besides its id and name.
+ *
+ * The stock of a product is one long, its total stock in the high 32 bits and its reserved stock in the low ones,
+ * so reservations are checked and counted with a single compare-and-set, without locks.
+ * The available stock is the total stock minus the reserved one.
+ */
+final class ProductIndex {
+
+    private static final int EMPTY = -1;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final int[] slots;
+    private final int mask;
+
+    private final int[] hashes;
+    private final String[] productIds;
+    private final String[] productNames;
+    private final double[] prices;
+    private final AtomicLongArray stocks;
+    private final BitSet availables;
+    private int size;
+
+    /**
+     * When a product id is given more than once, the last product wins.
+     */
+    ProductIndex(Collection<ProductAvailability> products) {
+        this(products.size());
+        var size = 0;
+        for (var product : products) {
+            var productId = product.getProductId();
+            if (productId == null) {
+                throw new IllegalArgumentException("Product id is required");
+            }
+            var ordinal = ordinalFor(productId, size);
+            if (ordinal == size) {
+                size++;
+            }
+            productNames[ordinal] = product.getProductName();
+            prices[ordinal] = product.getPrice() == null ? 0 : product.getPrice();
+            stocks.set(ordinal, stock(product.getAvailableStock() == null ? 0 : Math.max(0, product.getAvailableStock()), 0));
+            availables.set(ordinal, Boolean.TRUE.equals(product.getIsAvailable()));
+        }
+        this.size = size;
+    }
+
+    /**
+     * Restores a copy made by {@link #copy()}, stock counters included.
+     */
+    ProductIndex(ProductCatalog catalog) {
+        this(catalog.size());
+        for (var position = 0; position < catalog.size(); position++) {
+            if (ordinalFor(catalog.productId(position), position) != position) {
+                throw new IllegalArgumentException(String.format("Duplicated product id: %s", catalog.productId(position)));
+            }
+            productNames[position] = catalog.productName(position);
+            prices[position] = catalog.price(position);
+            stocks.set(position, stock(catalog.totalStock(position), catalog.reservedStock(position)));
+            availables.set(position, catalog.isAvailable(position));
+        }
+        this.size = catalog.size();
+    }
+
+    private ProductIndex(int count) {
+        var capacity = tableSizeFor(count);
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(slots, EMPTY);
+
+        this.hashes = new int[count];
+        this.productIds = new String[count];
+        this.productNames = new String[count];
+        this.prices = new double[count];
+        this.stocks = new AtomicLongArray(count);
+        this.availables = new BitSet(count);
+    }
+
+    /**
+     * @return the ordinal of the product, or -1 when unknown
+     */
+    int ordinalOf(String productId) {
+        var hash = hash(productId);
+        var slot = hash & mask;
+        int ordinal;
+        while ((ordinal = slots[slot]) != EMPTY) {
+            if (matches(ordinal, hash, productId)) {
+                return ordinal;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    ProductAvailability get(int ordinal) {
+        return new ProductAvailability(
+            productIds[ordinal],
+            productNames[ordinal],
+            prices[ordinal],
+            availableStock(ordinal),
+            availables.get(ordinal)
+        );
+    }
+
+    int availableStock(int ordinal) {
+        var stock = stocks.get(ordinal);
+        return total(stock) - reserved(stock);
+    }
+
+    /**
+     * @return false when less than the quantity is available
+     */
+    boolean reserve(int ordinal, int quantity) {
+        while (true) {
+            var stock = stocks.get(ordinal);
+            var total = total(stock);
+            var reserved = reserved(stock);
+            if (total - reserved < quantity) {
+                return false;
+            }
+            if (stocks.compareAndSet(ordinal, stock, stock(total, reserved + quantity))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back reserved stock.
+     */
+    void release(int ordinal, int quantity) {
+        stocks.getAndUpdate(ordinal, stock -> stock(total(stock), Math.max(0, reserved(stock) - quantity)));
+    }
+
+    /**
+     * Deducts reserved stock from the total stock.
+     */
+    void commit(int ordinal, int quantity) {
+        stocks.getAndUpdate(ordinal, stock -> {
+            var committed = Math.min(quantity, reserved(stock));
+            return stock(total(stock) - committed, reserved(stock) - committed);
+        });
+    }
+
+    /**
+     * Adds the deltas without any check, to replay journaled changes in any order.
+     */
+    void adjust(int ordinal, int totalDelta, int reservedDelta) {
+        stocks.getAndUpdate(ordinal, stock -> stock(total(stock) + totalDelta, reserved(stock) + reservedDelta));
+    }
+
+    ProductCatalog copy() {
+        var totalStocks = new int[size];
+        var reservedStocks = new int[size];
+        for (var ordinal = 0; ordinal < size; ordinal++) {
+            var stock = stocks.get(ordinal);
+            totalStocks[ordinal] = total(stock);
+            reservedStocks[ordinal] = reserved(stock);
+        }
+        return new ProductCatalog(
+            Arrays.copyOf(productIds, size),
+            Arrays.copyOf(productNames, size),
+            Arrays.copyOf(prices, size),
+            availables.get(0, size),
+            totalStocks,
+            reservedStocks
+        );
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the ordinal of the product, which is given the new ordinal when not indexed yet
+     */
+    private int ordinalFor(String productId, int newOrdinal) {
+        var hash = hash(productId);
+        var slot = hash & mask;
+        while (slots[slot] != EMPTY) {
+            if (matches(slots[slot], hash, productId)) {
+                return slots[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = newOrdinal;
+        hashes[newOrdinal] = hash;
+        productIds[newOrdinal] = productId;
+        return newOrdinal;
+    }
+
+    private boolean matches(int ordinal, int hash, String productId) {
+        return hashes[ordinal] == hash && productIds[ordinal].equals(productId);
+    }
+
+    private static long stock(int total, int reserved) {
+        return ((long) total << 32) | (reserved & 0xFFFFFFFFL);
+    }
+
+    private static int total(long stock) {
+        return (int) (stock >>> 32);
+    }
+
+    private static int reserved(long stock) {
+        return (int) stock;
+    }
+
+    private static int hash(String productId) {
+        var h = productId.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Keeps the table at most half full, so probe sequences stay short.
+     */
+    private static int tableSizeFor(int expected) {
+        var wanted = Math.max(2L, (long) expected * 2);
+        if (wanted > MAX_CAPACITY) {
+            throw new IllegalArgumentException(String.format("Catalog too large: %s products", expected));
+        }
+        return Integer.highestOneBit((int) wanted - 1) << 1;
+    }
+}
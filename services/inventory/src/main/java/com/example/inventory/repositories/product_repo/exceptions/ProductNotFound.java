@@ -0,0 +1,7 @@
+package com.example.inventory.repositories.product_repo.exceptions;
+
+public class ProductNotFound extends RuntimeException {
+    public ProductNotFound(String productId) {
+        super(String.format("Product not found. Product id: %s", productId));
+    }
+}
@@ -1,41 +1,136 @@
 package com.example.inventory.services;
 
+import com.example.grpc.inventory.stubs.ConfirmReservationRequest;
+import com.example.grpc.inventory.stubs.GetProductAvailabilitiesRequest;
+import com.example.grpc.inventory.stubs.GetProductAvailabilitiesResult;
 import com.example.grpc.inventory.stubs.InventoryServiceGrpc;
 import com.example.grpc.inventory.stubs.ListProductAvailabilitiesRequest;
-import com.example.inventory.entities.ProductAvailability;
+import com.example.grpc.inventory.stubs.ProductAvailabilityChanges;
+import com.example.grpc.inventory.stubs.ReleaseReservationRequest;
+import com.example.grpc.inventory.stubs.ReserveStockRequest;
+import com.example.grpc.inventory.stubs.WatchProductAvailabilitiesRequest;
+import com.example.inventory.entities.Reservation;
+import com.example.inventory.repositories.product_repo.ProductRepository;
+import com.example.inventory.repositories.product_repo.exceptions.ProductNotFound;
 import com.example.inventory.services.dto.ProductAvailabilityDTO;
+import com.example.inventory.services.dto.ReservationDTO;
+import com.example.inventory.services.reservations.StockReservationEngine;
+import com.example.inventory.services.reservations.exceptions.InsufficientStock;
+import com.example.inventory.services.reservations.exceptions.ReservationClosed;
+import com.example.inventory.services.reservations.exceptions.ReservationNotFound;
+import com.example.inventory.services.watch.ProductChangeFeed;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.grpc.server.service.GrpcService;
 
-import java.util.List;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 @GrpcService
 public class InventoryGrpcService extends InventoryServiceGrpc.InventoryServiceImplBase {
 
-    private static final List<ProductAvailability> inMemoryProducts = List.of(
-        new ProductAvailability("P001", "Laptop", 1200.00, 10, true),
-        new ProductAvailability("P002", "Smartphone", 800.00, 25, true),
-        new ProductAvailability("P003", "Headphones", 150.00, 50, true),
-        new ProductAvailability("P004", "Keyboard", 60.00, 40, true),
-        new ProductAvailability("P005", "Mouse", 30.00, 45, true),
-        new ProductAvailability("P006", "Monitor", 300.00, 20, true),
-        new ProductAvailability("P007", "USB-C Cable", 15.00, 100, true),
-        new ProductAvailability("P008", "External HDD", 90.00, 35, true),
-        new ProductAvailability("P009", "Printer", 200.00, 12, true),
-        new ProductAvailability("P010", "Tablet", 500.00, 18, true)
-    );
+    @Autowired
+    private ProductRepository productRepository;
 
+    @Autowired
+    private StockReservationEngine reservationEngine;
+
+    @Autowired
+    private ProductChangeFeed changeFeed;
+
+    @Value("${order-processing-system.max-product-ids-per-get:1000}")
+    private Integer maxProductIdsPerGet;
+
+    /**
+     * Sends the products while the client keeps up, and resumes when it is ready again,
+     * so that a large request is never buffered whole in the server.
+     */
     @Override
     public void listProductAvailabilities(
         ListProductAvailabilitiesRequest request,
         StreamObserver<com.example.grpc.inventory.stubs.ProductAvailability> responseObserver
     ) {
-        inMemoryProducts.stream()
-            .filter(p -> request.getProductIdsList().contains(p.getProductId()))
-            .forEach(p -> {
-                responseObserver.onNext(ProductAvailabilityDTO.fromEntity(p));
-            });
+        var observer = (ServerCallStreamObserver<com.example.grpc.inventory.stubs.ProductAvailability>) responseObserver;
+        var productIds = request.getProductIdsList().iterator();
+        var sent = new HashSet<String>();
+        var completed = new AtomicBoolean();
+
+        Runnable drain = () -> {
+            while (observer.isReady() && productIds.hasNext()) {
+                var productId = productIds.next();
+                var product = productRepository.getProduct(productId);
+                if (product != null && sent.add(productId)) {
+                    observer.onNext(ProductAvailabilityDTO.fromEntity(product));
+                }
+            }
+            if (! productIds.hasNext() && ! observer.isCancelled() && completed.compareAndSet(false, true)) {
+                observer.onCompleted();
+            }
+        };
+        // called on the call executor, never concurrently with this method
+        observer.setOnReadyHandler(drain);
+        drain.run();
+    }
+
+    @Override
+    public void getProductAvailabilities(GetProductAvailabilitiesRequest request, StreamObserver<GetProductAvailabilitiesResult> responseObserver) {
+        if (request.getProductIdsCount() > maxProductIdsPerGet) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                .withDescription("At most " + maxProductIdsPerGet + " product ids per request, use ListProductAvailabilities")
+                .asRuntimeException()
+            );
+            return;
+        }
+        var result = GetProductAvailabilitiesResult.newBuilder();
+        productRepository.getProducts(request.getProductIdsList())
+            .forEach(p -> result.addProducts(ProductAvailabilityDTO.fromEntity(p)));
+
+        responseObserver.onNext(result.build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void watchProductAvailabilities(WatchProductAvailabilitiesRequest request, StreamObserver<ProductAvailabilityChanges> responseObserver) {
+        changeFeed.watch(request.getResumeToken(), (ServerCallStreamObserver<ProductAvailabilityChanges>) responseObserver);
+    }
+
+    @Override
+    public void reserveStock(ReserveStockRequest request, StreamObserver<com.example.grpc.inventory.stubs.Reservation> responseObserver) {
+        var items = new LinkedHashMap<String, Integer>();
+        request.getItemsList().forEach(item -> items.merge(item.getProductId(), item.getQuantity(), Integer::sum));
+        respond(responseObserver, () -> reservationEngine.reserve(request.getReservationId(), items, request.getTtlMs()));
+    }
+
+    @Override
+    public void confirmReservation(ConfirmReservationRequest request, StreamObserver<com.example.grpc.inventory.stubs.Reservation> responseObserver) {
+        respond(responseObserver, () -> reservationEngine.confirm(request.getReservationId()));
+    }
+
+    @Override
+    public void releaseReservation(ReleaseReservationRequest request, StreamObserver<com.example.grpc.inventory.stubs.Reservation> responseObserver) {
+        respond(responseObserver, () -> reservationEngine.release(request.getReservationId()));
+    }
 
+    private void respond(StreamObserver<com.example.grpc.inventory.stubs.Reservation> responseObserver, Supplier<Reservation> call) {
+        Reservation reservation;
+        try {
+            reservation = call.get();
+        } catch (IllegalArgumentException ex) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(ex.getMessage()).asRuntimeException());
+            return;
+        } catch (ProductNotFound | ReservationNotFound ex) {
+            responseObserver.onError(Status.NOT_FOUND.withDescription(ex.getMessage()).asRuntimeException());
+            return;
+        } catch (InsufficientStock | ReservationClosed ex) {
+            responseObserver.onError(Status.FAILED_PRECONDITION.withDescription(ex.getMessage()).asRuntimeException());
+            return;
+        }
+        responseObserver.onNext(ReservationDTO.fromEntity(reservation));
         responseObserver.onCompleted();
     }
-}
\ No newline at end of file
+}
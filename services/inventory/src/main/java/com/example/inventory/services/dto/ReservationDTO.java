@@ -0,0 +1,14 @@
+package com.example.inventory.services.dto;
+
+import com.example.grpc.inventory.stubs.ReservationStatus;
+import com.example.inventory.entities.Reservation;
+
+public class ReservationDTO {
+    public static com.example.grpc.inventory.stubs.Reservation fromEntity(Reservation entity) {
+        return com.example.grpc.inventory.stubs.Reservation.newBuilder()
+            .setReservationId(entity.getReservationId())
+            .setStatus(ReservationStatus.valueOf(entity.getStatus().name()))
+            .setExpiresAtMs(entity.getExpiresAtMs())
+            .build();
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.inventory.services.reservations;
+
+import com.example.inventory.entities.Reservation;
+import com.example.inventory.repositories.journal.InventoryJournal;
+import com.example.inventory.repositories.journal.InventorySnapshot;
+import com.example.inventory.repositories.journal.JournalRecord;
+import com.example.inventory.repositories.product_repo.ProductCatalogLoader;
+import com.example.inventory.repositories.product_repo.ProductRepository;
+import com.example.inventory.services.reservations.exceptions.InsufficientStock;
+import com.example.inventory.services.reservations.exceptions.ReservationClosed;
+import com.example.inventory.services.reservations.exceptions.ReservationNotFound;
+import com.example.inventory.services.watch.ProductChangeFeed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Holds stock for pending orders (see docs/backups/Reserve stock.txt): a reservation holds the stock of all its
+ * items or of none, until it is confirmed (the stock is deducted), released, or expires (the stock is returned).
+ *
+ * The stock is counted per product with compare-and-set counters (see {@link ProductRepository#reserveStock}),
+ * so reservations of different products never contend, and a product is never oversold.
+ * Expiries are scheduled on a {@link TimingWheel}.
+ *
+ * Closed reservations are kept until their expiry time, and expired ones for the retention time,
+ * so that retried calls get the same answer.
+ *
+ * Every change is written to the {@link InventoryJournal} before it is answered; the state is recovered
+ * from it at startup, or loaded from the catalog the first time. The changed products are then published
+ * to the {@link ProductChangeFeed}.
+ */
+@Component
+public class StockReservationEngine {
+
+    private final Logger log = LoggerFactory.getLogger(StockReservationEngine.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductCatalogLoader catalogLoader;
+
+    @Autowired
+    private InventoryJournal journal;
+
+    @Autowired
+    private ProductChangeFeed changeFeed;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+
+    private final TimingWheel<Reservation> expiries;
+
+    private final long defaultTtlMs;
+    private final long maxTtlMs;
+    private final long retentionMs;
+
+    private Counter reserved;
+    private Counter insufficientStock;
+    private Counter confirmed;
+    private Counter released;
+    private Counter expired;
+
+    public StockReservationEngine(
+        @Value("${order-processing-system.reservations.default-ttl-ms:900000}") Long defaultTtlMs,
+        @Value("${order-processing-system.reservations.max-ttl-ms:3600000}") Long maxTtlMs,
+        @Value("${order-processing-system.reservations.retention-ms:600000}") Long retentionMs,
+        @Value("${order-processing-system.reservations.expiry-wheel.tick-ms:100}") Long tickMs,
+        @Value("${order-processing-system.reservations.expiry-wheel.buckets:1024}") Integer buckets
+    ) {
+        this.defaultTtlMs = defaultTtlMs;
+        this.maxTtlMs = maxTtlMs;
+        this.retentionMs = retentionMs;
+        this.expiries = new TimingWheel<>(tickMs, buckets, this::expire);
+    }
+
+    @PostConstruct
+    public void start() {
+        reserved = counter("reserved");
+        insufficientStock = counter("insufficient_stock");
+        confirmed = counter("confirmed");
+        released = counter("released");
+        expired = counter("expired");
+        Gauge.builder("stock_reservations.held", reservations, Map::size).register(registry);
+
+        if (! journal.hasSnapshot()) {
+            productRepository.loadAll(catalogLoader.load());
+            log.info("Loaded {} products from the catalog", productRepository.count());
+        }
+        if (! journal.recover(this::restore, this::replay)) {
+            // pins the catalog the journal applies to
+            journal.snapshot(this::capture);
+        }
+        reservations.values().forEach(reservation -> expiries.schedule(reservation, reservation.getExpiresAtMs()));
+        journal.start(this::capture);
+        expiries.start("reservation-expiry");
+    }
+
+    @PreDestroy
+    public void stop() {
+        expiries.stop();
+    }
+
+    /**
+     * A retried reservation (same id) returns the existing one as it is.
+     *
+     * @param items quantities by product id
+     * @param ttlMs 0 for the default ttl, capped at the max ttl
+     * @throws InsufficientStock nothing is then held
+     * @throws com.example.inventory.repositories.product_repo.exceptions.ProductNotFound nothing is then held
+     */
+    public Reservation reserve(String reservationId, Map<String, Integer> items, long ttlMs) {
+        if (reservationId == null || reservationId.isBlank()) {
+            throw new IllegalArgumentException("Reservation id is required");
+        }
+        if (items.isEmpty() || items.values().stream().anyMatch(quantity -> quantity == null || quantity <= 0)) {
+            throw new IllegalArgumentException("Reservation items must have positive quantities");
+        }
+        var existing = reservations.get(reservationId);
+        if (existing != null) {
+            return existing;
+        }
+        var result = journal.mutate(() -> {
+            var held = new ArrayList<Map.Entry<String, Integer>>(items.size());
+            try {
+                for (var item : items.entrySet()) {
+                    if (! productRepository.reserveStock(item.getKey(), item.getValue())) {
+                        insufficientStock.increment();
+                        throw new InsufficientStock(item.getKey(), item.getValue());
+                    }
+                    held.add(item);
+                }
+            } catch (RuntimeException ex) {
+                held.forEach(item -> productRepository.releaseStock(item.getKey(), item.getValue()));
+                throw ex;
+            }
+
+            var ttl = ttlMs <= 0 ? defaultTtlMs : Math.min(ttlMs, maxTtlMs);
+            var reservation = new Reservation(reservationId, items, System.currentTimeMillis() + ttl);
+            // closing the reservation waits for its record to be written first
+            synchronized (reservation) {
+                var concurrent = reservations.putIfAbsent(reservationId, reservation);
+                if (concurrent != null) {
+                    // a concurrent retry won
+                    held.forEach(item -> productRepository.releaseStock(item.getKey(), item.getValue()));
+                    return concurrent;
+                }
+                journal.append(JournalRecord.reserve(reservation));
+            }
+            expiries.schedule(reservation, reservation.getExpiresAtMs());
+            reserved.increment();
+            return reservation;
+        });
+        result.getItems().keySet().forEach(changeFeed::publish);
+        return result;
+    }
+
+    /**
+     * @throws ReservationNotFound
+     * @throws ReservationClosed when released or expired
+     */
+    public Reservation confirm(String reservationId) {
+        var reservation = getReservation(reservationId);
+        if (close(reservation, Reservation.Status.CONFIRMED, JournalRecord.Type.CONFIRM, productRepository::commitStock)) {
+            confirmed.increment();
+            return reservation;
+        }
+        if (reservation.getStatus() == Reservation.Status.CONFIRMED) {
+            return reservation;
+        }
+        throw new ReservationClosed(reservationId, reservation.getStatus());
+    }
+
+    /**
+     * Releasing an expired reservation does nothing: its stock was already returned.
+     *
+     * @throws ReservationNotFound
+     * @throws ReservationClosed when confirmed
+     */
+    public Reservation release(String reservationId) {
+        var reservation = getReservation(reservationId);
+        if (close(reservation, Reservation.Status.RELEASED, JournalRecord.Type.RELEASE, productRepository::releaseStock)) {
+            released.increment();
+            return reservation;
+        }
+        if (reservation.getStatus() == Reservation.Status.CONFIRMED) {
+            throw new ReservationClosed(reservationId, reservation.getStatus());
+        }
+        return reservation;
+    }
+
+    public Reservation getReservation(String reservationId) {
+        var reservation = reservations.get(reservationId);
+        if (reservation == null) {
+            throw new ReservationNotFound(reservationId);
+        }
+        return reservation;
+    }
+
+    private void expire(Reservation reservation) {
+        if (close(reservation, Reservation.Status.EXPIRED, JournalRecord.Type.EXPIRE, productRepository::releaseStock)) {
+            expired.increment();
+            expiries.schedule(reservation, System.currentTimeMillis() + retentionMs);
+            return;
+        }
+        reservations.remove(reservation.getReservationId(), reservation);
+    }
+
+    /**
+     * @return false when the reservation was not pending
+     */
+    private boolean close(Reservation reservation, Reservation.Status status, JournalRecord.Type recordType, BiConsumer<String, Integer> applyItem) {
+        var closed = journal.mutate(() -> {
+            synchronized (reservation) {
+                if (! reservation.transition(Reservation.Status.PENDING, status)) {
+                    return false;
+                }
+                reservation.getItems().forEach(applyItem);
+                journal.append(JournalRecord.close(recordType, reservation.getReservationId()));
+                return true;
+            }
+        });
+        if (closed) {
+            reservation.getItems().keySet().forEach(changeFeed::publish);
+        }
+        return closed;
+    }
+
+    /**
+     * Runs while no change does, see {@link InventoryJournal#snapshot}.
+     */
+    private InventorySnapshot capture() {
+        var copies = new ArrayList<Reservation>(reservations.size());
+        reservations.values().forEach(reservation -> copies.add(new Reservation(
+            reservation.getReservationId(), reservation.getItems(), reservation.getExpiresAtMs(), reservation.getStatus()
+        )));
+        return new InventorySnapshot(productRepository.copyCatalog(), copies);
+    }
+
+    private void restore(InventorySnapshot snapshot) {
+        productRepository.restoreCatalog(snapshot.products());
+        snapshot.reservations().forEach(reservation -> reservations.put(reservation.getReservationId(), reservation));
+    }
+
+    /**
+     * Applies the stock changes without checks: the records are not written in the order of the changes,
+     * but the stock counters end the same whatever the order.
+     */
+    private void replay(JournalRecord record) {
+        if (record.type() == JournalRecord.Type.RESERVE) {
+            record.items().forEach((productId, quantity) -> productRepository.adjustStock(productId, 0, quantity));
+            reservations.put(record.reservationId(), new Reservation(record.reservationId(), record.items(), record.expiresAtMs()));
+            return;
+        }
+        var reservation = reservations.get(record.reservationId());
+        if (reservation == null || ! reservation.transition(Reservation.Status.PENDING, switch (record.type()) {
+            case CONFIRM -> Reservation.Status.CONFIRMED;
+            case RELEASE -> Reservation.Status.RELEASED;
+            default -> Reservation.Status.EXPIRED;
+        })) {
+            log.warn("Skipped the journal record {} of reservation {}: not pending", record.type(), record.reservationId());
+            return;
+        }
+        var totalSign = record.type() == JournalRecord.Type.CONFIRM ? -1 : 0;
+        reservation.getItems().forEach((productId, quantity) -> productRepository.adjustStock(productId, totalSign * quantity, -quantity));
+    }
+
+    private Counter counter(String result) {
+        return Counter.builder("stock_reservations").tag("result", result).register(registry);
+    }
+}
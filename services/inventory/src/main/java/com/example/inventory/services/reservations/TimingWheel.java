@@ -0,0 +1,102 @@
+package com.example.inventory.services.reservations;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel: an item is scheduled in the bucket of its deadline tick, and each tick only visits
+ * its own bucket, so scheduling costs O(1) and expiring does not scan the pending items.
+ * Items due in a later revolution of the wheel stay in their bucket until then.
+ *
+ * There is no cancellation: the expiry callback checks whether the item still has to expire.
+ * Items expire up to one tick late, or one revolution late in the rare case of an item scheduled
+ * in the bucket being visited.
+ */
+public class TimingWheel<T> {
+
+    private record Timeout<T>(T item, long deadlineMs) {}
+
+    private final Logger log = LoggerFactory.getLogger(TimingWheel.class);
+
+    private final long tickMs;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Timeout<T>>[] buckets;
+    private final Consumer<T> onExpire;
+
+    private volatile long currentTick;
+    private ScheduledExecutorService ticker;
+
+    /**
+     * @param bucketsCount rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMs, int bucketsCount, Consumer<T> onExpire) {
+        if (tickMs <= 0 || bucketsCount <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid timing wheel: tick %s ms, %s buckets", tickMs, bucketsCount));
+        }
+        var size = Integer.highestOneBit(Math.max(1, bucketsCount - 1)) << 1;
+        this.tickMs = tickMs;
+        this.mask = size - 1;
+        this.buckets = new ConcurrentLinkedQueue[size];
+        for (var i = 0; i < size; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.onExpire = onExpire;
+        this.currentTick = System.currentTimeMillis() / tickMs;
+    }
+
+    public synchronized void start(String threadName) {
+        if (ticker != null) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> advanceTo(System.currentTimeMillis()), tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    public void schedule(T item, long deadlineMs) {
+        var tick = Math.max(deadlineMs / tickMs, currentTick + 1);
+        buckets[(int) (tick & mask)].add(new Timeout<>(item, deadlineMs));
+    }
+
+    /**
+     * Expires the items due up to the given time. Called by the ticker, or directly when it is not started.
+     */
+    void advanceTo(long nowMs) {
+        var targetTick = nowMs / tickMs;
+        // a bucket holds every revolution, so a late ticker never visits more than the whole wheel
+        var fromTick = Math.max(currentTick + 1, targetTick - mask);
+        for (var tick = fromTick; tick <= targetTick; tick++) {
+            var iterator = buckets[(int) (tick & mask)].iterator();
+            while (iterator.hasNext()) {
+                var timeout = iterator.next();
+                if (timeout.deadlineMs() > nowMs) {
+                    continue;
+                }
+                iterator.remove();
+                try {
+                    onExpire.accept(timeout.item());
+                } catch (RuntimeException ex) {
+                    log.error("Failed to expire {}", timeout.item(), ex);
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, targetTick);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.inventory.services.reservations.exceptions;
+
+public class InsufficientStock extends RuntimeException {
+    public InsufficientStock(String productId, int quantity) {
+        super(String.format("Insufficient stock to reserve. Product id: %s, quantity: %s", productId, quantity));
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.inventory.services.reservations.exceptions;
+
+import com.example.inventory.entities.Reservation;
+
+public class ReservationClosed extends RuntimeException {
+    public ReservationClosed(String reservationId, Reservation.Status status) {
+        super(String.format("Reservation already closed. Reservation id: %s, status: %s", reservationId, status));
+    }
+}
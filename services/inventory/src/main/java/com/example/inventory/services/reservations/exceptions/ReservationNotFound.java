@@ -0,0 +1,7 @@
+package com.example.inventory.services.reservations.exceptions;
+
+public class ReservationNotFound extends RuntimeException {
+    public ReservationNotFound(String reservationId) {
+        super(String.format("Reservation not found. Reservation id: %s", reservationId));
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.inventory.services.watch;
+
+import com.example.grpc.inventory.stubs.ProductAvailabilityChanges;
+import com.example.inventory.repositories.product_repo.ProductRepository;
+import com.example.inventory.services.dto.ProductAvailabilityDTO;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pushes the products whose stock changed to the watchers of WatchProductAvailabilities.
+ *
+ * Changes are numbered and kept in a ring of the latest ones. Every batch interval, each watcher is sent
+ * the current availability of the products changed since its last batch, each product once. A watcher
+ * that is not ready (slow client) is skipped, and gets the changes coalesced in a later batch.
+ *
+ * The resume token is the number of the last change sent, prefixed by the epoch of this process.
+ * A watcher resuming from a change no longer in the ring, or from another epoch, is sent a reset.
+ */
+@Component
+public class ProductChangeFeed {
+
+    private record Change(long sequence, String productId) {}
+
+    /**
+     * @param sequence the number of the last change included
+     */
+    record Changes(boolean reset, Set<String> productIds, long sequence) {}
+
+    private static final class Watcher {
+        private final ServerCallStreamObserver<ProductAvailabilityChanges> observer;
+        private long sequence;
+
+        private Watcher(ServerCallStreamObserver<ProductAvailabilityChanges> observer, long sequence) {
+            this.observer = observer;
+            this.sequence = sequence;
+        }
+    }
+
+    private final Logger log = LoggerFactory.getLogger(ProductChangeFeed.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicReferenceArray<Change> changes;
+    private final int mask;
+    private final int maxProductsPerBatch;
+    private final long batchIntervalMs;
+
+    private final Set<Watcher> watchers = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService dispatcher;
+
+    public ProductChangeFeed(
+        @Value("${order-processing-system.watch.retained-changes:1048576}") Integer retainedChanges,
+        @Value("${order-processing-system.watch.max-products-per-batch:1000}") Integer maxProductsPerBatch,
+        @Value("${order-processing-system.watch.batch-interval-ms:50}") Long batchIntervalMs
+    ) {
+        var capacity = Integer.highestOneBit(Math.max(2, retainedChanges) - 1) << 1;
+        this.changes = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.maxProductsPerBatch = maxProductsPerBatch;
+        this.batchIntervalMs = batchIntervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        Gauge.builder("product_watchers", watchers, Set::size).register(registry);
+        dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "product-change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher.scheduleWithFixedDelay(this::dispatch, batchIntervalMs, batchIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (dispatcher != null) {
+            dispatcher.shutdownNow();
+        }
+        watchers.forEach(watcher -> watcher.observer.onCompleted());
+        watchers.clear();
+    }
+
+    public void publish(String productId) {
+        var next = sequence.incrementAndGet();
+        changes.set((int) (next & mask), new Change(next, productId));
+    }
+
+    public void watch(String resumeToken, ServerCallStreamObserver<ProductAvailabilityChanges> observer) {
+        var resumed = resumeToken == null || resumeToken.isEmpty() ? sequence.get() : parse(resumeToken);
+        var watcher = new Watcher(observer, resumed < 0 ? sequence.get() : resumed);
+        observer.setOnCancelHandler(() -> watchers.remove(watcher));
+        synchronized (watcher) {
+            if (resumed < 0) {
+                send(watcher, new Changes(true, Set.of(), watcher.sequence));
+            } else {
+                send(watcher, changesAfter(watcher.sequence));
+            }
+        }
+        watchers.add(watcher);
+    }
+
+    /**
+     * The products changed after the given change, at most the max products per batch.
+     */
+    Changes changesAfter(long after) {
+        var latest = sequence.get();
+        if (after > latest || latest - after > mask + 1) {
+            return new Changes(true, Set.of(), latest);
+        }
+        var productIds = new LinkedHashSet<String>();
+        var current = after;
+        while (current < latest && productIds.size() < maxProductsPerBatch) {
+            var change = changes.get((int) ((current + 1) & mask));
+            if (change == null || change.sequence() <= current) {
+                // still being published
+                break;
+            }
+            if (change.sequence() > current + 1) {
+                // overwritten by a later revolution of the ring
+                return new Changes(true, Set.of(), latest);
+            }
+            productIds.add(change.productId());
+            current++;
+        }
+        return new Changes(false, productIds, current);
+    }
+
+    String token(long sequence) {
+        return epoch + ":" + sequence;
+    }
+
+    /**
+     * @return -1 when the token is not of this epoch
+     */
+    long parse(String token) {
+        var separator = token.indexOf(':');
+        if (separator < 0 || ! token.substring(0, separator).equals(epoch)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(token.substring(separator + 1));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private void dispatch() {
+        for (var watcher : watchers) {
+            try {
+                if (watcher.observer.isCancelled()) {
+                    watchers.remove(watcher);
+                    continue;
+                }
+                synchronized (watcher) {
+                    if (! watcher.observer.isReady() || watcher.sequence == sequence.get()) {
+                        continue;
+                    }
+                    var batch = changesAfter(watcher.sequence);
+                    if (batch.reset() || ! batch.productIds().isEmpty()) {
+                        send(watcher, batch);
+                    }
+                }
+            } catch (RuntimeException ex) {
+                log.warn("Failed to send product changes, the watcher is dropped: {}", ex.getMessage());
+                watchers.remove(watcher);
+            }
+        }
+    }
+
+    private void send(Watcher watcher, Changes batch) {
+        var message = ProductAvailabilityChanges.newBuilder()
+            .setResumeToken(token(batch.sequence()))
+            .setReset(batch.reset());
+        productRepository.getProducts(batch.productIds())
+            .forEach(product -> message.addProducts(ProductAvailabilityDTO.fromEntity(product)));
+        watcher.observer.onNext(message.build());
+        watcher.sequence = batch.sequence();
+    }
+}
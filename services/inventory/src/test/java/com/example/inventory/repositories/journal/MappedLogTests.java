@@ -0,0 +1,106 @@
+package com.example.inventory.repositories.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedLogTests {
+
+    private static final int SEGMENT_SIZE = 256;
+
+    @TempDir
+    private Path dir;
+
+    private List<String> recover(long fromLsn) {
+        var records = new ArrayList<String>();
+        try (var log = new MappedLog(dir, SEGMENT_SIZE)) {
+            log.recover(fromLsn, payload -> records.add(new String(payload, StandardCharsets.UTF_8)));
+        }
+        return records;
+    }
+
+    private List<Long> append(List<String> records) {
+        var positions = new ArrayList<Long>();
+        try (var log = new MappedLog(dir, SEGMENT_SIZE)) {
+            log.recover(0, payload -> {});
+            records.forEach(record -> positions.add(log.append(record.getBytes(StandardCharsets.UTF_8))));
+        }
+        return positions;
+    }
+
+    private List<String> records(int count) {
+        var records = new ArrayList<String>();
+        for (var i = 0; i < count; i++) {
+            records.add("record-" + i);
+        }
+        return records;
+    }
+
+    @Test
+    void afterAppendAcrossSegments_thenRecoverEveryRecord() throws IOException {
+        var records = records(100);
+        append(records);
+
+        try (var files = Files.list(dir)) {
+            assertTrue(files.count() > 1);
+        }
+        assertEquals(records, recover(0));
+    }
+
+    @Test
+    void whenRecoverFromPosition_thenReplayTheTailOnly() {
+        var records = records(100);
+        var positions = append(records);
+
+        assertEquals(records.subList(60, 100), recover(positions.get(59)));
+    }
+
+    @Test
+    void afterRecover_thenAppendAfterTheLastRecord() {
+        append(records(3));
+        try (var log = new MappedLog(dir, SEGMENT_SIZE)) {
+            log.recover(0, payload -> {});
+            log.append("record-3".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertEquals(records(4), recover(0));
+    }
+
+    @Test
+    void whenRecordTorn_thenLogEndsBeforeIt() throws IOException {
+        var positions = append(records(5));
+        var segment = dir.resolve(String.format("wal-%020d.log", 0));
+        try (var channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // corrupts the last byte of the 4th record
+            channel.write(ByteBuffer.wrap(new byte[] {0x7F}), positions.get(3) - 1);
+        }
+
+        assertEquals(records(3), recover(0));
+        append(List.of("record-3"));
+        assertEquals(records(4), recover(0));
+    }
+
+    @Test
+    void afterTruncate_thenKeepSegmentsAfterThePosition() {
+        var records = records(100);
+        var positions = append(records);
+        try (var log = new MappedLog(dir, SEGMENT_SIZE)) {
+            log.recover(0, payload -> {});
+            log.truncateBefore(positions.get(79));
+        }
+
+        assertFalse(Files.exists(dir.resolve(String.format("wal-%020d.log", 0))));
+        assertEquals(records.subList(80, 100), recover(positions.get(79)));
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.inventory.repositories.product_repo.drivers;
+
+import com.example.inventory.entities.ProductAvailability;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexedProductRepositoryTests {
+
+    private IndexedProductRepository repositoryOf(List<ProductAvailability> products) {
+        var repository = new IndexedProductRepository();
+        repository.loadAll(products);
+        return repository;
+    }
+
+    private List<ProductAvailability> catalog(int size) {
+        var products = new ArrayList<ProductAvailability>(size);
+        for (var i = 0; i < size; i++) {
+            products.add(new ProductAvailability(String.format("SKU_%07d", i), "Product " + i, i * 0.5, i % 100, i % 7 != 0));
+        }
+        return products;
+    }
+
+    @Test
+    void whenGetProducts_thenReturnRequestedOrderWithoutUnknownAndDuplicates() {
+        var repository = repositoryOf(catalog(10));
+
+        var products = repository.getProducts(List.of("SKU_0000007", "UNKNOWN", "SKU_0000002", "SKU_0000007"));
+
+        assertEquals(List.of("SKU_0000007", "SKU_0000002"), products.stream().map(ProductAvailability::getProductId).toList());
+        assertEquals(catalog(10).get(7), products.getFirst());
+    }
+
+    @Test
+    void whenLargeCatalog_thenEveryProductFound() {
+        var catalog = catalog(1_000_000);
+        var repository = repositoryOf(catalog);
+
+        assertEquals(catalog.size(), repository.count());
+        for (var product : catalog) {
+            assertEquals(product, repository.getProduct(product.getProductId()));
+        }
+        assertNull(repository.getProduct("SKU_9999999"));
+    }
+
+    @Test
+    void whenProductIdRepeated_thenLastProductWins() {
+        var repository = repositoryOf(List.of(
+            new ProductAvailability("P001", "Laptop", 1200.00, 10, true),
+            new ProductAvailability("P001", "Laptop", 1100.00, 0, false)
+        ));
+
+        assertEquals(1, repository.count());
+        assertEquals(new ProductAvailability("P001", "Laptop", 1100.00, 0, false), repository.getProduct("P001"));
+    }
+
+    @Test
+    void whenCatalogReloaded_thenReplaceProducts() {
+        var repository = repositoryOf(catalog(10));
+        repository.loadAll(List.of(new ProductAvailability("P001", "Laptop", 1200.00, 10, true)));
+
+        assertNull(repository.getProduct("SKU_0000001"));
+        assertNotNull(repository.getProduct("P001"));
+    }
+
+    @Test
+    void whenCatalogEmpty_thenNothingFound() {
+        var repository = repositoryOf(List.of());
+
+        assertNull(repository.getProduct("P001"));
+        assertTrue(repository.getProducts(List.of("P001")).isEmpty());
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.inventory.services.reservations;
+
+import com.example.inventory.entities.ProductAvailability;
+import com.example.inventory.entities.Reservation;
+import com.example.inventory.repositories.journal.InventoryJournal;
+import com.example.inventory.repositories.product_repo.ProductCatalogLoader;
+import com.example.inventory.repositories.product_repo.drivers.IndexedProductRepository;
+import com.example.inventory.repositories.product_repo.exceptions.ProductNotFound;
+import com.example.inventory.services.reservations.exceptions.InsufficientStock;
+import com.example.inventory.services.reservations.exceptions.ReservationClosed;
+import com.example.inventory.services.watch.ProductChangeFeed;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StockReservationEngineTests {
+
+    private static final List<ProductAvailability> catalog = List.of(
+        new ProductAvailability("P001", "Laptop", 1200.00, 10, true),
+        new ProductAvailability("P002", "Smartphone", 800.00, 100, true)
+    );
+
+    @TempDir
+    private Path dataDir;
+
+    private IndexedProductRepository productRepository;
+    private InventoryJournal journal;
+    private StockReservationEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        start(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stop();
+    }
+
+    private void start(boolean journalEnabled) {
+        var registry = new SimpleMeterRegistry();
+        productRepository = new IndexedProductRepository();
+        journal = new InventoryJournal(journalEnabled, dataDir.toString(), 4096, 60_000L, 60_000L);
+        ReflectionTestUtils.setField(journal, "registry", registry);
+        engine = new StockReservationEngine(60_000L, 60_000L, 60_000L, 10L, 64);
+        ReflectionTestUtils.setField(engine, "productRepository", productRepository);
+        ReflectionTestUtils.setField(engine, "catalogLoader", new ProductCatalogLoader("") {
+            @Override
+            public List<ProductAvailability> load() {
+                return catalog;
+            }
+        });
+        ReflectionTestUtils.setField(engine, "journal", journal);
+        ReflectionTestUtils.setField(engine, "changeFeed", new ProductChangeFeed(1024, 1000, 50L));
+        ReflectionTestUtils.setField(engine, "registry", registry);
+        engine.start();
+    }
+
+    private void stop() {
+        engine.stop();
+        journal.stop();
+    }
+
+    private int availableStock(String productId) {
+        return productRepository.getProduct(productId).getAvailableStock();
+    }
+
+    @Test
+    void whenReserve_thenHoldStockUntilConfirmed() {
+        var reservation = engine.reserve("ORDER-1", Map.of("P001", 3, "P002", 5), 0);
+
+        assertEquals(Reservation.Status.PENDING, reservation.getStatus());
+        assertEquals(7, availableStock("P001"));
+        assertEquals(95, availableStock("P002"));
+
+        engine.confirm("ORDER-1");
+        assertEquals(Reservation.Status.CONFIRMED, reservation.getStatus());
+        assertEquals(7, availableStock("P001"));
+        assertEquals(95, availableStock("P002"));
+    }
+
+    @Test
+    void whenRelease_thenReturnStock() {
+        engine.reserve("ORDER-1", Map.of("P001", 3), 0);
+        engine.release("ORDER-1");
+
+        assertEquals(10, availableStock("P001"));
+        assertThrows(ReservationClosed.class, () -> engine.confirm("ORDER-1"));
+    }
+
+    @Test
+    void whenOneItemLacksStock_thenHoldNothing() {
+        assertThrows(InsufficientStock.class, () -> engine.reserve("ORDER-1", Map.of("P002", 5, "P001", 11), 0));
+        assertThrows(ProductNotFound.class, () -> engine.reserve("ORDER-2", Map.of("P002", 5, "P404", 1), 0));
+
+        assertEquals(10, availableStock("P001"));
+        assertEquals(100, availableStock("P002"));
+    }
+
+    @Test
+    void whenReserveRetried_thenHoldStockOnce() {
+        var reservation = engine.reserve("ORDER-1", Map.of("P001", 3), 0);
+
+        assertSame(reservation, engine.reserve("ORDER-1", Map.of("P001", 3), 0));
+        assertEquals(7, availableStock("P001"));
+    }
+
+    @Test
+    void whenReservationExpires_thenReturnStock() throws InterruptedException {
+        var reservation = engine.reserve("ORDER-1", Map.of("P001", 3), 50);
+
+        for (var i = 0; i < 100 && reservation.getStatus() == Reservation.Status.PENDING; i++) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(Reservation.Status.EXPIRED, reservation.getStatus());
+        assertEquals(10, availableStock("P001"));
+        assertThrows(ReservationClosed.class, () -> engine.confirm("ORDER-1"));
+        assertSame(reservation, engine.release("ORDER-1"));
+    }
+
+    @Test
+    void whenManyConcurrentReservations_thenNeverOversell() throws Exception {
+        var succeeded = new AtomicInteger();
+        var calls = new ArrayList<Callable<Void>>();
+        for (var i = 0; i < 1000; i++) {
+            calls.add(() -> {
+                try {
+                    engine.reserve(UUID.randomUUID().toString(), Map.of("P002", 1), 0);
+                    succeeded.incrementAndGet();
+                } catch (InsufficientStock ignored) {
+                }
+                return null;
+            });
+        }
+        try (var executor = Executors.newFixedThreadPool(16)) {
+            for (var future : executor.invokeAll(calls)) {
+                future.get();
+            }
+        }
+
+        assertEquals(100, succeeded.get());
+        assertEquals(0, availableStock("P002"));
+    }
+
+    @Test
+    void afterRestart_thenRecoverStockAndReservations() {
+        stop();
+        start(true);
+        engine.reserve("ORDER-1", Map.of("P001", 3), 0);
+        engine.reserve("ORDER-2", Map.of("P001", 2, "P002", 5), 0);
+        journal.snapshot(() -> ReflectionTestUtils.invokeMethod(engine, "capture"));
+        engine.confirm("ORDER-1");
+        engine.reserve("ORDER-3", Map.of("P002", 10), 0);
+        engine.release("ORDER-2");
+        // several log segments after the snapshot
+        for (var i = 0; i < 200; i++) {
+            engine.release(engine.reserve("ORDER-R" + i, Map.of("P002", 1), 0).getReservationId());
+        }
+
+        stop();
+        start(true);
+
+        assertEquals(7, availableStock("P001"));
+        assertEquals(90, availableStock("P002"));
+        assertEquals(Reservation.Status.CONFIRMED, engine.getReservation("ORDER-1").getStatus());
+        assertEquals(Reservation.Status.RELEASED, engine.getReservation("ORDER-2").getStatus());
+        engine.confirm("ORDER-3");
+        assertEquals(90, availableStock("P002"));
+    }
+}
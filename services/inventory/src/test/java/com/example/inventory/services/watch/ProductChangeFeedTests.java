@@ -0,0 +1,62 @@
+package com.example.inventory.services.watch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductChangeFeedTests {
+
+    @Test
+    void whenProductsChanged_thenReturnEachProductOnce() {
+        var feed = new ProductChangeFeed(16, 1000, 50L);
+        List.of("P001", "P002", "P001", "P003").forEach(feed::publish);
+
+        var changes = feed.changesAfter(0);
+
+        assertFalse(changes.reset());
+        assertEquals(List.of("P001", "P002", "P003"), List.copyOf(changes.productIds()));
+        assertEquals(4, changes.sequence());
+        assertEquals(Set.of("P003"), feed.changesAfter(3).productIds());
+        assertTrue(feed.changesAfter(4).productIds().isEmpty());
+    }
+
+    @Test
+    void whenManyProductsChanged_thenBatchAtMostMaxProducts() {
+        var feed = new ProductChangeFeed(16, 2, 50L);
+        List.of("P001", "P002", "P003").forEach(feed::publish);
+
+        var first = feed.changesAfter(0);
+        var second = feed.changesAfter(first.sequence());
+
+        assertEquals(Set.of("P001", "P002"), first.productIds());
+        assertEquals(Set.of("P003"), second.productIds());
+        assertEquals(3, second.sequence());
+    }
+
+    @Test
+    void whenChangesNoLongerRetained_thenReset() {
+        var feed = new ProductChangeFeed(4, 1000, 50L);
+        for (var i = 0; i < 10; i++) {
+            feed.publish("P00" + i);
+        }
+
+        var changes = feed.changesAfter(2);
+
+        assertTrue(changes.reset());
+        assertEquals(10, changes.sequence());
+        assertFalse(feed.changesAfter(6).reset());
+    }
+
+    @Test
+    void whenTokenOfAnotherEpoch_thenNotParsed() {
+        var feed = new ProductChangeFeed(16, 1000, 50L);
+        var other = new ProductChangeFeed(16, 1000, 50L);
+
+        assertEquals(42, feed.parse(feed.token(42)));
+        assertEquals(-1, feed.parse(other.token(42)));
+        assertEquals(-1, feed.parse("garbage"));
+    }
+}
@@ -11,6 +11,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("api/v1/carts")
 public class CartController {
@@ -19,6 +21,15 @@ public class CartController {
     @Autowired
     private CartService cartSvc;
 
+    @GetMapping
+    public Mono<ResponseEntity<ApiResponse>> getCarts(@RequestParam List<String> userIds) {
+        return cartSvc.getCartsByUserIds(userIds)
+            .collectList()
+            .map(ApiResponse::ok)
+            .doOnError(ex -> log.error(ex.getMessage()))
+            .onErrorResume(ex -> Mono.just(ApiResponse.internalServerError(ex)));
+    }
+
     @GetMapping("{userId}")
     public Mono<ResponseEntity<ApiResponse>> getCart(@PathVariable String userId) {
         return cartSvc.getCartByUserId(userId)
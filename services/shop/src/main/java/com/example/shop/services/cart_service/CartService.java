@@ -4,9 +4,13 @@ package com.example.shop.services.cart_service;
 import com.example.shop.services.cart_service.entities.Cart;
 import com.example.shop.services.cart_service.entities.CartUpdateRequest;
 import com.example.shop.services.cart_service.entities.CartUpdateRequestResult;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 public interface CartService {
     Mono<Cart> getCartByUserId(String userId);
+    Flux<Cart> getCartsByUserIds(List<String> userIds);
     Mono<CartUpdateRequestResult> cartUpdateRequest(CartUpdateRequest request);
 }
@@ -2,6 +2,7 @@ package com.example.shop.services.cart_service.drivers;
 
 import com.example.grpc.cart.stubs.CartServiceGrpc;
 import com.example.grpc.cart.stubs.GetCartByUserIdRequest;
+import com.example.grpc.cart.stubs.GetCartsByUserIdsRequest;
 import com.example.shop.services.cart_service.CartService;
 import com.example.shop.services.cart_service.drivers.mappers.CartMapper;
 import com.example.shop.services.cart_service.drivers.mappers.CartUpdateRequestMapper;
@@ -11,13 +12,25 @@ import com.example.shop.services.cart_service.entities.CartUpdateRequestResult;
 import io.grpc.stub.StreamObserver;
 import io.micrometer.observation.annotation.Observed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
 
+import java.util.List;
+
 @Service
 public class CartServiceGRPC implements CartService {
 
+    private static final int MAX_CALLS_IN_FLIGHT = 4;
+
+    /**
+     * The cart service rejects larger requests, must not exceed its batch-read.max-user-ids.
+     */
+    @Value("${order-processing-system.services.cart.batch-max-user-ids:500}")
+    private Integer maxUserIdsPerCall;
+
     @Autowired
     private CartServiceGrpc.CartServiceStub cartSvcGRPC;
 
@@ -47,6 +60,41 @@ public class CartServiceGRPC implements CartService {
         return sink.asMono();
     }
 
+    @Observed(name = "get_carts_by_user_ids", lowCardinalityKeyValues = {
+        "rpc.system", "grpc",
+        "rpc.service", "cart"
+    })
+    @Override
+    public Flux<Cart> getCartsByUserIds(List<String> userIds) {
+        return Flux.fromIterable(userIds)
+            .buffer(maxUserIdsPerCall)
+            .flatMapSequential(this::getCartsBatch, MAX_CALLS_IN_FLIGHT);
+    }
+
+    /**
+     * The carts of the batch come in several results, see the batch-read.max-reply-bytes of the cart service.
+     */
+    private Flux<Cart> getCartsBatch(List<String> userIds) {
+
+        Sinks.Many<List<Cart>> sink = Sinks.many().unicast().onBackpressureBuffer();
+
+        var request = GetCartsByUserIdsRequest.newBuilder().addAllUserIds(userIds).build();
+        cartSvcGRPC.getCartsByUserIds(request, new StreamObserver<>() {
+            @Override
+            public void onNext(com.example.grpc.cart.stubs.GetCartsByUserIdsResult data) {
+                sink.tryEmitNext(data.getCartsList().stream().map(CartMapper::mapToEntity).toList());
+            }
+
+            @Override
+            public void onError(Throwable t) { sink.tryEmitError(t); }
+
+            @Override
+            public void onCompleted() { sink.tryEmitComplete(); }
+        });
+
+        return sink.asFlux().flatMapIterable(carts -> carts);
+    }
+
     @Observed(name = "cart_update_request", lowCardinalityKeyValues = {
         "rpc.system", "grpc",
         "rpc.service", "cart"